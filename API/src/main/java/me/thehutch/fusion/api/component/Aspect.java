@@ -20,12 +20,21 @@ package me.thehutch.fusion.api.component;
 import java.util.BitSet;
 
 /**
+ * The set of components an {@link EntityProcessor} is interested in.
+ * <p>
+ * The component sets are compiled into word masks once the aspect is created,
+ * so matching an entity's component mask is a few word ANDs.
+ *
  * @author thehutch
  */
 public final class Aspect {
+	private static final long[] EMPTY_MASK = new long[0];
 	private final BitSet allSet = new BitSet();
 	private final BitSet oneSet = new BitSet();
 	private final BitSet exclusionSet = new BitSet();
+	private long[] allMask = EMPTY_MASK;
+	private long[] oneMask = EMPTY_MASK;
+	private long[] exclusionMask = EMPTY_MASK;
 
 	/**
 	 * Private constructor for {@link Aspect}.
@@ -54,6 +63,92 @@ public final class Aspect {
 		return exclusionSet;
 	}
 
+	/**
+	 * Checks whether an entity with the given component mask matches this aspect.
+	 * The words of the mask are the same as {@link BitSet#toLongArray()}.
+	 * <p>
+	 * @param componentMask The mask of the components the entity has
+	 * <p>
+	 * @return True if the components match this aspect
+	 */
+	public boolean matches(long[] componentMask) {
+		final int length = componentMask.length;
+		// Check if the entity possesses all of the components defined in the aspect.
+		final long[] all = allMask;
+		for (int i = 0; i < all.length; ++i) {
+			final long word = i < length ? componentMask[i] : 0L;
+			if ((word & all[i]) != all[i]) {
+				return false;
+			}
+		}
+		// Check if the entity possesses ANY of the exclusion components, it it does then the aspect does not match.
+		final long[] exclusion = exclusionMask;
+		for (int i = 0, n = Math.min(exclusion.length, length); i < n; ++i) {
+			if ((componentMask[i] & exclusion[i]) != 0L) {
+				return false;
+			}
+		}
+		// Check if the entity possesses ANY of the components in the one set.
+		final long[] one = oneMask;
+		if (one.length == 0) {
+			return true;
+		}
+		for (int i = 0, n = Math.min(one.length, length); i < n; ++i) {
+			if ((componentMask[i] & one[i]) != 0L) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the component types referenced by any of the sets of this aspect.
+	 * Only a change to one of these types can change whether an entity matches.
+	 * <p>
+	 * @return A new bitset of the referenced component types
+	 */
+	public BitSet getReferencedTypes() {
+		final BitSet referenced = (BitSet) allSet.clone();
+		referenced.or(oneSet);
+		referenced.or(exclusionSet);
+		return referenced;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Aspect)) {
+			return false;
+		}
+		final Aspect other = (Aspect) obj;
+		return allSet.equals(other.allSet) && oneSet.equals(other.oneSet) && exclusionSet.equals(other.exclusionSet);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		int hash = allSet.hashCode();
+		hash = 31 * hash + oneSet.hashCode();
+		hash = 31 * hash + exclusionSet.hashCode();
+		return hash;
+	}
+
+	/**
+	 * Internal method to compile the component sets into word masks.
+	 */
+	private void compile() {
+		allMask = allSet.toLongArray();
+		oneMask = oneSet.toLongArray();
+		exclusionMask = exclusionSet.toLongArray();
+	}
+
 	/**
 	 * Creates a new {@link Aspect} for all of the provided component classes.
 	 * <p>
@@ -70,6 +165,7 @@ public final class Aspect {
 		for (Class<? extends IComponent> type : types) {
 			bitSet.set(ComponentType.getIndexFor(type));
 		}
+		aspect.compile();
 		return aspect;
 	}
 
@@ -89,6 +185,7 @@ public final class Aspect {
 		for (Class<? extends IComponent> type : types) {
 			bitSet.set(ComponentType.getIndexFor(type));
 		}
+		aspect.compile();
 		return aspect;
 	}
 
@@ -108,6 +205,7 @@ public final class Aspect {
 		for (Class<? extends IComponent> type : types) {
 			bitSet.set(ComponentType.getIndexFor(type));
 		}
+		aspect.compile();
 		return aspect;
 	}
 
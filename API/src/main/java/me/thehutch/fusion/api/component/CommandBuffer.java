@@ -0,0 +1,245 @@
+/*
+ * This file is part of API, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.api.component;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import me.thehutch.fusion.api.util.container.Bag;
+import me.thehutch.fusion.api.util.container.ImmutableBag;
+
+/**
+ * Records structural changes to the entities, to be played back later by the
+ * {@link IComponentSystem}. Whilst the processors are processed in parallel
+ * the entities must not be changed directly, instead each thread records the
+ * changes into its own buffer, see {@link IComponentSystem#getCommandBuffer()}.
+ * <p>
+ * Every command is given a sort key. The commands of all the buffers are
+ * played back in the order of their keys, and commands with the same key
+ * from the same buffer are played back in the order they were recorded. If
+ * each key is only used by a single thread, such as the id of the entity
+ * being processed, the playback order does not depend on how the work was
+ * split between the threads.
+ *
+ * @author thehutch
+ */
+public final class CommandBuffer {
+	private static final Comparator<Command> KEY_ORDER = (a, b) -> Integer.compare(a.mKey, b.mKey);
+	private final Bag<Command> mCommands = new Bag<>();
+
+	/**
+	 * Records the creation of an entity with the given components, the entity
+	 * is added to the system once played back.
+	 * <p>
+	 * @param sortKey    The sort key of the command
+	 * @param components The components of the entity
+	 */
+	public void createEntity(int sortKey, IComponent... components) {
+		add(new Command(sortKey, CommandType.CREATE, null, components, 0));
+	}
+
+	/**
+	 * Records the spawning of entities from a template.
+	 * <p>
+	 * @param sortKey  The sort key of the command
+	 * @param template The template of the entities
+	 * @param count    The number of entities to spawn
+	 */
+	public void spawn(int sortKey, EntityTemplate template, int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Number of spawned entities must not be negative");
+		}
+		add(new Command(sortKey, CommandType.SPAWN, null, template, count));
+	}
+
+	/**
+	 * Records adding a component to an entity, the entity is changed in the
+	 * system once played back.
+	 * <p>
+	 * @param sortKey   The sort key of the command
+	 * @param e         The entity
+	 * @param component The component to add
+	 */
+	public void addComponent(int sortKey, IEntity e, IComponent component) {
+		add(new Command(sortKey, CommandType.ADD_COMPONENT, e, component, 0));
+	}
+
+	/**
+	 * Records removing a component from an entity, the entity is changed in
+	 * the system once played back.
+	 * <p>
+	 * @param sortKey The sort key of the command
+	 * @param e       The entity
+	 * @param type    The component class to remove
+	 */
+	public void removeComponent(int sortKey, IEntity e, Class<? extends IComponent> type) {
+		add(new Command(sortKey, CommandType.REMOVE_COMPONENT, e, ComponentType.getTypeFor(type), 0));
+	}
+
+	/**
+	 * Records deleting an entity from the system.
+	 * <p>
+	 * @param sortKey The sort key of the command
+	 * @param e       The entity
+	 */
+	public void deleteEntity(int sortKey, IEntity e) {
+		add(new Command(sortKey, CommandType.DELETE, e, null, 0));
+	}
+
+	/**
+	 * @return The number of recorded commands
+	 */
+	public int size() {
+		synchronized (mCommands) {
+			return mCommands.size();
+		}
+	}
+
+	/**
+	 * @return True if no commands are recorded
+	 */
+	public boolean isEmpty() {
+		synchronized (mCommands) {
+			return mCommands.isEmpty();
+		}
+	}
+
+	/**
+	 * Discards the recorded commands.
+	 */
+	public void clear() {
+		synchronized (mCommands) {
+			mCommands.clear();
+		}
+	}
+
+	/**
+	 * Internal method to record a command.
+	 * <p>
+	 * @param command The command
+	 */
+	private void add(Command command) {
+		synchronized (mCommands) {
+			mCommands.add(command);
+		}
+	}
+
+	/**
+	 * Plays back the commands of the given buffers in the order of their sort
+	 * keys, then clears the buffers. This must be called by a single thread,
+	 * the commands of each buffer are handed off under the lock of the buffer
+	 * and any command recorded during the playback is kept for the next one.
+	 * <p>
+	 * An entity is only deleted once, and the commands recorded for an
+	 * entity after it has been deleted by an earlier command are ignored.
+	 * <p>
+	 * @param buffers The buffers to play back
+	 * @param system  The system to play the commands back into
+	 */
+	public static void playback(ImmutableBag<CommandBuffer> buffers, IComponentSystem system) {
+		// Gather the commands, the sort is stable so the recorded order of each buffer is kept
+		final int numBuffers = buffers.size();
+		Command[] commands = null;
+		int numCommands = 0;
+		for (int b = 0; b < numBuffers; ++b) {
+			final Bag<Command> bufferCommands = buffers.get(b).mCommands;
+			synchronized (bufferCommands) {
+				final int size = bufferCommands.size();
+				if (size == 0) {
+					continue;
+				}
+				if (commands == null) {
+					commands = new Command[size];
+				} else if (numCommands + size > commands.length) {
+					commands = Arrays.copyOf(commands, Math.max(numCommands + size, commands.length * 2));
+				}
+				for (int i = 0; i < size; ++i) {
+					commands[numCommands++] = bufferCommands.get(i);
+				}
+				bufferCommands.clear();
+			}
+		}
+		if (numCommands == 0) {
+			return;
+		}
+		Arrays.sort(commands, 0, numCommands, KEY_ORDER);
+
+		final BitSet deleted = new BitSet();
+		for (int c = 0; c < numCommands; ++c) {
+			final Command command = commands[c];
+			final IEntity e = command.mEntity;
+			if (e != null && deleted.get(e.getId())) {
+				continue;
+			}
+			switch (command.mType) {
+				case CREATE:
+					final IEntity created = system.createEntity();
+					for (IComponent component : (IComponent[]) command.mArgument) {
+						created.addComponent(component);
+					}
+					created.addToSystem();
+					break;
+				case SPAWN:
+					system.spawn((EntityTemplate) command.mArgument, command.mCount, null);
+					break;
+				case ADD_COMPONENT:
+					e.addComponent((IComponent) command.mArgument);
+					e.changedInSystem();
+					break;
+				case REMOVE_COMPONENT:
+					e.removeComponent((ComponentType) command.mArgument);
+					e.changedInSystem();
+					break;
+				case DELETE:
+					deleted.set(e.getId());
+					e.deleteFromSystem();
+					break;
+			}
+		}
+	}
+
+	/**
+	 * A recorded structural change.
+	 */
+	private static final class Command {
+		private final int mKey;
+		private final CommandType mType;
+		private final IEntity mEntity;
+		private final Object mArgument;
+		private final int mCount;
+
+		private Command(int key, CommandType type, IEntity entity, Object argument, int count) {
+			mKey = key;
+			mType = type;
+			mEntity = entity;
+			mArgument = argument;
+			mCount = count;
+		}
+	}
+
+	/**
+	 * The types of structural change.
+	 */
+	private enum CommandType {
+		CREATE,
+		SPAWN,
+		ADD_COMPONENT,
+		REMOVE_COMPONENT,
+		DELETE
+	}
+}
@@ -17,16 +17,25 @@
  */
 package me.thehutch.fusion.api.component;
 
-import gnu.trove.map.TMap;
-import gnu.trove.map.hash.THashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import me.thehutch.fusion.api.component.annotations.Storage;
 
 /**
  * @author thehutch
  */
 public final class ComponentType {
-	private static final TMap<Class<? extends IComponent>, ComponentType> COMPONENT_TYPES = new THashMap<>();
-	private static int INDEX = 0;
+	/*
+	 * The component type is stored with the class itself, so a lookup does not hash the class
+	 */
+	private static final ClassValue<ComponentType> COMPONENT_TYPES = new ClassValue<ComponentType>() {
+		@Override
+		protected ComponentType computeValue(Class<?> type) {
+			return new ComponentType(type.asSubclass(IComponent.class));
+		}
+	};
+	private static final AtomicInteger INDEX = new AtomicInteger();
 
+	private final StorageType storageType;
 	private final int index;
 
 	/**
@@ -35,7 +44,9 @@ public final class ComponentType {
 	 * @param type The component class
 	 */
 	private ComponentType(Class<? extends IComponent> type) {
-		this.index = INDEX++;
+		final Storage storage = type.getAnnotation(Storage.class);
+		this.storageType = storage != null ? storage.value() : StorageType.DENSE;
+		this.index = INDEX.getAndIncrement();
 	}
 
 	/**
@@ -45,6 +56,13 @@ public final class ComponentType {
 		return index;
 	}
 
+	/**
+	 * @return The storage type of the component, set by the {@link Storage} annotation
+	 */
+	public StorageType getStorageType() {
+		return storageType;
+	}
+
 	/**
 	 * Get the {@link ComponentType} for the given component class.
 	 * <p>
@@ -53,12 +71,7 @@ public final class ComponentType {
 	 * @return The component type
 	 */
 	public static ComponentType getTypeFor(Class<? extends IComponent> c) {
-		ComponentType type = COMPONENT_TYPES.get(c);
-		if (type == null) {
-			type = new ComponentType(c);
-			COMPONENT_TYPES.put(c, type);
-		}
-		return type;
+		return COMPONENT_TYPES.get(c);
 	}
 
 	/**
@@ -0,0 +1,69 @@
+/*
+ * This file is part of API, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.api.component;
+
+/**
+ * Utility methods for entity handles. A handle packs the id of an entity with
+ * the generation of that id, which is incremented every time an entity with
+ * the id is deleted. A handle to a deleted entity therefore no longer matches
+ * once its id has been reused.
+ *
+ * @author thehutch
+ */
+public final class EntityHandle {
+	/**
+	 * The handle which never refers to an entity.
+	 */
+	public static final long NULL = -1L;
+
+	/**
+	 * Private constructor for {@link EntityHandle}.
+	 */
+	private EntityHandle() {
+	}
+
+	/**
+	 * Creates the handle of an entity id and generation.
+	 * <p>
+	 * @param id         The entity id
+	 * @param generation The generation of the id
+	 * <p>
+	 * @return The handle
+	 */
+	public static long of(int id, int generation) {
+		return ((long) generation << 32) | (id & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param handle The handle
+	 * <p>
+	 * @return The entity id of the handle
+	 */
+	public static int getId(long handle) {
+		return (int) handle;
+	}
+
+	/**
+	 * @param handle The handle
+	 * <p>
+	 * @return The generation of the handle
+	 */
+	public static int getGeneration(long handle) {
+		return (int) (handle >>> 32);
+	}
+}
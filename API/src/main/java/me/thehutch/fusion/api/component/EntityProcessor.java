@@ -19,6 +19,7 @@ package me.thehutch.fusion.api.component;
 
 import gnu.trove.map.TObjectIntMap;
 import gnu.trove.map.hash.TObjectIntHashMap;
+import java.util.Arrays;
 import java.util.BitSet;
 import me.thehutch.fusion.api.util.container.Bag;
 import me.thehutch.fusion.api.util.container.ImmutableBag;
@@ -28,8 +29,10 @@ import me.thehutch.fusion.api.util.container.ImmutableBag;
  */
 public abstract class EntityProcessor implements IEntityObserver {
 	private final Bag<IEntity> mActives = new Bag<>();
+	private int[] mActiveSlots = new int[64];
 	private final Aspect mAspect;
 	private final int mIndex;
+	private final boolean mIsTrackingActives;
 	private boolean mIsPassive;
 	protected IComponentSystem mSystem;
 
@@ -39,8 +42,20 @@ public abstract class EntityProcessor implements IEntityObserver {
 	 * @param aspect The aspect for this processor
 	 */
 	public EntityProcessor(Aspect aspect) {
+		this(aspect, true);
+	}
+
+	/**
+	 * Constructor for {@link EntityProcessor}.
+	 * <p>
+	 * @param aspect          The aspect for this processor
+	 * @param trackingActives False if the processor does not iterate its active
+	 *                        entities, they are then not held by the processor
+	 */
+	protected EntityProcessor(Aspect aspect, boolean trackingActives) {
 		mIndex = ProcessorIndexManager.getIndexFor(getClass());
 		mAspect = aspect;
+		mIsTrackingActives = trackingActives;
 		mSystem = null;
 	}
 
@@ -52,6 +67,30 @@ public abstract class EntityProcessor implements IEntityObserver {
 		check(e);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public final void addedAll(ImmutableBag<IEntity> entities) {
+		final int numEntities = entities.size();
+		// The entities have the same components, so only the first is matched
+		if (numEntities == 0 || !mAspect.matches(entities.get(0).getComponentMask())) {
+			return;
+		}
+		if (mIsTrackingActives) {
+			mActives.ensureCapacity(mActives.size() + numEntities);
+		}
+		for (int i = 0; i < numEntities; ++i) {
+			final IEntity e = entities.get(i);
+			final BitSet processorBits = e.getProcessorBits();
+			if (!processorBits.get(mIndex)) {
+				processorBits.set(mIndex);
+				insertActive(e);
+				inserted(e);
+			}
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -61,7 +100,7 @@ public abstract class EntityProcessor implements IEntityObserver {
 		if (processorBits.get(mIndex)) {
 			// Remove the entity from the processor
 			processorBits.clear(mIndex);
-			mActives.remove(e);
+			removeActive(e);
 			removed(e);
 		}
 	}
@@ -91,7 +130,7 @@ public abstract class EntityProcessor implements IEntityObserver {
 		if (processorBits.get(mIndex)) {
 			// Remove the entity from the processor
 			processorBits.clear(mIndex);
-			mActives.remove(e);
+			removeActive(e);
 			removed(e);
 		}
 	}
@@ -135,9 +174,24 @@ public abstract class EntityProcessor implements IEntityObserver {
 		mSystem = system;
 	}
 
+	/**
+	 * @return The index of this {@link EntityProcessor} type within the processor bits
+	 */
+	public final int getIndex() {
+		return mIndex;
+	}
+
+	/**
+	 * @return The aspect of this {@link EntityProcessor}
+	 */
+	public final Aspect getAspect() {
+		return mAspect;
+	}
+
 	/**
 	 * Returns an {@link ImmutableBag} of all the currently active entities
-	 * being processed by this {@link EntityProcessor}.
+	 * being processed by this {@link EntityProcessor}, the bag is empty if
+	 * the processor does not track its active entities.
 	 * <p>
 	 * @return An {@link ImmutableBag} of entities
 	 */
@@ -195,46 +249,56 @@ public abstract class EntityProcessor implements IEntityObserver {
 	 */
 	private void check(IEntity e) {
 		final boolean contains = e.getProcessorBits().get(mIndex);
-		boolean interested = true;
-
-		final BitSet componentBits = e.getComponentBits();
-
-		// Check if the entity possesses all of the components defined in the aspect.
-		final BitSet allSet = mAspect.getAllSet();
-		if (!allSet.isEmpty()) {
-			for (int i = allSet.nextSetBit(0); i >= 0; i = allSet.nextSetBit(i + 1)) {
-				if (!componentBits.get(i)) {
-					interested = false;
-					break;
-				}
-			}
-		}
-
-		// Check if the entity possesses ANY of the exclusion components, it it does then the processor is not interested.
-		final BitSet exclusionSet = mAspect.getExclusionSet();
-		if (!exclusionSet.isEmpty() && interested) {
-			interested = !exclusionSet.intersects(componentBits);
-		}
-
-		// Check if the entity possesses ANY of the components in the one set. If so, the processor is interested.
-		final BitSet oneSet = mAspect.getOneSet();
-		if (!oneSet.isEmpty()) {
-			interested = oneSet.intersects(componentBits);
-		}
+		final boolean interested = mAspect.matches(e.getComponentMask());
 
 		if (interested && !contains) {
 			// Insert the entity into the processor
 			e.getProcessorBits().set(mIndex);
-			mActives.add(e);
+			insertActive(e);
 			inserted(e);
 		} else if (!interested && contains) {
 			// Remove the entity from the processor
 			e.getProcessorBits().clear(mIndex);
-			mActives.remove(e);
+			removeActive(e);
 			removed(e);
 		}
 	}
 
+	/**
+	 * Appends the entity to the active entities and records its slot.
+	 * <p>
+	 * @param e The entity to insert
+	 */
+	private void insertActive(IEntity e) {
+		if (!mIsTrackingActives) {
+			return;
+		}
+		final int entityId = e.getId();
+		if (entityId >= mActiveSlots.length) {
+			mActiveSlots = Arrays.copyOf(mActiveSlots, Math.max(entityId + 1, mActiveSlots.length * 2));
+		}
+		mActiveSlots[entityId] = mActives.size();
+		mActives.add(e);
+	}
+
+	/**
+	 * Removes the entity from the active entities in constant time, the last
+	 * active entity is moved into its slot.
+	 * <p>
+	 * @param e The entity to remove
+	 */
+	private void removeActive(IEntity e) {
+		if (!mIsTrackingActives) {
+			return;
+		}
+		final Bag<IEntity> actives = mActives;
+		final int slot = mActiveSlots[e.getId()];
+		actives.remove(slot);
+		if (slot < actives.size()) {
+			mActiveSlots[actives.get(slot).getId()] = slot;
+		}
+	}
+
 	/**
 	 * Class used to help with the id of the {@link EntityProcessor}'s.
 	 */
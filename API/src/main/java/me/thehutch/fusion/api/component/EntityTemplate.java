@@ -0,0 +1,116 @@
+/*
+ * This file is part of API, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.api.component;
+
+import java.util.BitSet;
+import java.util.function.Supplier;
+import me.thehutch.fusion.api.util.container.Bag;
+
+/**
+ * A template of the components of an entity, used to spawn many entities
+ * with the same components at once.
+ * <p>
+ * The component types are resolved when they are added to the template,
+ * so spawning from a template does not look up any component types.
+ *
+ * @author thehutch
+ */
+public final class EntityTemplate {
+	private final Bag<ComponentType> types = new Bag<>();
+	private final Bag<Supplier<? extends IComponent>> factories = new Bag<>();
+	private final BitSet componentBits = new BitSet();
+	private long[] componentMask = new long[0];
+
+	/**
+	 * Private constructor for {@link EntityTemplate}.
+	 */
+	private EntityTemplate() {
+	}
+
+	/**
+	 * Adds a component to the template. Each spawned entity is given a new
+	 * component created by the factory.
+	 * <p>
+	 * @param <T>     The type of component
+	 * @param type    The component class
+	 * @param factory The factory of the components
+	 * <p>
+	 * @return This template
+	 */
+	public <T extends IComponent> EntityTemplate with(Class<T> type, Supplier<? extends T> factory) {
+		final ComponentType componentType = ComponentType.getTypeFor(type);
+		if (componentBits.get(componentType.getIndex())) {
+			throw new IllegalArgumentException("Template already has the component type " + type.getName());
+		}
+		types.add(componentType);
+		factories.add(factory);
+		componentBits.set(componentType.getIndex());
+		componentMask = componentBits.toLongArray();
+		return this;
+	}
+
+	/**
+	 * @return The number of component types in the template
+	 */
+	public int getComponentCount() {
+		return types.size();
+	}
+
+	/**
+	 * @param index The index of the component within the template
+	 * <p>
+	 * @return The component type
+	 */
+	public ComponentType getType(int index) {
+		return types.get(index);
+	}
+
+	/**
+	 * Creates a new component for a spawned entity.
+	 * <p>
+	 * @param index The index of the component within the template
+	 * <p>
+	 * @return A new component
+	 */
+	public IComponent newComponent(int index) {
+		return factories.get(index).get();
+	}
+
+	/**
+	 * @return The bits of the component types in the template
+	 */
+	public BitSet getComponentBits() {
+		return componentBits;
+	}
+
+	/**
+	 * @return The mask of the component types in the template
+	 */
+	public long[] getComponentMask() {
+		return componentMask;
+	}
+
+	/**
+	 * Creates a new empty {@link EntityTemplate}.
+	 * <p>
+	 * @return A new empty template
+	 */
+	public static EntityTemplate newTemplate() {
+		return new EntityTemplate();
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * This file is part of API, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.api.component;
+
+/**
+ * A contiguous block of entities which all have the same set of components.
+ * <p>
+ * The entities and each of their component columns are stored in parallel arrays,
+ * the component of the entity at an index is at the same index of the column.
+ *
+ * @author thehutch
+ */
+public interface IArchetypeChunk {
+	/**
+	 * @return The number of entities in the chunk
+	 */
+	public int size();
+
+	/**
+	 * Returns the entity at the given index of the chunk.
+	 * <p>
+	 * @param index The index of the entity
+	 * <p>
+	 * @return The entity
+	 */
+	public IEntity getEntity(int index);
+
+	/**
+	 * Returns the column of components of the given type. Only the first
+	 * {@link #size()} entries of the column are valid.
+	 * <p>
+	 * @param type The type of component
+	 * <p>
+	 * @return The column of components, null if the chunk does not have the type
+	 */
+	public IComponent[] getColumn(ComponentType type);
+}
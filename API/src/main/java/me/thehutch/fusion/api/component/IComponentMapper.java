@@ -17,6 +17,9 @@
  */
 package me.thehutch.fusion.api.component;
 
+import me.thehutch.fusion.api.util.container.Bag;
+import me.thehutch.fusion.api.util.container.ImmutableBag;
+
 /**
  * @author thehutch
  * @param <T> The type of component this mapper maps to
@@ -26,6 +29,9 @@ public interface IComponentMapper<T extends IComponent> {
 	 * Returns the component which this mapper handles from
 	 * the provided entity.
 	 * <p>
+	 * This method does not check the entity, it must have
+	 * the component, see {@link #getSafe(IEntity)}.
+	 * <p>
 	 * @param e The entity to get the component from
 	 * <p>
 	 * @return The component
@@ -37,7 +43,7 @@ public interface IComponentMapper<T extends IComponent> {
 	 * the provided entity.
 	 * <p>
 	 * This method checks that the entity has the component
-	 * otherwise it will return null.
+	 * otherwise it will return null, a null entity is allowed.
 	 * <p>
 	 * @param e The entity to get the component from
 	 * <p>
@@ -45,6 +51,87 @@ public interface IComponentMapper<T extends IComponent> {
 	 */
 	public T getSafe(IEntity e);
 
+	/**
+	 * Returns the component which this mapper handles from the provided
+	 * entity, and marks the component as changed at the current tick.
+	 * <p>
+	 * The entity must have the component, as for {@link #get(IEntity)}.
+	 * <p>
+	 * @param e The entity to get the component from
+	 * <p>
+	 * @return The component
+	 */
+	public T getMutable(IEntity e);
+
+	/**
+	 * Marks the component of the provided entity as changed at the current tick.
+	 * <p>
+	 * @param e The entity whose component has changed
+	 */
+	public void markChanged(IEntity e);
+
+	/**
+	 * Returns true if the component of the provided entity was changed, or
+	 * added, at or after the given tick.
+	 * <p>
+	 * A processor which records the tick of the system when it processes sees
+	 * every change made after it processed, as well as any change made during
+	 * the same tick which it may have already seen.
+	 * <p>
+	 * @param e    The entity
+	 * @param tick The tick
+	 * <p>
+	 * @return True if the component has changed since the tick
+	 */
+	public boolean isChangedSince(IEntity e, int tick);
+
+	/**
+	 * Returns true if the component was added to the provided entity at or
+	 * after the given tick.
+	 * <p>
+	 * @param e    The entity
+	 * @param tick The tick
+	 * <p>
+	 * @return True if the component was added since the tick
+	 */
+	public boolean isAddedSince(IEntity e, int tick);
+
+	/**
+	 * Fills the given {@link Bag} with the entities whose component was
+	 * changed since the given tick.
+	 * <p>
+	 * @param entities The entities to filter
+	 * @param tick     The tick
+	 * @param fillbag  The bag to fill
+	 */
+	default void getChangedSince(ImmutableBag<IEntity> entities, int tick, Bag<IEntity> fillbag) {
+		final int numEntities = entities.size();
+		for (int i = 0; i < numEntities; ++i) {
+			final IEntity e = entities.get(i);
+			if (isChangedSince(e, tick)) {
+				fillbag.add(e);
+			}
+		}
+	}
+
+	/**
+	 * Fills the given {@link Bag} with the entities whose component was
+	 * added since the given tick.
+	 * <p>
+	 * @param entities The entities to filter
+	 * @param tick     The tick
+	 * @param fillbag  The bag to fill
+	 */
+	default void getAddedSince(ImmutableBag<IEntity> entities, int tick, Bag<IEntity> fillbag) {
+		final int numEntities = entities.size();
+		for (int i = 0; i < numEntities; ++i) {
+			final IEntity e = entities.get(i);
+			if (isAddedSince(e, tick)) {
+				fillbag.add(e);
+			}
+		}
+	}
+
 	/**
 	 * @param e The entity
 	 * <p>
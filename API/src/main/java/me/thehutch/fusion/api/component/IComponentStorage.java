@@ -0,0 +1,76 @@
+/*
+ * This file is part of API, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.api.component;
+
+/**
+ * The storage of all the components of a single {@link ComponentType}
+ * mapped to the ids of the entities which have them.
+ *
+ * @author thehutch
+ */
+public interface IComponentStorage {
+	/**
+	 * Returns the component of the given entity id.
+	 * <p>
+	 * @param entityId The entity id
+	 * <p>
+	 * @return The component, null if not found
+	 */
+	public IComponent get(int entityId);
+
+	/**
+	 * Sets the component of the given entity id.
+	 * <p>
+	 * @param entityId  The entity id
+	 * @param component The component
+	 */
+	public void set(int entityId, IComponent component);
+
+	/**
+	 * Removes the component of the given entity id.
+	 * <p>
+	 * @param entityId The entity id
+	 */
+	public void remove(int entityId);
+
+	/**
+	 * Prepares the storage for the components of a range of entity ids.
+	 * <p>
+	 * @param firstId The first entity id of the range
+	 * @param count   The number of entity ids in the range
+	 */
+	public void reserve(int firstId, int count);
+
+	/**
+	 * @return The number of components in the storage
+	 */
+	public int size();
+
+	/**
+	 * @return The type of the storage
+	 */
+	public StorageType getStorageType();
+
+	/**
+	 * Returns an estimate of the memory used by the storage, excluding
+	 * the components themselves.
+	 * <p>
+	 * @return The estimated memory usage in bytes
+	 */
+	public long getMemoryUsage();
+}
@@ -17,6 +17,8 @@
  */
 package me.thehutch.fusion.api.component;
 
+import java.util.function.Consumer;
+import me.thehutch.fusion.api.util.container.Bag;
 import me.thehutch.fusion.api.util.container.ImmutableBag;
 
 /**
@@ -32,6 +34,15 @@ public interface IComponentSystem {
 	 */
 	public IEntity getEntity(int entityId);
 
+	/**
+	 * Returns the entity with the given handle.
+	 * <p>
+	 * @param handle The entity's handle
+	 * <p>
+	 * @return The entity, null if the entity of the handle has been deleted
+	 */
+	public IEntity getEntityByHandle(long handle);
+
 	/**
 	 * Creates a new entity.
 	 * <p>
@@ -39,6 +50,53 @@ public interface IComponentSystem {
 	 */
 	public IEntity createEntity();
 
+	/**
+	 * Spawns entities with the components of the template. The entities are
+	 * given a contiguous range of ids and are added to the system as one batch.
+	 * <p>
+	 * @param template The template of the entities
+	 * @param count    The number of entities to spawn
+	 * @param fillbag  The bag to fill with the spawned entities, may be null
+	 */
+	public void spawn(EntityTemplate template, int count, Bag<IEntity> fillbag);
+
+	/**
+	 * Deletes all of the given entities from the system.
+	 * <p>
+	 * @param entities The entities to delete
+	 */
+	public void despawn(ImmutableBag<IEntity> entities);
+
+	/**
+	 * Returns the command buffer of the calling thread. The commands of every
+	 * thread are played back once the processors have been processed, so a
+	 * processor processed in parallel can create and delete entities. Whilst
+	 * processors are processed concurrently, adding or removing entities and
+	 * components directly throws an {@link IllegalStateException}.
+	 * <p>
+	 * @return The command buffer of the calling thread
+	 */
+	public CommandBuffer getCommandBuffer();
+
+	/**
+	 * Returns the view of the entities matching the given aspect, creating
+	 * the view if it does not exist. Equal aspects share the same view.
+	 * <p>
+	 * @param aspect The aspect of the entities
+	 * <p>
+	 * @return The view of the entities
+	 */
+	public IEntityQuery getQuery(Aspect aspect);
+
+	/**
+	 * Returns the current tick of the system, which is advanced every time
+	 * the system is processed. The components record the tick they were
+	 * added and last changed, see {@link IComponentMapper#isChangedSince}.
+	 * <p>
+	 * @return The current tick
+	 */
+	public int getTick();
+
 	/**
 	 * Adds a new entity to the system.
 	 * <p>
@@ -148,4 +206,15 @@ public interface IComponentSystem {
 	 * @param processor The processor to remove
 	 */
 	public void removeProcessor(EntityProcessor processor);
+
+	/**
+	 * Performs the given action on every archetype chunk whose components match
+	 * the given {@link Aspect}. Only enabled entities are held within the chunks.
+	 * <p>
+	 * @param aspect The aspect to match
+	 * @param action The action to perform on each chunk
+	 * <p>
+	 * @throws IllegalStateException If this system is not using archetype storage
+	 */
+	public void forEachChunk(Aspect aspect, Consumer<? super IArchetypeChunk> action);
 }
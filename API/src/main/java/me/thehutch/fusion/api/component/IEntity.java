@@ -32,6 +32,15 @@ public interface IEntity {
 	public int getId();
 
 	/**
+	 * Returns the handle of the entity, see {@link EntityHandle}.
+	 *
+	 * @return The entity's handle
+	 */
+	public long getHandle();
+
+	/**
+	 * Returns the unique id of the entity, generated when first requested.
+	 *
 	 * @return The entity's unique id
 	 */
 	public UUID getUUID();
@@ -47,10 +56,22 @@ public interface IEntity {
 	public boolean isEnabled();
 
 	/**
+	 * Returns a new bitset of the components the entity has, see
+	 * {@link #getComponentMask()} to read them without allocating.
+	 * <p>
 	 * @return A bitset of the components the entity has
 	 */
 	public BitSet getComponentBits();
 
+	/**
+	 * Returns the components the entity has as words of bits, in the same
+	 * layout as {@link BitSet#toLongArray()}. The array is replaced when it
+	 * grows, so it should not be retained.
+	 * <p>
+	 * @return The mask of the components the entity has
+	 */
+	public long[] getComponentMask();
+
 	/**
 	 * @return A bitset of the processor this entity is in
 	 */
@@ -17,6 +17,8 @@
  */
 package me.thehutch.fusion.api.component;
 
+import me.thehutch.fusion.api.util.container.ImmutableBag;
+
 /**
  * @author thehutch
  */
@@ -28,6 +30,18 @@ public interface IEntityObserver {
 	 */
 	public void added(IEntity e);
 
+	/**
+	 * Called when a batch of entities spawned from the same template is added.
+	 * <p>
+	 * @param entities The entities added, which all have the same components
+	 */
+	public default void addedAll(ImmutableBag<IEntity> entities) {
+		final int numEntities = entities.size();
+		for (int i = 0; i < numEntities; ++i) {
+			added(entities.get(i));
+		}
+	}
+
 	/**
 	 * Called when an entity is deleted from a manager.
 	 * <p>
@@ -0,0 +1,90 @@
+/*
+ * This file is part of API, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.api.component;
+
+import java.util.function.BiConsumer;
+import me.thehutch.fusion.api.util.container.ImmutableBag;
+
+/**
+ * A view of the entities whose components match an {@link Aspect}.
+ * <p>
+ * The view is kept up to date by the component system as the entities are
+ * added, changed, enabled, disabled and deleted, so the entities can be read
+ * from any code without registering an {@link EntityProcessor}. The view must
+ * not be read whilst the component system is being processed.
+ *
+ * @author thehutch
+ */
+public interface IEntityQuery {
+	/**
+	 * @return The aspect of the entities in this view
+	 */
+	public Aspect getAspect();
+
+	/**
+	 * @return The entities in this view
+	 */
+	public ImmutableBag<IEntity> getEntities();
+
+	/**
+	 * @return The number of entities in this view
+	 */
+	public int size();
+
+	/**
+	 * Returns true if the given entity is in this view.
+	 * <p>
+	 * @param e The entity
+	 * <p>
+	 * @return True if the entity is in this view
+	 */
+	public boolean contains(IEntity e);
+
+	/**
+	 * Performs the given action on every entity in this view and its
+	 * component of the given type.
+	 * <p>
+	 * @param <A>    The type of component
+	 * @param typeA  The component class
+	 * @param action The action to perform
+	 */
+	public <A extends IComponent> void forEach(Class<A> typeA, BiConsumer<? super IEntity, ? super A> action);
+
+	/**
+	 * Performs the given action on every entity in this view and its
+	 * components of the given types.
+	 * <p>
+	 * @param <A>    The type of the first component
+	 * @param <B>    The type of the second component
+	 * @param typeA  The first component class
+	 * @param typeB  The second component class
+	 * @param action The action to perform
+	 */
+	public <A extends IComponent, B extends IComponent> void forEach(Class<A> typeA, Class<B> typeB, Join<? super A, ? super B> action);
+
+	/**
+	 * An action performed on an entity and two of its components.
+	 * <p>
+	 * @param <A> The type of the first component
+	 * @param <B> The type of the second component
+	 */
+	@FunctionalInterface
+	public interface Join<A, B> {
+		public void accept(IEntity e, A a, B b);
+	}
+}
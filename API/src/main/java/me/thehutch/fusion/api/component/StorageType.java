@@ -0,0 +1,41 @@
+/*
+ * This file is part of API, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.api.component;
+
+/**
+ * The strategies used to store the components of a {@link ComponentType}.
+ *
+ * @author thehutch
+ */
+public enum StorageType {
+	/**
+	 * An array indexed by the entity id. The fastest lookup, but the array is
+	 * sized to the highest entity id which has the component.
+	 */
+	DENSE,
+	/**
+	 * A packed array of components with a paged index from the entity id.
+	 * Suited to components used by a subset of the entities.
+	 */
+	SPARSE_SET,
+	/**
+	 * An open addressing hash map from the entity id. Suited to components
+	 * used by very few entities.
+	 */
+	HASH
+}
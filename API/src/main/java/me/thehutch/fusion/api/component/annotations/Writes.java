@@ -0,0 +1,42 @@
+/*
+ * This file is part of API, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.api.component.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import me.thehutch.fusion.api.component.IComponent;
+
+/**
+ * Declares the component types an entity processor writes.
+ * <p>
+ * On a {@link Mapper} field the type of the mapper is used, on the processor
+ * class the types are listed. A processor which declares none of its reads or
+ * writes is never run concurrently with another processor.
+ *
+ * @author thehutch
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.FIELD})
+public @interface Writes {
+	/**
+	 * @return The component types, only used on the processor class
+	 */
+	Class<? extends IComponent>[] value() default {};
+}
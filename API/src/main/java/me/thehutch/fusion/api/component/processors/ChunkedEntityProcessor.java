@@ -0,0 +1,72 @@
+/*
+ * This file is part of API, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.api.component.processors;
+
+import java.util.function.Consumer;
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.component.EntityProcessor;
+import me.thehutch.fusion.api.component.IArchetypeChunk;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.util.container.ImmutableBag;
+
+/**
+ * An entity processor which iterates the archetype chunks matching its aspect
+ * rather than the individual entities. Use this to process the components of
+ * many entities in contiguous columns.
+ * <p>
+ * The component system must be using archetype storage. The processor does
+ * not hold its active entities, the chunks already group them.
+ *
+ * @author thehutch
+ */
+public abstract class ChunkedEntityProcessor extends EntityProcessor {
+	private final Consumer<IArchetypeChunk> mChunkAction;
+
+	/**
+	 * Default constructor for {@link ChunkedEntityProcessor}.
+	 * <p>
+	 * @param aspect The aspect for this processor
+	 */
+	public ChunkedEntityProcessor(Aspect aspect) {
+		super(aspect, false);
+		mChunkAction = this::process;
+	}
+
+	/**
+	 * Process a chunk of entities this processor is interested in.
+	 *
+	 * @param chunk The chunk to process
+	 */
+	protected abstract void process(IArchetypeChunk chunk);
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public final void processEntities(ImmutableBag<IEntity> entities) {
+		mSystem.forEachChunk(getAspect(), mChunkAction);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean checkProcessing() {
+		return true;
+	}
+}
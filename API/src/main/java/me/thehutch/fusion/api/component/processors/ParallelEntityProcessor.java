@@ -17,6 +17,8 @@
  */
 package me.thehutch.fusion.api.component.processors;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import me.thehutch.fusion.api.component.Aspect;
 import me.thehutch.fusion.api.component.EntityProcessor;
 import me.thehutch.fusion.api.component.IEntity;
@@ -24,10 +26,17 @@ import me.thehutch.fusion.api.util.container.ImmutableBag;
 
 /**
  * A typical entity processor. Use this to process entities in parallel.
+ * <p>
+ * By default the entities are processed with a parallel stream. When a pool
+ * is given the entities are instead split by index into chunks of at most the
+ * grain size, which are processed on the pool. Each chunk is processed on a
+ * single worker thread between {@link #beginChunk()} and {@link #endChunk()}.
  *
  * @author thehutch
  */
 public abstract class ParallelEntityProcessor extends EntityProcessor {
+	private final ForkJoinPool mPool;
+	private final int mGrainSize;
 
 	/**
 	 * Default constructor for {@link ParallelEntityProcessor}.
@@ -36,6 +45,25 @@ public abstract class ParallelEntityProcessor extends EntityProcessor {
 	 */
 	public ParallelEntityProcessor(Aspect aspect) {
 		super(aspect);
+		mPool = null;
+		mGrainSize = 0;
+	}
+
+	/**
+	 * Constructor for {@link ParallelEntityProcessor} which processes the
+	 * entities in chunks on the given pool.
+	 * <p>
+	 * @param aspect    The aspect for this processor
+	 * @param pool      The pool to process the entities on
+	 * @param grainSize The maximum number of entities in each chunk
+	 */
+	public ParallelEntityProcessor(Aspect aspect, ForkJoinPool pool, int grainSize) {
+		super(aspect);
+		if (grainSize < 1) {
+			throw new IllegalArgumentException("Grain size must be greater than 0");
+		}
+		mPool = pool;
+		mGrainSize = grainSize;
 	}
 
 	/**
@@ -45,12 +73,32 @@ public abstract class ParallelEntityProcessor extends EntityProcessor {
 	 */
 	public abstract void process(IEntity entity);
 
+	/**
+	 * Called on the worker thread before it processes a chunk of entities,
+	 * used to set up thread-local accumulators. Only called when the entities
+	 * are processed on a pool.
+	 */
+	protected void beginChunk() {
+	}
+
+	/**
+	 * Called on the worker thread after it has processed a chunk of entities,
+	 * used to merge thread-local accumulators. Only called when the entities
+	 * are processed on a pool.
+	 */
+	protected void endChunk() {
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public final void processEntities(ImmutableBag<IEntity> entities) {
-		entities.parallelStream().forEach(this::process);
+		if (mPool == null) {
+			entities.parallelStream().forEach(this::process);
+		} else if (!entities.isEmpty()) {
+			mPool.invoke(new EntityChunk(this, entities, 0, entities.size()));
+		}
 	}
 
 	/**
@@ -60,4 +108,39 @@ public abstract class ParallelEntityProcessor extends EntityProcessor {
 	public boolean checkProcessing() {
 		return true;
 	}
+
+	/**
+	 * Processes a range of the entities, splitting the range in half until
+	 * it is no larger than the grain size.
+	 */
+	private static final class EntityChunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final ParallelEntityProcessor mProcessor;
+		private final ImmutableBag<IEntity> mEntities;
+		private final int mStart;
+		private final int mEnd;
+
+		private EntityChunk(ParallelEntityProcessor processor, ImmutableBag<IEntity> entities, int start, int end) {
+			mProcessor = processor;
+			mEntities = entities;
+			mStart = start;
+			mEnd = end;
+		}
+
+		@Override
+		protected void compute() {
+			final ParallelEntityProcessor processor = mProcessor;
+			if (mEnd - mStart <= processor.mGrainSize) {
+				final ImmutableBag<IEntity> entities = mEntities;
+				processor.beginChunk();
+				for (int i = mStart; i < mEnd; ++i) {
+					processor.process(entities.get(i));
+				}
+				processor.endChunk();
+			} else {
+				final int middle = (mStart + mEnd) >>> 1;
+				invokeAll(new EntityChunk(processor, mEntities, mStart, middle), new EntityChunk(processor, mEntities, middle, mEnd));
+			}
+		}
+	}
 }
@@ -19,6 +19,7 @@ package me.thehutch.fusion.api.plugin;
 
 import java.nio.file.Path;
 import me.thehutch.fusion.api.IEngine;
+import me.thehutch.fusion.api.scheduler.IScheduler;
 
 /**
  * @author thehutch
@@ -29,6 +30,7 @@ public abstract class Plugin {
 	private Path mDataFolder;
 	private Path mConfigFile;
 	private IEngine mEngine;
+	private IScheduler mScheduler;
 	private boolean mEnabled;
 
 	public Plugin() {
@@ -114,6 +116,19 @@ public abstract class Plugin {
 		return mEngine;
 	}
 
+	/**
+	 * Returns the scheduler of this plugin. The tasks it schedules are owned
+	 * by the plugin and are cancelled when the plugin is disabled.
+	 *
+	 * @return The scheduler of the plugin
+	 */
+	public final IScheduler getScheduler() {
+		if (mScheduler == null) {
+			mScheduler = mEngine.getScheduler().forPlugin(this);
+		}
+		return mScheduler;
+	}
+
 	/**
 	 * Returns the current mEnabled state of this plugin.
 	 *
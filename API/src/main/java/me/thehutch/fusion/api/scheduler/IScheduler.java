@@ -17,7 +17,24 @@
  */
 package me.thehutch.fusion.api.scheduler;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import me.thehutch.fusion.api.plugin.Plugin;
+
 /**
+ * The engine scheduler, tasks are executed on ticks of the scheduler thread.
+ * <p>
+ * All methods of this interface are thread-safe and may be called from any
+ * thread. Tasks submitted between two ticks are picked up at the start of the
+ * next tick, actions in a thread prior to submitting a task happen-before the
+ * execution of that task. Likewise a cancellation is applied at the start of
+ * the next tick and will not interrupt a task which has already started.
+ * <p>
+ * Plugins should schedule their tasks through {@link Plugin#getScheduler()},
+ * the tasks are then owned by the plugin and cancelled when it is disabled.
+ *
  * @author thehutch
  */
 public interface IScheduler {
@@ -57,6 +74,37 @@ public interface IScheduler {
 	 */
 	public int invokeRepeating(Runnable task, TaskPriority priority, long delay, long period);
 
+	/**
+	 * Schedules a one off parallel task to be executed as soon as possible.
+	 * <p>
+	 * Parallel tasks are executed synchronously with the tick but may run
+	 * concurrently with other parallel tasks of the same tick which do not
+	 * share any of the given resource keys. They never run concurrently with
+	 * sequential tasks and the tick does not end until they have completed.
+	 *
+	 * @param task      Task to be executed
+	 * @param priority  Priority of the task
+	 * @param resources The resource keys the task reads or writes
+	 *
+	 * @return The id of the task which has been scheduled
+	 */
+	public int invokeParallel(Runnable task, TaskPriority priority, Object... resources);
+
+	/**
+	 * Schedules a delayed parallel task which will repeat every given number of ticks.
+	 *
+	 * @param task      Task to be executed
+	 * @param priority  Priority of the task
+	 * @param delay     Delay in ticks before executing the task
+	 * @param period    The ticks between executions of this task
+	 * @param resources The resource keys the task reads or writes
+	 *
+	 * @return The id of the task which has been scheduled
+	 *
+	 * @see #invokeParallel(Runnable, TaskPriority, Object...)
+	 */
+	public int invokeRepeatingParallel(Runnable task, TaskPriority priority, long delay, long period, Object... resources);
+
 	/**
 	 * Schedules a once off short lived task to occur as soon as possible.
 	 * This task will be executed asynchronously.
@@ -88,9 +136,128 @@ public interface IScheduler {
 	public void cancelTask(int taskId);
 
 	/**
-	 * Returns the number of milliseconds since the last tick.
+	 * Cancels all the tasks owned by the given plugin. A task is owned by a
+	 * plugin when it was submitted through {@link #forPlugin(Plugin)}. Tasks
+	 * submitted by the plugin before the cancellation has been applied by the
+	 * next tick are rejected as well.
+	 *
+	 * @param owner The plugin owning the tasks
+	 */
+	public void cancelTasks(Plugin owner);
+
+	/**
+	 * Returns a view of this scheduler which submits tasks on behalf of the
+	 * given plugin. The tasks are owned by the plugin, so they are cancelled
+	 * by {@link #cancelTasks(Plugin)} when the plugin is disabled.
+	 *
+	 * @param owner The plugin owning the tasks
+	 *
+	 * @return The scheduler of the plugin
+	 */
+	public IScheduler forPlugin(Plugin owner);
+
+	/**
+	 * Returns the measured duration of the last tick in seconds.
 	 * <p>
-	 * @return The number of milliseconds since the last tick
+	 * @return The number of seconds since the last tick
 	 */
 	public float getDelta();
+
+	/**
+	 * Returns an {@link Executor} which executes runnables on the scheduler thread.
+	 * Runnables are executed in bounded batches at the end of each tick.
+	 *
+	 * @return The main thread executor
+	 */
+	public Executor getMainThreadExecutor();
+
+	/**
+	 * Returns an {@link Executor} which executes runnables asynchronously
+	 * with the given priority. The executor throws a
+	 * {@link java.util.concurrent.RejectedExecutionException} when the queue
+	 * of the priority is full.
+	 *
+	 * @param priority Priority of the runnables
+	 *
+	 * @return The asynchronous executor
+	 */
+	public Executor getAsyncExecutor(TaskPriority priority);
+
+	/**
+	 * Schedules a supplier to be executed asynchronously.
+	 *
+	 * @param <T>      The type of the result
+	 * @param supplier Supplier to be executed
+	 * @param priority Priority of the task
+	 *
+	 * @return A future completed with the result of the supplier
+	 */
+	public default <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, TaskPriority priority) {
+		return CompletableFuture.supplyAsync(supplier, getAsyncExecutor(priority));
+	}
+
+	/**
+	 * Schedules a supplier to be executed on the scheduler thread.
+	 *
+	 * @param <T>      The type of the result
+	 * @param supplier Supplier to be executed
+	 *
+	 * @return A future completed with the result of the supplier
+	 */
+	public default <T> CompletableFuture<T> supplyOnMainThread(Supplier<T> supplier) {
+		return CompletableFuture.supplyAsync(supplier, getMainThreadExecutor());
+	}
+
+	/**
+	 * Schedules a function to be executed on the scheduler thread with the result
+	 * of the given future as soon as it completes.
+	 *
+	 * @param <T>      The type of the input
+	 * @param <R>      The type of the result
+	 * @param future   The future the function depends on
+	 * @param function Function to be executed
+	 *
+	 * @return A future completed with the result of the function
+	 */
+	public default <T, R> CompletableFuture<R> thenOnMainThread(CompletableFuture<T> future, Function<? super T, ? extends R> function) {
+		return future.thenApplyAsync(function, getMainThreadExecutor());
+	}
+
+	/**
+	 * Returns a future which is completed once all of the given futures complete.
+	 *
+	 * @param futures The futures to wait for
+	 *
+	 * @return A future completed when all the futures have completed
+	 */
+	public default CompletableFuture<Void> whenAll(CompletableFuture<?>... futures) {
+		return CompletableFuture.allOf(futures);
+	}
+
+	/**
+	 * Schedules a task to be executed on the scheduler thread as soon as all of
+	 * its dependencies have completed.
+	 *
+	 * @param task         Task to be executed
+	 * @param dependencies The futures the task depends on
+	 *
+	 * @return A future completed once the task has been executed
+	 */
+	public default CompletableFuture<Void> invokeAfter(Runnable task, CompletableFuture<?>... dependencies) {
+		return whenAll(dependencies).thenRunAsync(task, getMainThreadExecutor());
+	}
+
+	/**
+	 * Schedules a task to be executed asynchronously as soon as all of its
+	 * dependencies have completed.
+	 *
+	 * @param task         Task to be executed
+	 * @param priority     Priority of the task
+	 * @param dependencies The futures the task depends on
+	 *
+	 * @return A future completed once the task has been executed
+	 */
+	public default CompletableFuture<Void> invokeAsyncAfter(Runnable task, TaskPriority priority, CompletableFuture<?>... dependencies) {
+		return whenAll(dependencies).thenRunAsync(task, getAsyncExecutor(priority));
+	}
 }
@@ -18,6 +18,8 @@
 package me.thehutch.fusion.api.util.container;
 
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
 
 /**
  * @author thehutch
@@ -154,6 +156,16 @@ public class Bag<E> implements ImmutableBag<E> {
 		return new BagIterator<>(this);
 	}
 
+	/**
+	 * Returns a spliterator over the backing array, which splits by index.
+	 * The bag must not be modified whilst the spliterator is in use.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Spliterator<E> spliterator() {
+		return (Spliterator<E>) Spliterators.spliterator(mData, 0, mSize, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED);
+	}
+
 	private void expand() {
 		final int newCapacity = (mData.length * 3) / 2 + 1;
 		expand(newCapacity);
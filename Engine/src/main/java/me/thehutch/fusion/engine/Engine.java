@@ -170,6 +170,9 @@ public abstract class Engine implements IEngine {
 		// Dispose of the plugin manager
 		getPluginManager().dispose();
 
+		// Dispose of the component system
+		getComponentSystem().dispose();
+
 		getLogger().log(Level.INFO, "Exiting Engine: {0}", reason);
 	}
 
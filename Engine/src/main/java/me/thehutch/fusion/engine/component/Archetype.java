@@ -0,0 +1,152 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.BitSet;
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.util.container.Bag;
+
+/**
+ * A unique set of component types, the entities which have exactly those
+ * components are grouped into the chunks of the archetype.
+ * <p>
+ * Each set of component types has an active archetype, holding the enabled
+ * entities which have been added to the system, and an inactive archetype
+ * holding the other entities. Only the active archetypes are iterated.
+ *
+ * @author thehutch
+ */
+final class Archetype {
+	private final Bag<ArchetypeChunk> mChunks;
+	private final BitSet mSignature;
+	private final long[] mMask;
+	private final int[] mColumnOf;
+	private final int[] mTypes;
+	private final boolean mIsActive;
+	private int mSize;
+
+	/**
+	 * Default constructor for {@link Archetype}.
+	 *
+	 * @param signature The bits of the component types of the archetype
+	 * @param active    True if the entities of the archetype are iterated
+	 */
+	Archetype(BitSet signature, boolean active) {
+		mChunks = new Bag<>();
+		mSignature = (BitSet) signature.clone();
+		mMask = mSignature.toLongArray();
+		mTypes = mSignature.stream().toArray();
+		mColumnOf = new int[mSignature.length()];
+		for (int i = 0; i < mColumnOf.length; ++i) {
+			mColumnOf[i] = -1;
+		}
+		for (int i = 0; i < mTypes.length; ++i) {
+			mColumnOf[mTypes[i]] = i;
+		}
+		mIsActive = active;
+		mSize = 0;
+	}
+
+	/**
+	 * @return The bits of the component types of the archetype
+	 */
+	BitSet getSignature() {
+		return mSignature;
+	}
+
+	/**
+	 * @return True if the entities of the archetype are iterated
+	 */
+	boolean isActive() {
+		return mIsActive;
+	}
+
+	/**
+	 * @return The component type indices of each column
+	 */
+	int[] getTypes() {
+		return mTypes;
+	}
+
+	/**
+	 * Returns the column of the given component type.
+	 *
+	 * @param typeIndex The index of the component type
+	 *
+	 * @return The column, -1 if the archetype does not have the type
+	 */
+	int getColumnOf(int typeIndex) {
+		return typeIndex < mColumnOf.length ? mColumnOf[typeIndex] : -1;
+	}
+
+	/**
+	 * @return The chunks of the archetype, every chunk is full except the last
+	 */
+	Bag<ArchetypeChunk> getChunks() {
+		return mChunks;
+	}
+
+	/**
+	 * @return The number of entities in the archetype
+	 */
+	int size() {
+		return mSize;
+	}
+
+	/**
+	 * @param aspect The aspect
+	 *
+	 * @return True if the entities of this archetype match the aspect
+	 */
+	boolean matches(Aspect aspect) {
+		return aspect.matches(mMask);
+	}
+
+	/**
+	 * Returns the chunk into which the next entity should be appended,
+	 * creating a new chunk once the last chunk is full.
+	 *
+	 * @return The chunk with free capacity
+	 */
+	ArchetypeChunk acquireChunk() {
+		final Bag<ArchetypeChunk> chunks = mChunks;
+		if (!chunks.isEmpty()) {
+			final ArchetypeChunk last = chunks.get(chunks.size() - 1);
+			if (!last.isFull()) {
+				++mSize;
+				return last;
+			}
+		}
+		final ArchetypeChunk chunk = new ArchetypeChunk(this);
+		chunks.add(chunk);
+		++mSize;
+		return chunk;
+	}
+
+	/**
+	 * Called once an entity has been removed from the last chunk, the chunk is
+	 * released when it becomes empty.
+	 */
+	void releaseLast() {
+		--mSize;
+		final Bag<ArchetypeChunk> chunks = mChunks;
+		if (chunks.size() > 1 && chunks.get(chunks.size() - 1).size() == 0) {
+			chunks.removeLast();
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.Arrays;
+import me.thehutch.fusion.api.component.ComponentType;
+import me.thehutch.fusion.api.component.IArchetypeChunk;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IEntity;
+
+/**
+ * A fixed capacity block of the entities of an {@link Archetype} and a column
+ * for each of its component types. The chunk is the only holder of the
+ * components of its entities, the added and changed ticks of each component
+ * are stored in parallel columns.
+ *
+ * @author thehutch
+ */
+final class ArchetypeChunk implements IArchetypeChunk {
+	static final int CAPACITY = 1024;
+	private static final int INITIAL_CAPACITY = 16;
+	private final Archetype mArchetype;
+	private final IComponent[][] mColumns;
+	private final int[][] mAddedTicks;
+	private final int[][] mChangedTicks;
+	private IEntity[] mEntities;
+	private int mSize;
+
+	/**
+	 * Default constructor for {@link ArchetypeChunk}.
+	 *
+	 * @param archetype The archetype of the chunk
+	 */
+	ArchetypeChunk(Archetype archetype) {
+		// Only the first chunk of an archetype starts small
+		final int capacity = archetype.getChunks().isEmpty() ? INITIAL_CAPACITY : CAPACITY;
+		final int numColumns = archetype.getTypes().length;
+		mArchetype = archetype;
+		mEntities = new IEntity[capacity];
+		mColumns = new IComponent[numColumns][capacity];
+		mAddedTicks = new int[numColumns][capacity];
+		mChangedTicks = new int[numColumns][capacity];
+		mSize = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IEntity getEntity(int index) {
+		return mEntities[index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IComponent[] getColumn(ComponentType type) {
+		final int column = mArchetype.getColumnOf(type.getIndex());
+		return column < 0 ? null : mColumns[column];
+	}
+
+	/**
+	 * @return The archetype of the chunk
+	 */
+	Archetype getArchetype() {
+		return mArchetype;
+	}
+
+	/**
+	 * @return The number of entity slots allocated
+	 */
+	int getCapacity() {
+		return mEntities.length;
+	}
+
+	/**
+	 * @return True if the chunk has reached its capacity
+	 */
+	boolean isFull() {
+		return mSize == CAPACITY;
+	}
+
+	/**
+	 * Appends the entity to the end of the chunk, its components are null
+	 * until they are set.
+	 *
+	 * @param e The entity
+	 *
+	 * @return The slot of the entity
+	 */
+	int append(IEntity e) {
+		if (mSize == mEntities.length) {
+			final int capacity = Math.min(mEntities.length << 1, CAPACITY);
+			mEntities = Arrays.copyOf(mEntities, capacity);
+			for (int i = 0; i < mColumns.length; ++i) {
+				mColumns[i] = Arrays.copyOf(mColumns[i], capacity);
+				mAddedTicks[i] = Arrays.copyOf(mAddedTicks[i], capacity);
+				mChangedTicks[i] = Arrays.copyOf(mChangedTicks[i], capacity);
+			}
+		}
+		mEntities[mSize] = e;
+		return mSize++;
+	}
+
+	/**
+	 * @param slot   The slot of the entity
+	 * @param column The column of the component type
+	 *
+	 * @return The component in the given column of the given slot
+	 */
+	IComponent get(int slot, int column) {
+		return mColumns[column][slot];
+	}
+
+	/**
+	 * Sets the component in the given column of the given slot, with both its
+	 * added and changed ticks.
+	 *
+	 * @param slot      The slot of the entity
+	 * @param column    The column of the component type
+	 * @param component The component
+	 * @param tick      The added tick
+	 */
+	void set(int slot, int column, IComponent component, int tick) {
+		mColumns[column][slot] = component;
+		mAddedTicks[column][slot] = tick;
+		mChangedTicks[column][slot] = tick;
+	}
+
+	/**
+	 * @param slot   The slot of the entity
+	 * @param column The column of the component type
+	 *
+	 * @return The added tick of the component
+	 */
+	int getAddedTick(int slot, int column) {
+		return mAddedTicks[column][slot];
+	}
+
+	/**
+	 * @param slot   The slot of the entity
+	 * @param column The column of the component type
+	 *
+	 * @return The changed tick of the component
+	 */
+	int getChangedTick(int slot, int column) {
+		return mChangedTicks[column][slot];
+	}
+
+	/**
+	 * Sets the changed tick of the component in the given column of the given slot.
+	 *
+	 * @param slot   The slot of the entity
+	 * @param column The column of the component type
+	 * @param tick   The changed tick
+	 */
+	void setChangedTick(int slot, int column, int tick) {
+		mChangedTicks[column][slot] = tick;
+	}
+
+	/**
+	 * Copies the components, and their ticks, which an entity of another
+	 * archetype has in common with this archetype into a slot of this chunk.
+	 *
+	 * @param slot       The slot to fill
+	 * @param source     The chunk of the entity
+	 * @param sourceSlot The slot of the entity in its chunk
+	 */
+	void copyFrom(int slot, ArchetypeChunk source, int sourceSlot) {
+		final int[] types = mArchetype.getTypes();
+		final Archetype sourceArchetype = source.mArchetype;
+		for (int column = 0; column < types.length; ++column) {
+			final int sourceColumn = sourceArchetype.getColumnOf(types[column]);
+			if (sourceColumn >= 0) {
+				mColumns[column][slot] = source.mColumns[sourceColumn][sourceSlot];
+				mAddedTicks[column][slot] = source.mAddedTicks[sourceColumn][sourceSlot];
+				mChangedTicks[column][slot] = source.mChangedTicks[sourceColumn][sourceSlot];
+			}
+		}
+	}
+
+	/**
+	 * Moves the entity in the last slot of the given chunk into a slot of this chunk.
+	 *
+	 * @param slot   The slot to fill
+	 * @param source The chunk of the same archetype to take the last entity from
+	 *
+	 * @return The moved entity
+	 */
+	IEntity fill(int slot, ArchetypeChunk source) {
+		final int last = source.mSize - 1;
+		final IEntity moved = source.mEntities[last];
+		mEntities[slot] = moved;
+		for (int i = 0; i < mColumns.length; ++i) {
+			mColumns[i][slot] = source.mColumns[i][last];
+			mAddedTicks[i][slot] = source.mAddedTicks[i][last];
+			mChangedTicks[i][slot] = source.mChangedTicks[i][last];
+		}
+		return moved;
+	}
+
+	/**
+	 * Clears the last slot of the chunk.
+	 */
+	void removeLast() {
+		final int last = --mSize;
+		mEntities[last] = null;
+		for (int i = 0; i < mColumns.length; ++i) {
+			mColumns[i][last] = null;
+			mAddedTicks[i][last] = ComponentVersions.NEVER;
+			mChangedTicks[i][last] = ComponentVersions.NEVER;
+		}
+	}
+}
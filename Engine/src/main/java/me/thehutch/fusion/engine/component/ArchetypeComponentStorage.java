@@ -0,0 +1,140 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IComponentStorage;
+import me.thehutch.fusion.api.component.StorageType;
+
+/**
+ * Views the components of a single type held by the chunks of the
+ * {@link ArchetypeStorage}, so the components are not held twice when the
+ * entities are grouped into archetypes.
+ * <p>
+ * A component can only be set once the entity has been moved into an
+ * archetype with the type, see {@link ArchetypeStorage#move(IEntity)}.
+ *
+ * @author thehutch
+ */
+final class ArchetypeComponentStorage implements IComponentStorage, ComponentVersions {
+	private final ArchetypeStorage mArchetypes;
+	private final StorageType mStorageType;
+	private final int mTypeIndex;
+
+	/**
+	 * Default constructor for {@link ArchetypeComponentStorage}.
+	 *
+	 * @param archetypes  The archetypes holding the components
+	 * @param storageType The storage type of the component type
+	 * @param typeIndex   The index of the component type
+	 */
+	ArchetypeComponentStorage(ArchetypeStorage archetypes, StorageType storageType, int typeIndex) {
+		mArchetypes = archetypes;
+		mStorageType = storageType;
+		mTypeIndex = typeIndex;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IComponent get(int entityId) {
+		return mArchetypes.get(entityId, mTypeIndex);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void set(int entityId, IComponent component) {
+		mArchetypes.set(entityId, mTypeIndex, component, NEVER);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove(int entityId) {
+		if (mArchetypes.get(entityId, mTypeIndex) != null) {
+			mArchetypes.set(entityId, mTypeIndex, null, NEVER);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reserve(int firstId, int count) {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return mArchetypes.size(mTypeIndex);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StorageType getStorageType() {
+		return mStorageType;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getMemoryUsage() {
+		return mArchetypes.getMemoryUsage(mTypeIndex);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void added(int entityId, int tick) {
+		mArchetypes.set(entityId, mTypeIndex, mArchetypes.get(entityId, mTypeIndex), tick);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void changed(int entityId, int tick) {
+		mArchetypes.changed(entityId, mTypeIndex, tick);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAddedTick(int entityId) {
+		return mArchetypes.getAddedTick(entityId, mTypeIndex);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getChangedTick(int entityId) {
+		return mArchetypes.getChangedTick(entityId, mTypeIndex);
+	}
+}
@@ -0,0 +1,357 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import gnu.trove.map.TMap;
+import gnu.trove.map.hash.THashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.component.IArchetypeChunk;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.util.container.Bag;
+
+/**
+ * Groups the entities of the component system into {@link Archetype}s by their
+ * set of components, so entities matching an {@link Aspect} can be iterated
+ * chunk by chunk over contiguous component columns.
+ * <p>
+ * The chunks hold the components of every entity which has been given a
+ * component, the storages of the component types only view the chunks, see
+ * {@link ArchetypeComponentStorage}. An entity is moved to the archetype of
+ * its new set of components as soon as a component is added or removed.
+ * <p>
+ * The chunks of an archetype are kept packed, removing an entity moves the last
+ * entity of the archetype into the freed slot.
+ *
+ * @author thehutch
+ */
+final class ArchetypeStorage {
+	private final TMap<BitSet, Archetype> mArchetypes;
+	private final TMap<BitSet, Archetype> mInactiveArchetypes;
+	private final Bag<Archetype> mArchetypesBag;
+	private final TMap<Aspect, Bag<Archetype>> mMatches;
+	private final BitSet mLookupBits;
+	private ArchetypeChunk[] mChunkOf;
+	private int[] mSlotOf;
+
+	/**
+	 * Default constructor for {@link ArchetypeStorage}.
+	 */
+	ArchetypeStorage() {
+		mArchetypes = new THashMap<>();
+		mInactiveArchetypes = new THashMap<>();
+		mArchetypesBag = new Bag<>();
+		mMatches = new THashMap<>();
+		mLookupBits = new BitSet();
+		mChunkOf = new ArchetypeChunk[64];
+		mSlotOf = new int[64];
+	}
+
+	/**
+	 * @return The number of archetypes, active and inactive
+	 */
+	int getArchetypeCount() {
+		return mArchetypesBag.size();
+	}
+
+	/**
+	 * Returns true if the entity of the given id is held by an active archetype.
+	 *
+	 * @param id The entity id
+	 *
+	 * @return True if the entity is iterated
+	 */
+	boolean isActive(int id) {
+		final ArchetypeChunk chunk = id < mChunkOf.length ? mChunkOf[id] : null;
+		return chunk != null && chunk.getArchetype().isActive();
+	}
+
+	/**
+	 * Moves the entity into the archetype of its current components, keeping
+	 * it active if it is. An entity which is not held by any archetype is
+	 * inserted into an inactive archetype.
+	 *
+	 * @param e The entity
+	 */
+	void move(IEntity e) {
+		move(e, isActive(e.getId()));
+	}
+
+	/**
+	 * Moves the entity into the active or inactive archetype of its current
+	 * components. The components it has in common with its previous archetype
+	 * are moved with it, the other components are null until they are set.
+	 *
+	 * @param e      The entity
+	 * @param active True to move the entity into an active archetype
+	 */
+	void move(IEntity e, boolean active) {
+		final int id = e.getId();
+		final BitSet componentBits = mLookupBits;
+		ComponentMasks.toBits(e.getComponentMask(), componentBits);
+		final ArchetypeChunk current = id < mChunkOf.length ? mChunkOf[id] : null;
+		if (current != null) {
+			final Archetype archetype = current.getArchetype();
+			if (archetype.isActive() == active && archetype.getSignature().equals(componentBits)) {
+				return;
+			}
+		}
+
+		final TMap<BitSet, Archetype> archetypes = active ? mArchetypes : mInactiveArchetypes;
+		Archetype archetype = archetypes.get(componentBits);
+		if (archetype == null) {
+			archetype = createArchetype(componentBits, active);
+		}
+		final ArchetypeChunk chunk = archetype.acquireChunk();
+		final int slot = chunk.append(e);
+		if (current != null) {
+			chunk.copyFrom(slot, current, mSlotOf[id]);
+			remove(e);
+		}
+
+		if (id >= mChunkOf.length) {
+			final int capacity = Math.max(id + 1, (mChunkOf.length * 3) / 2 + 1);
+			mChunkOf = Arrays.copyOf(mChunkOf, capacity);
+			mSlotOf = Arrays.copyOf(mSlotOf, capacity);
+		}
+		mChunkOf[id] = chunk;
+		mSlotOf[id] = slot;
+	}
+
+	/**
+	 * Removes the entity, and its components, from its archetype.
+	 *
+	 * @param e The entity
+	 */
+	void remove(IEntity e) {
+		final int id = e.getId();
+		final ArchetypeChunk chunk = id < mChunkOf.length ? mChunkOf[id] : null;
+		if (chunk == null) {
+			return;
+		}
+		final Archetype archetype = chunk.getArchetype();
+		final Bag<ArchetypeChunk> chunks = archetype.getChunks();
+		final ArchetypeChunk last = chunks.get(chunks.size() - 1);
+		final int slot = mSlotOf[id];
+
+		// Fill the hole with the last entity of the archetype to keep it packed
+		if (chunk != last || slot != last.size() - 1) {
+			final IEntity moved = chunk.fill(slot, last);
+			mChunkOf[moved.getId()] = chunk;
+			mSlotOf[moved.getId()] = slot;
+		}
+		last.removeLast();
+		archetype.releaseLast();
+		mChunkOf[id] = null;
+	}
+
+	/**
+	 * Returns the component of the given type of an entity.
+	 *
+	 * @param id        The entity id
+	 * @param typeIndex The index of the component type
+	 *
+	 * @return The component, null if the entity does not have the type
+	 */
+	IComponent get(int id, int typeIndex) {
+		final ArchetypeChunk chunk = id < mChunkOf.length ? mChunkOf[id] : null;
+		if (chunk != null) {
+			final int column = chunk.getArchetype().getColumnOf(typeIndex);
+			if (column >= 0) {
+				return chunk.get(mSlotOf[id], column);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the component of the given type of an entity, the archetype of the
+	 * entity must have the type.
+	 *
+	 * @param id        The entity id
+	 * @param typeIndex The index of the component type
+	 * @param component The component, null to clear it
+	 * @param tick      The added tick of the component
+	 *
+	 * @throws IllegalStateException If the archetype of the entity does not have the type
+	 */
+	void set(int id, int typeIndex, IComponent component, int tick) {
+		final ArchetypeChunk chunk = id < mChunkOf.length ? mChunkOf[id] : null;
+		final int column = chunk == null ? -1 : chunk.getArchetype().getColumnOf(typeIndex);
+		if (column < 0) {
+			throw new IllegalStateException("The archetype of entity " + id + " does not have the component type");
+		}
+		chunk.set(mSlotOf[id], column, component, tick);
+	}
+
+	/**
+	 * Sets the changed tick of the component of the given type of an entity,
+	 * an entity without the type is ignored.
+	 *
+	 * @param id        The entity id
+	 * @param typeIndex The index of the component type
+	 * @param tick      The changed tick
+	 */
+	void changed(int id, int typeIndex, int tick) {
+		final ArchetypeChunk chunk = id < mChunkOf.length ? mChunkOf[id] : null;
+		if (chunk != null) {
+			final int column = chunk.getArchetype().getColumnOf(typeIndex);
+			if (column >= 0) {
+				chunk.setChangedTick(mSlotOf[id], column, tick);
+			}
+		}
+	}
+
+	/**
+	 * @param id        The entity id
+	 * @param typeIndex The index of the component type
+	 *
+	 * @return The added tick of the component, {@link ComponentVersions#NEVER} if the entity does not have the type
+	 */
+	int getAddedTick(int id, int typeIndex) {
+		final ArchetypeChunk chunk = id < mChunkOf.length ? mChunkOf[id] : null;
+		if (chunk != null) {
+			final int column = chunk.getArchetype().getColumnOf(typeIndex);
+			if (column >= 0) {
+				return chunk.getAddedTick(mSlotOf[id], column);
+			}
+		}
+		return ComponentVersions.NEVER;
+	}
+
+	/**
+	 * @param id        The entity id
+	 * @param typeIndex The index of the component type
+	 *
+	 * @return The changed tick of the component, {@link ComponentVersions#NEVER} if the entity does not have the type
+	 */
+	int getChangedTick(int id, int typeIndex) {
+		final ArchetypeChunk chunk = id < mChunkOf.length ? mChunkOf[id] : null;
+		if (chunk != null) {
+			final int column = chunk.getArchetype().getColumnOf(typeIndex);
+			if (column >= 0) {
+				return chunk.getChangedTick(mSlotOf[id], column);
+			}
+		}
+		return ComponentVersions.NEVER;
+	}
+
+	/**
+	 * @param typeIndex The index of the component type
+	 *
+	 * @return The number of entities with the component type
+	 */
+	int size(int typeIndex) {
+		final Bag<Archetype> archetypes = mArchetypesBag;
+		int size = 0;
+		for (int i = 0; i < archetypes.size(); ++i) {
+			final Archetype archetype = archetypes.get(i);
+			if (archetype.getColumnOf(typeIndex) >= 0) {
+				size += archetype.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Estimates the memory used by the columns of a component type and their
+	 * ticks, excluding the components themselves.
+	 *
+	 * @param typeIndex The index of the component type
+	 *
+	 * @return The estimated memory usage in bytes
+	 */
+	long getMemoryUsage(int typeIndex) {
+		final Bag<Archetype> archetypes = mArchetypesBag;
+		long memoryUsage = 0L;
+		for (int i = 0; i < archetypes.size(); ++i) {
+			final Archetype archetype = archetypes.get(i);
+			if (archetype.getColumnOf(typeIndex) >= 0) {
+				final Bag<ArchetypeChunk> chunks = archetype.getChunks();
+				for (int j = 0; j < chunks.size(); ++j) {
+					final int capacity = chunks.get(j).getCapacity();
+					memoryUsage += ComponentStorages.arraySize(capacity, ComponentStorages.REFERENCE_SIZE)
+								   + ComponentStorages.arraySize(capacity, Integer.BYTES) * 2L;
+				}
+			}
+		}
+		return memoryUsage;
+	}
+
+	/**
+	 * Performs the given action on every non-empty chunk of the active
+	 * archetypes matching the aspect.
+	 *
+	 * @param aspect The aspect to match
+	 * @param action The action to perform
+	 */
+	void forEachChunk(Aspect aspect, Consumer<? super IArchetypeChunk> action) {
+		Bag<Archetype> matches = mMatches.get(aspect);
+		if (matches == null) {
+			matches = new Bag<>();
+			final Bag<Archetype> archetypes = mArchetypesBag;
+			for (int i = 0; i < archetypes.size(); ++i) {
+				final Archetype archetype = archetypes.get(i);
+				if (archetype.isActive() && archetype.matches(aspect)) {
+					matches.add(archetype);
+				}
+			}
+			mMatches.put(aspect, matches);
+		}
+		final int numMatches = matches.size();
+		for (int i = 0; i < numMatches; ++i) {
+			final Bag<ArchetypeChunk> chunks = matches.get(i).getChunks();
+			final int numChunks = chunks.size();
+			for (int j = 0; j < numChunks; ++j) {
+				final ArchetypeChunk chunk = chunks.get(j);
+				if (chunk.size() > 0) {
+					action.accept(chunk);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Internal method to create a new archetype, an active archetype is added
+	 * to the cached matches of every aspect it matches.
+	 *
+	 * @param signature The bits of the component types
+	 * @param active    True if the entities of the archetype are iterated
+	 *
+	 * @return The new archetype
+	 */
+	private Archetype createArchetype(BitSet signature, boolean active) {
+		final Archetype archetype = new Archetype(signature, active);
+		mArchetypesBag.add(archetype);
+		if (!active) {
+			mInactiveArchetypes.put(archetype.getSignature(), archetype);
+			return archetype;
+		}
+		mArchetypes.put(archetype.getSignature(), archetype);
+		mMatches.forEachEntry((aspect, matches) -> {
+			if (archetype.matches(aspect)) {
+				matches.add(archetype);
+			}
+			return true;
+		});
+		return archetype;
+	}
+}
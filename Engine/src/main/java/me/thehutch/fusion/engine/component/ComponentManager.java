@@ -17,24 +17,65 @@
  */
 package me.thehutch.fusion.engine.component;
 
-import java.util.BitSet;
+import java.util.function.Consumer;
+import me.thehutch.fusion.api.component.Aspect;
 import me.thehutch.fusion.api.component.ComponentType;
+import me.thehutch.fusion.api.component.EntityTemplate;
+import me.thehutch.fusion.api.component.IArchetypeChunk;
 import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IComponentStorage;
 import me.thehutch.fusion.api.component.IEntity;
 import me.thehutch.fusion.api.component.Manager;
+import me.thehutch.fusion.api.component.StorageType;
 import me.thehutch.fusion.api.util.container.Bag;
+import me.thehutch.fusion.api.util.container.ImmutableBag;
 
 /**
+ * Stores the components of every entity indexed by their type and entity id.
+ * <p>
+ * The components of each type are held by an {@link IComponentStorage}, the
+ * {@link StorageType} is set by the type or by {@link #setStorageType}.
+ * <p>
+ * The tick each component was added and last changed is recorded by the
+ * storage alongside the component, see {@link #markChanged(IEntity, ComponentType)}.
+ * <p>
+ * Whilst processors are processed concurrently the structure is locked, adding
+ * or removing a component, or creating the storage of a new type, throws an
+ * {@link IllegalStateException}. The changes are recorded in a command buffer
+ * instead. The tick is advanced
+ * once every time the component system is processed.
+ * <p>
+ * When archetype storage is enabled the entities are grouped into chunks by
+ * their set of components, see {@link #forEachChunk(Aspect, Consumer)}. The
+ * chunks then hold the components, whatever the storage type, and an entity
+ * moves between archetypes as soon as a component is added or removed. Only
+ * the enabled entities added to the system are iterated.
+ *
  * @author thehutch
  */
 public final class ComponentManager extends Manager {
-	private final Bag<Bag<IComponent>> mComponentsByType = new Bag<>();
+	private final Bag<IComponentStorage> mComponentsByType = new Bag<>();
+	private final Bag<StorageType> mStorageTypes = new Bag<>();
+	private final Bag<ComponentMapper<?>> mMappersByType = new Bag<>();
 	private final Bag<IEntity> mDeleted = new Bag<>();
+	private final ArchetypeStorage mArchetypes;
+	private volatile boolean mIsStructureLocked;
+	private int mTick = 1;
 
 	/**
 	 * Default constructor for {@link ComponentManager}.
 	 */
 	public ComponentManager() {
+		this(false);
+	}
+
+	/**
+	 * Constructor for {@link ComponentManager}.
+	 * <p>
+	 * @param archetypeStorage True to group the entities into archetype chunks
+	 */
+	public ComponentManager(boolean archetypeStorage) {
+		mArchetypes = archetypeStorage ? new ArchetypeStorage() : null;
 	}
 
 	/**
@@ -42,6 +83,9 @@ public final class ComponentManager extends Manager {
 	 */
 	@Override
 	public void added(IEntity e) {
+		if (mArchetypes != null && e.isEnabled()) {
+			mArchetypes.move(e, true);
+		}
 	}
 
 	/**
@@ -49,6 +93,10 @@ public final class ComponentManager extends Manager {
 	 */
 	@Override
 	public void deleted(IEntity e) {
+		// The components are held until the deleted entities are cleaned
+		if (mArchetypes != null) {
+			mArchetypes.move(e, false);
+		}
 		mDeleted.add(e);
 	}
 
@@ -64,6 +112,9 @@ public final class ComponentManager extends Manager {
 	 */
 	@Override
 	public void enabled(IEntity e) {
+		if (mArchetypes != null) {
+			mArchetypes.move(e, true);
+		}
 	}
 
 	/**
@@ -71,6 +122,9 @@ public final class ComponentManager extends Manager {
 	 */
 	@Override
 	public void disabled(IEntity e) {
+		if (mArchetypes != null) {
+			mArchetypes.move(e, false);
+		}
 	}
 
 	/**
@@ -89,30 +143,203 @@ public final class ComponentManager extends Manager {
 	 * @return The component, null if not found
 	 */
 	public IComponent getComponent(IEntity e, ComponentType type) {
-		final Bag<IComponent> components = mComponentsByType.get(type.getIndex());
-		if (components != null) {
-			return components.get(e.getId());
+		final Bag<IComponentStorage> componentsByType = mComponentsByType;
+		if (componentsByType.isIndexWithinBounds(type.getIndex())) {
+			final IComponentStorage components = componentsByType.get(type.getIndex());
+			if (components != null) {
+				return components.get(e.getId());
+			}
 		}
 		return null;
 	}
 
 	/**
-	 * Returns a {@link Bag} of components mapped to the entities.
+	 * Returns the storage of the components mapped to the entities.
 	 * <p>
 	 * @param type The type of component
 	 * <p>
-	 * @return The bag of components
+	 * @return The storage of the components
 	 */
-	public Bag<IComponent> getComponentsByType(ComponentType type) {
-		final Bag<Bag<IComponent>> componentsByType = mComponentsByType;
-		Bag<IComponent> components = componentsByType.get(type.getIndex());
+	public IComponentStorage getComponentsByType(ComponentType type) {
+		final Bag<IComponentStorage> componentsByType = mComponentsByType;
+		final int index = type.getIndex();
+		componentsByType.ensureCapacity(index);
+		IComponentStorage components = componentsByType.get(index);
 		if (components == null) {
-			components = new Bag<>();
-			componentsByType.set(type.getIndex(), components);
+			checkStructureUnlocked();
+			if (mArchetypes != null) {
+				components = new ArchetypeComponentStorage(mArchetypes, getStorageType(type), index);
+			} else {
+				components = ComponentStorages.create(getStorageType(type));
+			}
+			componentsByType.set(index, components);
 		}
 		return components;
 	}
 
+	/**
+	 * Returns the mapper of the given component class, the mapper is created
+	 * once and shared by every processor of the system.
+	 * <p>
+	 * @param <T>  The type of component
+	 * @param type The component class
+	 * <p>
+	 * @return The component mapper
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends IComponent> ComponentMapper<T> getMapper(Class<T> type) {
+		final Bag<ComponentMapper<?>> mappersByType = mMappersByType;
+		final int index = ComponentType.getIndexFor(type);
+		mappersByType.ensureCapacity(index);
+		ComponentMapper<T> mapper = (ComponentMapper<T>) mappersByType.get(index);
+		if (mapper == null) {
+			mapper = ComponentMapper.getFor(type, this);
+			mappersByType.set(index, mapper);
+		}
+		return mapper;
+	}
+
+	/**
+	 * Returns the ticks the components of the given type were added and changed.
+	 * <p>
+	 * @param type The type of component
+	 * <p>
+	 * @return The versions of the components
+	 */
+	ComponentVersions getVersionsByType(ComponentType type) {
+		// Every storage created by the manager records the ticks of its components
+		return (ComponentVersions) getComponentsByType(type);
+	}
+
+	/**
+	 * @return The current tick
+	 */
+	public int getTick() {
+		return mTick;
+	}
+
+	/**
+	 * Internal method to advance the tick once the system has been processed.
+	 */
+	void advanceTick() {
+		++mTick;
+	}
+
+	/**
+	 * Marks the component of the given type of the entity as changed at the
+	 * current tick.
+	 * <p>
+	 * @param e    The entity
+	 * @param type The type of component
+	 */
+	public void markChanged(IEntity e, ComponentType type) {
+		markChanged(e.getId(), type);
+	}
+
+	/**
+	 * Marks the component of the given type of the entity id as changed at
+	 * the current tick.
+	 * <p>
+	 * @param entityId The entity id
+	 * @param type     The type of component
+	 */
+	public void markChanged(int entityId, ComponentType type) {
+		final Bag<IComponentStorage> componentsByType = mComponentsByType;
+		if (componentsByType.isIndexWithinBounds(type.getIndex())) {
+			final IComponentStorage components = componentsByType.get(type.getIndex());
+			// No entity has a component of a type without a storage
+			if (components != null) {
+				((ComponentVersions) components).changed(entityId, mTick);
+			}
+		}
+	}
+
+	/**
+	 * @return True if structural changes are rejected
+	 */
+	public boolean isStructureLocked() {
+		return mIsStructureLocked;
+	}
+
+	/**
+	 * Internal method to reject or allow structural changes, whilst processors
+	 * are processed concurrently.
+	 * <p>
+	 * @param locked True to reject structural changes
+	 */
+	void setStructureLocked(boolean locked) {
+		mIsStructureLocked = locked;
+	}
+
+	/**
+	 * Internal method to reject a structural change whilst processors are
+	 * processed concurrently.
+	 * <p>
+	 * @throws IllegalStateException If structural changes are rejected
+	 */
+	void checkStructureUnlocked() {
+		if (mIsStructureLocked) {
+			throw new IllegalStateException("Entities and components can not be added or removed whilst processors run concurrently, use the command buffer");
+		}
+	}
+
+	/**
+	 * Returns the storage type of the given component type.
+	 * <p>
+	 * @param type The type of component
+	 * <p>
+	 * @return The storage type
+	 */
+	public StorageType getStorageType(ComponentType type) {
+		final Bag<StorageType> storageTypes = mStorageTypes;
+		if (storageTypes.isIndexWithinBounds(type.getIndex())) {
+			final StorageType storageType = storageTypes.get(type.getIndex());
+			if (storageType != null) {
+				return storageType;
+			}
+		}
+		return type.getStorageType();
+	}
+
+	/**
+	 * Sets the storage type of the given component type, overriding the type
+	 * set by its annotation. This must be called before any component of the
+	 * type is added and before the component mappers are created.
+	 * <p>
+	 * @param type        The type of component
+	 * @param storageType The storage type
+	 * <p>
+	 * @throws IllegalStateException If the storage of the type already exists
+	 */
+	public void setStorageType(ComponentType type, StorageType storageType) {
+		final int index = type.getIndex();
+		if (mComponentsByType.isIndexWithinBounds(index) && mComponentsByType.get(index) != null) {
+			throw new IllegalStateException("Storage of the component type has already been created");
+		}
+		mStorageTypes.ensureCapacity(index);
+		mStorageTypes.set(index, storageType);
+	}
+
+	/**
+	 * Returns an estimate of the memory used to store the components of the
+	 * given type and their added and changed ticks, excluding the components
+	 * themselves.
+	 * <p>
+	 * @param type The type of component
+	 * <p>
+	 * @return The estimated memory usage in bytes
+	 */
+	public long getMemoryUsage(ComponentType type) {
+		final Bag<IComponentStorage> componentsByType = mComponentsByType;
+		if (componentsByType.isIndexWithinBounds(type.getIndex())) {
+			final IComponentStorage components = componentsByType.get(type.getIndex());
+			if (components != null) {
+				return components.getMemoryUsage();
+			}
+		}
+		return 0L;
+	}
+
 	/**
 	 * Fills the given {@link Bag} with the components the given entity has.
 	 * <p>
@@ -120,10 +347,12 @@ public final class ComponentManager extends Manager {
 	 * @param fillbag The bag to fill
 	 */
 	public void getComponentsFor(IEntity e, Bag<IComponent> fillbag) {
-		final Bag<Bag<IComponent>> componentsByType = mComponentsByType;
-		final BitSet componentBits = e.getComponentBits();
-		for (int i = componentBits.nextSetBit(0); i >= 0; i = componentBits.nextSetBit(i + 1)) {
-			fillbag.add(componentsByType.get(i).get(e.getId()));
+		final Bag<IComponentStorage> componentsByType = mComponentsByType;
+		final long[] componentMask = e.getComponentMask();
+		for (int w = 0; w < componentMask.length; ++w) {
+			for (long word = componentMask[w]; word != 0L; word &= word - 1L) {
+				fillbag.add(componentsByType.get((w << 6) + Long.numberOfTrailingZeros(word)).get(e.getId()));
+			}
 		}
 	}
 
@@ -135,17 +364,52 @@ public final class ComponentManager extends Manager {
 	 * @param component The component
 	 */
 	public void addComponent(IEntity e, ComponentType type, IComponent component) {
-		final Bag<Bag<IComponent>> componentsByType = mComponentsByType;
-		componentsByType.ensureCapacity(type.getIndex());
-
-		Bag<IComponent> components = componentsByType.get(type.getIndex());
-		if (components == null) {
-			components = new Bag<>();
-			componentsByType.set(type.getIndex(), components);
+		checkStructureUnlocked();
+		final IComponentStorage components = getComponentsByType(type);
+		((Entity) e).setComponentBit(type.getIndex());
+		// Move the entity into the archetype with the component type
+		if (mArchetypes != null) {
+			mArchetypes.move(e);
 		}
-
 		components.set(e.getId(), component);
-		e.getComponentBits().set(type.getIndex());
+		((ComponentVersions) components).added(e.getId(), mTick);
+	}
+
+	/**
+	 * Adds the components of a template to newly spawned entities. The entities
+	 * with reused ids come first, the storage of each component type is
+	 * reserved for the contiguous range of the remaining ids before any
+	 * component is added.
+	 * <p>
+	 * @param template  The template of the entities
+	 * @param entities  The spawned entities
+	 * @param numReused The number of entities with reused ids
+	 */
+	public void addComponents(EntityTemplate template, ImmutableBag<IEntity> entities, int numReused) {
+		checkStructureUnlocked();
+		final int numEntities = entities.size();
+		final int numComponents = template.getComponentCount();
+		for (int i = 0; i < numEntities; ++i) {
+			((Entity) entities.get(i)).setComponentBits(template);
+		}
+		// Move the entities into the archetype of the template
+		if (mArchetypes != null) {
+			for (int i = 0; i < numEntities; ++i) {
+				mArchetypes.move(entities.get(i));
+			}
+		}
+		for (int c = 0; c < numComponents; ++c) {
+			final IComponentStorage components = getComponentsByType(template.getType(c));
+			final ComponentVersions versions = (ComponentVersions) components;
+			if (numReused < numEntities) {
+				components.reserve(entities.get(numReused).getId(), numEntities - numReused);
+			}
+			for (int i = 0; i < numEntities; ++i) {
+				final int entityId = entities.get(i).getId();
+				components.set(entityId, template.newComponent(c));
+				versions.added(entityId, mTick);
+			}
+		}
 	}
 
 	/**
@@ -155,29 +419,61 @@ public final class ComponentManager extends Manager {
 	 * @param type The type of component to remove
 	 */
 	public void removeComponent(IEntity e, ComponentType type) {
-		final BitSet componentBits = e.getComponentBits();
+		checkStructureUnlocked();
 		final int index = type.getIndex();
-		if (componentBits.get(index)) {
-			mComponentsByType.get(index).set(e.getId(), null);
-			componentBits.clear(index);
+		if (ComponentMasks.contains(e.getComponentMask(), index)) {
+			((Entity) e).clearComponentBit(index);
+			// Move the entity into the archetype without the component type
+			if (mArchetypes != null) {
+				mArchetypes.move(e);
+			} else {
+				mComponentsByType.get(index).remove(e.getId());
+			}
+		}
+	}
+
+	/**
+	 * @return True if the entities are grouped into archetype chunks
+	 */
+	public boolean isArchetypeStorage() {
+		return mArchetypes != null;
+	}
+
+	/**
+	 * Performs the given action on every archetype chunk whose components
+	 * match the given {@link Aspect}.
+	 * <p>
+	 * @param aspect The aspect to match
+	 * @param action The action to perform on each chunk
+	 */
+	public void forEachChunk(Aspect aspect, Consumer<? super IArchetypeChunk> action) {
+		if (mArchetypes == null) {
+			throw new IllegalStateException("Archetype storage is not enabled");
 		}
+		mArchetypes.forEachChunk(aspect, action);
 	}
 
 	/**
 	 * Removes all the deleted entities from the {@link EntityManager}.
 	 */
 	public void clean() {
-		final Bag<Bag<IComponent>> componentsByType = mComponentsByType;
+		final Bag<IComponentStorage> componentsByType = mComponentsByType;
 		final Bag<IEntity> deleted = mDeleted;
 		if (!deleted.isEmpty()) {
 			final int numDeleted = deleted.size();
 			for (int i = 0; i < numDeleted; ++i) {
 				final IEntity e = deleted.get(i);
-				final BitSet componentBits = e.getComponentBits();
-				for (int j = componentBits.nextSetBit(0); j >= 0; j = componentBits.nextSetBit(j + 1)) {
-					componentsByType.get(j).set(e.getId(), null);
+				if (mArchetypes != null) {
+					mArchetypes.remove(e);
+				} else {
+					final long[] componentMask = e.getComponentMask();
+					for (int w = 0; w < componentMask.length; ++w) {
+						for (long word = componentMask[w]; word != 0L; word &= word - 1L) {
+							componentsByType.get((w << 6) + Long.numberOfTrailingZeros(word)).remove(e.getId());
+						}
+					}
 				}
-				componentBits.clear();
+				((Entity) e).clearComponentBits();
 			}
 			deleted.clear();
 		}
@@ -20,16 +20,25 @@ package me.thehutch.fusion.engine.component;
 import me.thehutch.fusion.api.component.ComponentType;
 import me.thehutch.fusion.api.component.IComponent;
 import me.thehutch.fusion.api.component.IComponentMapper;
+import me.thehutch.fusion.api.component.IComponentStorage;
 import me.thehutch.fusion.api.component.IEntity;
-import me.thehutch.fusion.api.util.container.Bag;
 
 /**
+ * Maps the entities to their component of a single type.
+ * <p>
+ * The storage of the type is resolved when the mapper is created, and the
+ * components are not cast when they are accessed, the storage only holds
+ * components of the mapped type. The components of a dense storage are read
+ * directly from the array of the storage by {@link #get(IEntity)}.
+ *
  * @author thehutch
  * @param <T> The type of component this mapper maps to
  */
 public final class ComponentMapper<T extends IComponent> implements IComponentMapper<T> {
-	private final Bag<IComponent> mComponents;
-	private final Class<T> mClassType;
+	private final IComponentStorage mComponents;
+	private final DenseComponentStorage mDenseComponents;
+	private final ComponentVersions mVersions;
+	private final ComponentManager mManager;
 
 	/**
 	 * Default constructor for {@link ComponentMapper}.
@@ -38,29 +47,72 @@ public final class ComponentMapper<T extends IComponent> implements IComponentMa
 	 * @param manager The component manager
 	 */
 	private ComponentMapper(Class<T> type, ComponentManager manager) {
-		mComponents = manager.getComponentsByType(ComponentType.getTypeFor(type));
-		mClassType = type;
+		final ComponentType componentType = ComponentType.getTypeFor(type);
+		mComponents = manager.getComponentsByType(componentType);
+		mDenseComponents = mComponents instanceof DenseComponentStorage ? (DenseComponentStorage) mComponents : null;
+		mVersions = manager.getVersionsByType(componentType);
+		mManager = manager;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public T get(IEntity e) {
-		final int entityID = e.getId();
-		final IComponent component = mComponents.get(entityID);
-		return mClassType.cast(component);
+		final DenseComponentStorage denseComponents = mDenseComponents;
+		if (denseComponents != null) {
+			return (T) denseComponents.getComponentArray()[e.getId()];
+		}
+		return (T) mComponents.get(e.getId());
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public T getSafe(IEntity e) {
-		if (mComponents.isIndexWithinBounds(e.getId())) {
-			return mClassType.cast(mComponents.get(e.getId()));
+		if (e == null) {
+			return null;
 		}
-		return null;
+		return (T) mComponents.get(e.getId());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T getMutable(IEntity e) {
+		mVersions.changed(e.getId(), mManager.getTick());
+		return get(e);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void markChanged(IEntity e) {
+		mVersions.changed(e.getId(), mManager.getTick());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isChangedSince(IEntity e, int tick) {
+		final int changedTick = mVersions.getChangedTick(e.getId());
+		return changedTick != ComponentVersions.NEVER && changedTick >= tick;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isAddedSince(IEntity e, int tick) {
+		final int addedTick = mVersions.getAddedTick(e.getId());
+		return addedTick != ComponentVersions.NEVER && addedTick >= tick;
 	}
 
 	/**
@@ -0,0 +1,92 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.BitSet;
+
+/**
+ * Utility methods for the component masks of the entities, the components as
+ * words of bits in the same layout as {@link BitSet#toLongArray()}.
+ *
+ * @author thehutch
+ */
+final class ComponentMasks {
+	/**
+	 * Private constructor for {@link ComponentMasks}.
+	 */
+	private ComponentMasks() {
+	}
+
+	/**
+	 * Returns true if the mask contains the component type of the given index.
+	 *
+	 * @param mask  The component mask
+	 * @param index The index of the component type
+	 *
+	 * @return True if the bit of the index is set
+	 */
+	static boolean contains(long[] mask, int index) {
+		final int word = index >>> 6;
+		return word < mask.length && (mask[word] & (1L << index)) != 0L;
+	}
+
+	/**
+	 * Returns true if both masks contain the same component types, the
+	 * masks may differ in the number of trailing empty words.
+	 *
+	 * @param a The first mask
+	 * @param b The second mask
+	 *
+	 * @return True if the masks are equal
+	 */
+	static boolean equals(long[] a, long[] b) {
+		final int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; ++i) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		for (int i = length; i < a.length; ++i) {
+			if (a[i] != 0L) {
+				return false;
+			}
+		}
+		for (int i = length; i < b.length; ++i) {
+			if (b[i] != 0L) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the bits of the given bitset to those of the mask, without
+	 * allocating a new bitset.
+	 *
+	 * @param mask The component mask
+	 * @param bits The bitset to set
+	 */
+	static void toBits(long[] mask, BitSet bits) {
+		bits.clear();
+		for (int w = 0; w < mask.length; ++w) {
+			for (long word = mask[w]; word != 0L; word &= word - 1L) {
+				bits.set((w << 6) + Long.numberOfTrailingZeros(word));
+			}
+		}
+	}
+}
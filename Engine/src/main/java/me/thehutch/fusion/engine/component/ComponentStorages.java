@@ -0,0 +1,74 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import me.thehutch.fusion.api.component.IComponentStorage;
+import me.thehutch.fusion.api.component.StorageType;
+
+/**
+ * Utility methods for the {@link IComponentStorage} implementations.
+ *
+ * @author thehutch
+ */
+final class ComponentStorages {
+	/**
+	 * The estimated size of an object reference, assuming compressed pointers.
+	 */
+	static final int REFERENCE_SIZE = 4;
+	/**
+	 * The estimated size of the header of an array.
+	 */
+	private static final int ARRAY_HEADER_SIZE = 16;
+
+	/**
+	 * Private constructor for {@link ComponentStorages}.
+	 */
+	private ComponentStorages() {
+	}
+
+	/**
+	 * Creates a new empty storage of the given type.
+	 *
+	 * @param type The type of the storage
+	 *
+	 * @return A new storage
+	 */
+	static IComponentStorage create(StorageType type) {
+		switch (type) {
+			case SPARSE_SET:
+				return new SparseComponentStorage();
+			case HASH:
+				return new HashComponentStorage();
+			case DENSE:
+			default:
+				return new DenseComponentStorage();
+		}
+	}
+
+	/**
+	 * Estimates the memory used by an array.
+	 *
+	 * @param length      The length of the array
+	 * @param elementSize The size of each element
+	 *
+	 * @return The estimated size in bytes
+	 */
+	static long arraySize(int length, int elementSize) {
+		return ARRAY_HEADER_SIZE + (long) length * elementSize;
+	}
+}
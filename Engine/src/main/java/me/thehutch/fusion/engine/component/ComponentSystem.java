@@ -19,14 +19,20 @@ package me.thehutch.fusion.engine.component;
 
 import gnu.trove.map.TMap;
 import gnu.trove.map.hash.THashMap;
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.component.CommandBuffer;
 import me.thehutch.fusion.api.component.EntityProcessor;
+import me.thehutch.fusion.api.component.EntityTemplate;
+import me.thehutch.fusion.api.component.IArchetypeChunk;
 import me.thehutch.fusion.api.component.IComponentSystem;
 import me.thehutch.fusion.api.component.IEntity;
 import me.thehutch.fusion.api.component.IEntityObserver;
 import me.thehutch.fusion.api.component.Manager;
-import me.thehutch.fusion.api.component.annotations.Mapper;
 import me.thehutch.fusion.api.util.container.Bag;
 import me.thehutch.fusion.api.util.container.ImmutableBag;
 
@@ -44,9 +50,46 @@ public final class ComponentSystem implements IComponentSystem {
 	 */
 	private final TMap<Class<?>, EntityProcessor> mProcessors = new THashMap<>();
 	private final Bag<EntityProcessor> mProcessorsBag = new Bag<>();
+	private final Bag<EntityProcessor> mProcessorsByIndex = new Bag<>();
+	/**
+	 * The processors interested in each set of component bits
+	 */
+	private final TMap<BitSet, EntityProcessor[]> mInterested = new THashMap<>();
+	/**
+	 * The processors whose aspect references each component type
+	 */
+	private final Bag<Bag<EntityProcessor>> mProcessorsByType = new Bag<>();
+	private final BitSet mNotified = new BitSet();
+	/**
+	 * The queries of this system, shared by equal aspects
+	 */
+	private final TMap<Aspect, EntityQuery> mQueries = new THashMap<>();
+	private final Bag<EntityQuery> mQueriesBag = new Bag<>();
+	private final Bag<Bag<EntityQuery>> mQueriesByType = new Bag<>();
+	private final TMap<BitSet, EntityQuery[]> mInterestedQueries = new THashMap<>();
+	private final BitSet mNotifiedQueries = new BitSet();
+	/**
+	 * The component bits of an entity, to look up the interested processors and queries
+	 */
+	private final BitSet mLookupBits = new BitSet();
+	/**
+	 * The parallel processing of the processors
+	 */
+	private final Bag<ProcessorAccess> mAccessByIndex = new Bag<>();
+	private final Bag<Bag<EntityProcessor>> mProcessorWaves = new Bag<>();
+	private int[] mLastReadWaves = new int[0];
+	private int[] mLastWriteWaves = new int[0];
+	private ForkJoinPool mProcessorPool;
+	/**
+	 * The command buffers of the threads
+	 */
+	private final ThreadLocal<CommandBuffer> mCommandBuffer = ThreadLocal.withInitial(this::newCommandBuffer);
+	private final Bag<CommandBuffer> mCommandBuffers = new Bag<>();
+	private final Bag<Thread> mCommandBufferThreads = new Bag<>();
 	/**
 	 * The entities
 	 */
+	private final Bag<SpawnBatch> mSpawned = new Bag<>();
 	private final Bag<IEntity> mAdded = new Bag<>();
 	private final Bag<IEntity> mDeleted = new Bag<>();
 	private final Bag<IEntity> mChanged = new Bag<>();
@@ -65,7 +108,16 @@ public final class ComponentSystem implements IComponentSystem {
 	 * Default constructor for {@link ComponentSystem}.
 	 */
 	public ComponentSystem() {
-		mComponentManager = new ComponentManager();
+		this(false);
+	}
+
+	/**
+	 * Constructor for {@link ComponentSystem}.
+	 * <p>
+	 * @param archetypeStorage True to group the entities into archetype chunks
+	 */
+	public ComponentSystem(boolean archetypeStorage) {
+		mComponentManager = new ComponentManager(archetypeStorage);
 		addManager(mComponentManager);
 
 		mEntityManager = new EntityManager();
@@ -113,6 +165,7 @@ public final class ComponentSystem implements IComponentSystem {
 	 */
 	@Override
 	public void addEntity(IEntity e) {
+		mComponentManager.checkStructureUnlocked();
 		mAdded.add(e);
 	}
 
@@ -121,6 +174,7 @@ public final class ComponentSystem implements IComponentSystem {
 	 */
 	@Override
 	public void deleteEntity(IEntity e) {
+		mComponentManager.checkStructureUnlocked();
 		mDeleted.add(e);
 	}
 
@@ -129,6 +183,7 @@ public final class ComponentSystem implements IComponentSystem {
 	 */
 	@Override
 	public void changeEntity(IEntity e) {
+		mComponentManager.checkStructureUnlocked();
 		mChanged.add(e);
 	}
 
@@ -137,6 +192,7 @@ public final class ComponentSystem implements IComponentSystem {
 	 */
 	@Override
 	public void enable(IEntity e) {
+		mComponentManager.checkStructureUnlocked();
 		mEnabled.add(e);
 	}
 
@@ -145,6 +201,7 @@ public final class ComponentSystem implements IComponentSystem {
 	 */
 	@Override
 	public void disable(IEntity e) {
+		mComponentManager.checkStructureUnlocked();
 		mDisabled.add(e);
 	}
 
@@ -156,14 +213,113 @@ public final class ComponentSystem implements IComponentSystem {
 		return (Entity) mEntityManager.getEntity(entityId);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Entity getEntityByHandle(long handle) {
+		return (Entity) mEntityManager.getEntity(handle);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public Entity createEntity() {
+		mComponentManager.checkStructureUnlocked();
 		return mEntityManager.createEntityInstance();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void spawn(EntityTemplate template, int count, Bag<IEntity> fillbag) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Number of spawned entities must not be negative");
+		}
+		if (count == 0) {
+			return;
+		}
+		mComponentManager.checkStructureUnlocked();
+		final Bag<IEntity> entities = new Bag<>(count);
+		final int numReused = mEntityManager.createEntityInstances(count, entities);
+		mComponentManager.addComponents(template, entities, numReused);
+		mSpawned.add(new SpawnBatch(template, entities));
+		if (fillbag != null) {
+			fillbag.ensureCapacity(fillbag.size() + count);
+			fillbag.addAll(entities);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void despawn(ImmutableBag<IEntity> entities) {
+		mComponentManager.checkStructureUnlocked();
+		final Bag<IEntity> deleted = mDeleted;
+		final int numEntities = entities.size();
+		deleted.ensureCapacity(deleted.size() + numEntities);
+		for (int i = 0; i < numEntities; ++i) {
+			deleted.add(entities.get(i));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CommandBuffer getCommandBuffer() {
+		return mCommandBuffer.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public EntityQuery getQuery(Aspect aspect) {
+		EntityQuery query = mQueries.get(aspect);
+		if (query == null) {
+			query = new EntityQuery(aspect, mComponentManager, mQueriesBag.size());
+			mQueries.put(aspect, query);
+			mQueriesBag.add(query);
+			mInterestedQueries.clear();
+
+			// Index the query by the component types it references
+			final Bag<Bag<EntityQuery>> queriesByType = mQueriesByType;
+			final BitSet referenced = aspect.getReferencedTypes();
+			for (int i = referenced.nextSetBit(0); i >= 0; i = referenced.nextSetBit(i + 1)) {
+				queriesByType.ensureCapacity(i);
+				Bag<EntityQuery> queries = queriesByType.get(i);
+				if (queries == null) {
+					queries = new Bag<>();
+					queriesByType.set(i, queries);
+				}
+				queries.add(query);
+			}
+
+			// Insert the entities which are already in the system
+			final ImmutableBag<IEntity> entities = mEntityManager.getEntities();
+			final int numEntities = entities.size();
+			for (int i = 0; i < numEntities; ++i) {
+				final IEntity e = entities.get(i);
+				if (e != null && e.isEnabled() && aspect.matches(e.getComponentMask())) {
+					query.insert(e);
+				}
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getTick() {
+		return mComponentManager.getTick();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -226,6 +382,22 @@ public final class ComponentSystem implements IComponentSystem {
 
 		mProcessors.put(processor.getClass(), processor);
 		mProcessorsBag.add(processor);
+		mProcessorsByIndex.set(processor.getIndex(), processor);
+		mAccessByIndex.set(processor.getIndex(), ProcessorAccess.of(processor));
+		mInterested.clear();
+
+		// Index the processor by the component types it references
+		final Bag<Bag<EntityProcessor>> processorsByType = mProcessorsByType;
+		final BitSet referenced = processor.getAspect().getReferencedTypes();
+		for (int i = referenced.nextSetBit(0); i >= 0; i = referenced.nextSetBit(i + 1)) {
+			processorsByType.ensureCapacity(i);
+			Bag<EntityProcessor> processors = processorsByType.get(i);
+			if (processors == null) {
+				processors = new Bag<>();
+				processorsByType.set(i, processors);
+			}
+			processors.add(processor);
+		}
 
 		return processor;
 	}
@@ -237,40 +409,278 @@ public final class ComponentSystem implements IComponentSystem {
 	public void removeProcessor(EntityProcessor processor) {
 		mProcessors.remove(processor.getClass());
 		mProcessorsBag.remove(processor);
+		mProcessorsByIndex.set(processor.getIndex(), null);
+		mAccessByIndex.set(processor.getIndex(), null);
+		mInterested.clear();
+
+		final BitSet referenced = processor.getAspect().getReferencedTypes();
+		for (int i = referenced.nextSetBit(0); i >= 0; i = referenced.nextSetBit(i + 1)) {
+			mProcessorsByType.get(i).remove(processor);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void forEachChunk(Aspect aspect, Consumer<? super IArchetypeChunk> action) {
+		mComponentManager.forEachChunk(aspect, action);
+	}
+
+	/**
+	 * Sets the number of threads used to process the processors. With more than
+	 * one thread, processors whose declared reads and writes do not conflict
+	 * are processed concurrently on a work stealing pool. Conflicting processors
+	 * are still processed in the order they were added, and processors which
+	 * declare no access are processed alone on the calling thread.
+	 * <p>
+	 * Whilst processors are processed concurrently, entities and components can
+	 * not be added or removed directly, they must be recorded in the command
+	 * buffer, see {@link #getCommandBuffer()}. The storages of the component
+	 * types the processors declare are created before they are processed.
+	 * <p>
+	 * @param parallelism The number of threads, 1 to process sequentially
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be greater than 0");
+		}
+		if (mProcessorPool != null) {
+			mProcessorPool.shutdown();
+		}
+		mProcessorPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	/**
+	 * Disposes of the component system, shutting down the pool which the
+	 * processors are processed on.
+	 */
+	public void dispose() {
+		if (mProcessorPool != null) {
+			mProcessorPool.shutdown();
+			mProcessorPool = null;
+		}
 	}
 
 	/**
-	 * Update all entities and process all non-passive processors.
+	 * Update all entities and process all non-passive processors. The commands
+	 * recorded whilst processing are then played back, the changes are seen
+	 * by the processors the next time the system is processed.
 	 */
 	public void process() {
-		check(mAdded, (observer, e) -> observer.added(e));
-		check(mChanged, (observer, e) -> observer.changed(e));
-		check(mDisabled, (observer, e) -> observer.disabled(e));
-		check(mEnabled, (observer, e) -> observer.enabled(e));
-		check(mDeleted, (observer, e) -> observer.deleted(e));
+		checkSpawned();
+		check(mAdded, (observer, e) -> observer.added(e), Interest.COMPONENTS);
+		check(mChanged, (observer, e) -> observer.changed(e), Interest.CHANGES);
+		check(mDisabled, (observer, e) -> observer.disabled(e), Interest.MEMBERS);
+		check(mEnabled, (observer, e) -> observer.enabled(e), Interest.COMPONENTS);
+		check(mDeleted, (observer, e) -> observer.deleted(e), Interest.MEMBERS);
 		mComponentManager.clean();
 
 		// Process the processors
+		if (mProcessorPool != null) {
+			processParallel(mProcessorPool);
+		} else {
+			final ImmutableBag<EntityProcessor> processorBag = mProcessorsBag;
+			final int numProcessors = processorBag.size();
+			for (int i = 0; i < numProcessors; ++i) {
+				final EntityProcessor processor = processorBag.get(i);
+				if (!processor.isPassive()) {
+					processor.process();
+				}
+			}
+		}
+		playbackCommands();
+		mComponentManager.advanceTick();
+	}
+
+	/**
+	 * Internal method to play back the commands of every thread. The buffers
+	 * of the threads which have terminated are discarded once played back.
+	 */
+	private void playbackCommands() {
+		synchronized (mCommandBuffers) {
+			CommandBuffer.playback(mCommandBuffers, this);
+			for (int i = mCommandBuffers.size() - 1; i >= 0; --i) {
+				if (!mCommandBufferThreads.get(i).isAlive()) {
+					mCommandBuffers.remove(i);
+					mCommandBufferThreads.remove(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Internal method to create the command buffer of a thread.
+	 * <p>
+	 * @return A new command buffer
+	 */
+	private CommandBuffer newCommandBuffer() {
+		final CommandBuffer buffer = new CommandBuffer();
+		synchronized (mCommandBuffers) {
+			mCommandBuffers.add(buffer);
+			mCommandBufferThreads.add(Thread.currentThread());
+		}
+		return buffer;
+	}
+
+	/**
+	 * Internal method to process the non-passive processors in waves. Each
+	 * processor is placed in the wave after the last wave which writes a type it
+	 * accesses, or reads a type it writes. The processors of a wave do not
+	 * conflict and are processed concurrently, an exclusive processor first
+	 * completes the pending waves and is then processed alone.
+	 * <p>
+	 * @param pool The pool to process the waves on
+	 */
+	private void processParallel(ForkJoinPool pool) {
+		final Bag<Bag<EntityProcessor>> waves = mProcessorWaves;
 		final ImmutableBag<EntityProcessor> processorBag = mProcessorsBag;
 		final int numProcessors = processorBag.size();
+		int numWaves = 0;
 		for (int i = 0; i < numProcessors; ++i) {
 			final EntityProcessor processor = processorBag.get(i);
-			if (!processor.isPassive()) {
+			if (processor.isPassive()) {
+				continue;
+			}
+			final ProcessorAccess access = mAccessByIndex.get(processor.getIndex());
+			access.createStorages(mComponentManager);
+			if (access.isExclusive()) {
+				processWaves(pool, numWaves);
+				numWaves = 0;
 				processor.process();
+				continue;
+			}
+			final BitSet reads = access.getReads();
+			final BitSet writes = access.getWrites();
+			ensureWaveCapacity(Math.max(reads.length(), writes.length()));
+			final int[] lastReads = mLastReadWaves;
+			final int[] lastWrites = mLastWriteWaves;
+
+			// Find the first wave which does not conflict
+			int wave = 0;
+			for (int t = reads.nextSetBit(0); t >= 0; t = reads.nextSetBit(t + 1)) {
+				wave = Math.max(wave, lastWrites[t] + 1);
+			}
+			for (int t = writes.nextSetBit(0); t >= 0; t = writes.nextSetBit(t + 1)) {
+				wave = Math.max(wave, Math.max(lastWrites[t], lastReads[t]) + 1);
+			}
+			for (int t = reads.nextSetBit(0); t >= 0; t = reads.nextSetBit(t + 1)) {
+				lastReads[t] = Math.max(lastReads[t], wave);
 			}
+			for (int t = writes.nextSetBit(0); t >= 0; t = writes.nextSetBit(t + 1)) {
+				lastWrites[t] = wave;
+			}
+			while (waves.size() <= wave) {
+				waves.add(new Bag<>());
+			}
+			waves.get(wave).add(processor);
+			numWaves = Math.max(numWaves, wave + 1);
+		}
+		processWaves(pool, numWaves);
+	}
+
+	/**
+	 * Internal method to process and clear the pending waves of processors.
+	 * <p>
+	 * @param pool     The pool to process the waves on
+	 * @param numWaves The number of pending waves
+	 */
+	private void processWaves(ForkJoinPool pool, int numWaves) {
+		final Bag<Bag<EntityProcessor>> waves = mProcessorWaves;
+		for (int i = 0; i < numWaves; ++i) {
+			final Bag<EntityProcessor> wave = waves.get(i);
+			if (wave.size() == 1) {
+				wave.get(0).process();
+			} else {
+				mComponentManager.setStructureLocked(true);
+				try {
+					pool.invoke(new ProcessorWave(wave, 0, wave.size()));
+				} finally {
+					mComponentManager.setStructureLocked(false);
+				}
+			}
+			wave.clear();
+		}
+		Arrays.fill(mLastReadWaves, -1);
+		Arrays.fill(mLastWriteWaves, -1);
+	}
+
+	/**
+	 * Internal method to ensure the last wave of every component type can be tracked.
+	 * <p>
+	 * @param numTypes The number of component types
+	 */
+	private void ensureWaveCapacity(int numTypes) {
+		final int length = mLastReadWaves.length;
+		if (numTypes > length) {
+			mLastReadWaves = Arrays.copyOf(mLastReadWaves, numTypes);
+			mLastWriteWaves = Arrays.copyOf(mLastWriteWaves, numTypes);
+			Arrays.fill(mLastReadWaves, length, numTypes, -1);
+			Arrays.fill(mLastWriteWaves, length, numTypes, -1);
+		}
+	}
+
+	/**
+	 * Internal method to add the batches of spawned entities. Each batch is
+	 * given to the managers at once, and only the processors interested in
+	 * the components of the template are notified of the batch.
+	 * <p>
+	 * An entity whose components were changed after it was spawned is added
+	 * on its own instead.
+	 */
+	private void checkSpawned() {
+		final Bag<SpawnBatch> spawned = mSpawned;
+		if (!spawned.isEmpty()) {
+			final ImmutableBag<Manager> managerBag = mManagersBag;
+			final int numBatches = spawned.size();
+			for (int b = 0; b < numBatches; ++b) {
+				final SpawnBatch batch = spawned.get(b);
+				final Bag<IEntity> entities = batch.mEntities;
+				final long[] templateMask = batch.mTemplate.getComponentMask();
+				for (int i = entities.size() - 1; i >= 0; --i) {
+					if (!ComponentMasks.equals(entities.get(i).getComponentMask(), templateMask)) {
+						mAdded.add(entities.remove(i));
+					}
+				}
+				if (entities.isEmpty()) {
+					continue;
+				}
+
+				// Notify the managers
+				final int numManagers = managerBag.size();
+				for (int m = 0; m < numManagers; ++m) {
+					managerBag.get(m).addedAll(entities);
+				}
+
+				// Notify the processors
+				final EntityProcessor[] interested = getInterested(entities.get(0));
+				for (int p = 0; p < interested.length; ++p) {
+					interested[p].addedAll(entities);
+				}
+
+				// Update the queries
+				final EntityQuery[] interestedQueries = getInterestedQueries(entities.get(0));
+				for (int q = 0; q < interestedQueries.length; ++q) {
+					interestedQueries[q].insertAll(entities);
+				}
+			}
+			spawned.clear();
 		}
 	}
 
 	/**
 	 * Internal method to process all the entities inside of the given {@link Bag}.
 	 * <p>
+	 * Every manager is notified, but only the processors and queries which can
+	 * be affected by the notification are notified, as selected by the interest.
+	 * <p>
 	 * @param entities  The entities to process
 	 * @param performer The function to execute on each entity
+	 * @param interest  The processors to notify
 	 */
-	private void check(Bag<IEntity> entities, Performer performer) {
+	private void check(Bag<IEntity> entities, Performer performer, Interest interest) {
 		if (!entities.isEmpty()) {
 			final ImmutableBag<Manager> managerBag = mManagersBag;
-			final ImmutableBag<EntityProcessor> processorBag = mProcessorsBag;
 			for (int i = 0; i < entities.size(); ++i) {
 				// Get the next entity
 				final IEntity e = entities.get(i);
@@ -282,40 +692,278 @@ public final class ComponentSystem implements IComponentSystem {
 				}
 
 				// Notify the processors
-				final int numProcessors = processorBag.size();
-				for (int j = 0, p = numProcessors; p > j; ++j) {
-					performer.perform(processorBag.get(j), e);
+				switch (interest) {
+					case COMPONENTS:
+						notifyContaining(e, performer, true);
+						notifyInterested(e, performer);
+						break;
+					case CHANGES:
+						notifyChanged(e, performer);
+						break;
+					case MEMBERS:
+						notifyContaining(e, performer, false);
+						break;
+				}
+
+				// Update the queries
+				if (!mQueriesBag.isEmpty()) {
+					updateQueries(e, interest);
 				}
+				((Entity) e).clearChangedMask();
 			}
 			entities.clear();
 		}
 	}
 
+	/**
+	 * Internal method to notify the processors which contain the entity.
+	 * <p>
+	 * @param e             The entity
+	 * @param performer     The function to execute on each processor
+	 * @param onlyUnmatched True to only notify the processors which no longer match the entity
+	 */
+	private void notifyContaining(IEntity e, Performer performer, boolean onlyUnmatched) {
+		final Bag<EntityProcessor> processorsByIndex = mProcessorsByIndex;
+		final BitSet processorBits = e.getProcessorBits();
+		final long[] componentMask = e.getComponentMask();
+		for (int p = processorBits.nextSetBit(0); p >= 0; p = processorBits.nextSetBit(p + 1)) {
+			final EntityProcessor processor = processorsByIndex.get(p);
+			if (processor != null && !(onlyUnmatched && processor.getAspect().matches(componentMask))) {
+				performer.perform(processor, e);
+			}
+		}
+	}
+
+	/**
+	 * Internal method to notify the processors interested in the components of the entity.
+	 * <p>
+	 * @param e         The entity
+	 * @param performer The function to execute on each processor
+	 */
+	private void notifyInterested(IEntity e, Performer performer) {
+		final EntityProcessor[] interested = getInterested(e);
+		for (int p = 0; p < interested.length; ++p) {
+			performer.perform(interested[p], e);
+		}
+	}
+
+	/**
+	 * Internal method to notify the processors whose aspect references any of
+	 * the component types added to or removed from the entity since it was last
+	 * notified. No other processor can change whether it matches the entity.
+	 * <p>
+	 * @param e         The entity
+	 * @param performer The function to execute on each processor
+	 */
+	private void notifyChanged(IEntity e, Performer performer) {
+		final Bag<Bag<EntityProcessor>> processorsByType = mProcessorsByType;
+		final BitSet notified = mNotified;
+		final long[] changedMask = ((Entity) e).getChangedMask();
+		for (int word = 0; word < changedMask.length; ++word) {
+			for (long bits = changedMask[word]; bits != 0L; bits &= bits - 1L) {
+				final int type = (word << 6) + Long.numberOfTrailingZeros(bits);
+				if (!processorsByType.isIndexWithinBounds(type)) {
+					continue;
+				}
+				final Bag<EntityProcessor> processors = processorsByType.get(type);
+				if (processors != null) {
+					final int numProcessors = processors.size();
+					for (int p = 0; p < numProcessors; ++p) {
+						final EntityProcessor processor = processors.get(p);
+						if (!notified.get(processor.getIndex())) {
+							notified.set(processor.getIndex());
+							performer.perform(processor, e);
+						}
+					}
+				}
+			}
+		}
+		notified.clear();
+	}
+
+	/**
+	 * Internal method to update the queries of the entity. The entity is
+	 * inserted into the queries interested in its components, checked against
+	 * the queries referencing the changed component types, and removed from
+	 * every query once it is disabled or deleted.
+	 * <p>
+	 * @param e        The entity
+	 * @param interest The queries to update
+	 */
+	private void updateQueries(IEntity e, Interest interest) {
+		if (interest == Interest.MEMBERS) {
+			final Bag<EntityQuery> queries = mQueriesBag;
+			final int numQueries = queries.size();
+			for (int q = 0; q < numQueries; ++q) {
+				queries.get(q).remove(e);
+			}
+			return;
+		}
+		// Disabled entities are not held within the queries
+		if (!e.isEnabled()) {
+			return;
+		}
+		if (interest == Interest.COMPONENTS) {
+			final EntityQuery[] interested = getInterestedQueries(e);
+			for (int q = 0; q < interested.length; ++q) {
+				interested[q].insert(e);
+			}
+		}
+		final Bag<Bag<EntityQuery>> queriesByType = mQueriesByType;
+		final BitSet notified = mNotifiedQueries;
+		final long[] changedMask = ((Entity) e).getChangedMask();
+		for (int word = 0; word < changedMask.length; ++word) {
+			for (long bits = changedMask[word]; bits != 0L; bits &= bits - 1L) {
+				final int type = (word << 6) + Long.numberOfTrailingZeros(bits);
+				if (!queriesByType.isIndexWithinBounds(type)) {
+					continue;
+				}
+				final Bag<EntityQuery> queries = queriesByType.get(type);
+				if (queries != null) {
+					final int numQueries = queries.size();
+					for (int q = 0; q < numQueries; ++q) {
+						final EntityQuery query = queries.get(q);
+						if (!notified.get(query.getIndex())) {
+							notified.set(query.getIndex());
+							query.check(e);
+						}
+					}
+				}
+			}
+		}
+		notified.clear();
+	}
+
+	/**
+	 * Internal method to get the queries whose aspect matches the components
+	 * of the entity, cached by the component bits.
+	 * <p>
+	 * @param e The entity
+	 * <p>
+	 * @return The interested queries
+	 */
+	private EntityQuery[] getInterestedQueries(IEntity e) {
+		final long[] componentMask = e.getComponentMask();
+		ComponentMasks.toBits(componentMask, mLookupBits);
+		EntityQuery[] interested = mInterestedQueries.get(mLookupBits);
+		if (interested == null) {
+			final Bag<EntityQuery> matches = new Bag<>();
+			final Bag<EntityQuery> queries = mQueriesBag;
+			final int numQueries = queries.size();
+			for (int i = 0; i < numQueries; ++i) {
+				final EntityQuery query = queries.get(i);
+				if (query.getAspect().matches(componentMask)) {
+					matches.add(query);
+				}
+			}
+			interested = new EntityQuery[matches.size()];
+			for (int i = 0; i < interested.length; ++i) {
+				interested[i] = matches.get(i);
+			}
+			mInterestedQueries.put((BitSet) mLookupBits.clone(), interested);
+		}
+		return interested;
+	}
+
+	/**
+	 * Internal method to get the processors whose aspect matches the
+	 * components of the entity, cached by the component bits.
+	 * <p>
+	 * @param e The entity
+	 * <p>
+	 * @return The interested processors
+	 */
+	private EntityProcessor[] getInterested(IEntity e) {
+		final long[] componentMask = e.getComponentMask();
+		ComponentMasks.toBits(componentMask, mLookupBits);
+		EntityProcessor[] interested = mInterested.get(mLookupBits);
+		if (interested == null) {
+			final Bag<EntityProcessor> matches = new Bag<>();
+			final Bag<EntityProcessor> processorBag = mProcessorsBag;
+			final int numProcessors = processorBag.size();
+			for (int i = 0; i < numProcessors; ++i) {
+				final EntityProcessor processor = processorBag.get(i);
+				if (processor.getAspect().matches(componentMask)) {
+					matches.add(processor);
+				}
+			}
+			interested = new EntityProcessor[matches.size()];
+			for (int i = 0; i < interested.length; ++i) {
+				interested[i] = matches.get(i);
+			}
+			mInterested.put((BitSet) mLookupBits.clone(), interested);
+		}
+		return interested;
+	}
+
 	/**
 	 * Internal function to set the {@link ComponentMapper}'s of the given target
 	 * <p>
-	 * @param target
-	 * @param system
+	 * @param target           The object to set the mappers of
+	 * @param componentManager The component manager of the mappers
 	 */
 	private static void config(Object target, ComponentManager componentManager) {
-		try {
-			final Class<?> clazz = target.getClass();
-			for (Field field : clazz.getDeclaredFields()) {
-				final Mapper annotation = field.getAnnotation(Mapper.class);
-				if (annotation != null) {
-					final ParameterizedType genericType = (ParameterizedType) field.getGenericType();
-					final Class componentType = (Class) genericType.getActualTypeArguments()[0];
-
-					field.setAccessible(true);
-					field.set(target, ComponentMapper.getFor(componentType, componentManager));
-					field.setAccessible(false);
-				}
+		MapperInjector.of(target.getClass()).inject(target, componentManager);
+	}
+
+	/**
+	 * Processes a wave of non-conflicting processors, splitting the wave
+	 * in half until each task processes a single processor.
+	 */
+	private static final class ProcessorWave extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Bag<EntityProcessor> mProcessors;
+		private final int mStart;
+		private final int mEnd;
+
+		private ProcessorWave(Bag<EntityProcessor> processors, int start, int end) {
+			mProcessors = processors;
+			mStart = start;
+			mEnd = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (mEnd - mStart == 1) {
+				mProcessors.get(mStart).process();
+			} else {
+				final int middle = (mStart + mEnd) >>> 1;
+				invokeAll(new ProcessorWave(mProcessors, mStart, middle), new ProcessorWave(mProcessors, middle, mEnd));
 			}
-		} catch (IllegalArgumentException | IllegalAccessException | SecurityException ex) {
-			throw new RuntimeException("Error whilst setting component mappers!", ex);
 		}
 	}
 
+	/**
+	 * A batch of entities spawned from the same template.
+	 */
+	private static final class SpawnBatch {
+		private final EntityTemplate mTemplate;
+		private final Bag<IEntity> mEntities;
+
+		private SpawnBatch(EntityTemplate template, Bag<IEntity> entities) {
+			mTemplate = template;
+			mEntities = entities;
+		}
+	}
+
+	/**
+	 * The processors to notify of an entity.
+	 */
+	private enum Interest {
+		/**
+		 * The processors interested in the components of the entity, and those which contain it.
+		 */
+		COMPONENTS,
+		/**
+		 * The processors referencing the component types which have changed.
+		 */
+		CHANGES,
+		/**
+		 * The processors which contain the entity.
+		 */
+		MEMBERS
+	}
+
 	/**
 	 * Functional interface to aid in updating entities.
 	 */
@@ -0,0 +1,63 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+/**
+ * The tick each entity was given a component of a type, and the tick the
+ * component was last changed. The ticks are stored by the storage of the
+ * type alongside each component and are forgotten once it is removed.
+ * <p>
+ * A tick of {@link #NEVER} means the entity does not have the component.
+ *
+ * @author thehutch
+ */
+interface ComponentVersions {
+	int NEVER = 0;
+
+	/**
+	 * Records that the entity was given the component at the given tick. The
+	 * component must already be held by the storage.
+	 *
+	 * @param entityId The entity id
+	 * @param tick     The current tick
+	 */
+	void added(int entityId, int tick);
+
+	/**
+	 * Records that the component of the entity was changed at the given tick,
+	 * an entity without the component is ignored.
+	 *
+	 * @param entityId The entity id
+	 * @param tick     The current tick
+	 */
+	void changed(int entityId, int tick);
+
+	/**
+	 * @param entityId The entity id
+	 *
+	 * @return The tick the entity was given the component, {@link #NEVER} if it has not
+	 */
+	int getAddedTick(int entityId);
+
+	/**
+	 * @param entityId The entity id
+	 *
+	 * @return The tick the component of the entity was last changed, {@link #NEVER} if it has not
+	 */
+	int getChangedTick(int entityId);
+}
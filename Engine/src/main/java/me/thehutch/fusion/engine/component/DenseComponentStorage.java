@@ -0,0 +1,179 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.Arrays;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IComponentStorage;
+import me.thehutch.fusion.api.component.StorageType;
+
+/**
+ * Stores the components in an array indexed by the entity id, with the added
+ * and changed ticks of each component in parallel arrays.
+ *
+ * @author thehutch
+ */
+final class DenseComponentStorage implements IComponentStorage, ComponentVersions {
+	private IComponent[] mComponents;
+	private int[] mAddedTicks;
+	private int[] mChangedTicks;
+	private int mSize;
+
+	/**
+	 * Default constructor for {@link DenseComponentStorage}.
+	 */
+	DenseComponentStorage() {
+		mComponents = new IComponent[64];
+		mAddedTicks = new int[64];
+		mChangedTicks = new int[64];
+		mSize = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IComponent get(int entityId) {
+		final IComponent[] components = mComponents;
+		return entityId < components.length ? components[entityId] : null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void set(int entityId, IComponent component) {
+		if (entityId >= mComponents.length) {
+			grow(Math.max(entityId + 1, mComponents.length * 2));
+		}
+		final IComponent previous = mComponents[entityId];
+		mComponents[entityId] = component;
+		if (previous == null && component != null) {
+			++mSize;
+		} else if (previous != null && component == null) {
+			mAddedTicks[entityId] = NEVER;
+			mChangedTicks[entityId] = NEVER;
+			--mSize;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove(int entityId) {
+		if (entityId < mComponents.length) {
+			set(entityId, null);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reserve(int firstId, int count) {
+		final int capacity = firstId + count;
+		if (capacity > mComponents.length) {
+			grow(Math.max(capacity, mComponents.length * 2));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void added(int entityId, int tick) {
+		mAddedTicks[entityId] = tick;
+		mChangedTicks[entityId] = tick;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void changed(int entityId, int tick) {
+		if (entityId < mComponents.length && mComponents[entityId] != null) {
+			mChangedTicks[entityId] = tick;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAddedTick(int entityId) {
+		final int[] addedTicks = mAddedTicks;
+		return entityId < addedTicks.length ? addedTicks[entityId] : NEVER;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getChangedTick(int entityId) {
+		final int[] changedTicks = mChangedTicks;
+		return entityId < changedTicks.length ? changedTicks[entityId] : NEVER;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StorageType getStorageType() {
+		return StorageType.DENSE;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getMemoryUsage() {
+		return ComponentStorages.arraySize(mComponents.length, ComponentStorages.REFERENCE_SIZE)
+			   + ComponentStorages.arraySize(mAddedTicks.length, Integer.BYTES)
+			   + ComponentStorages.arraySize(mChangedTicks.length, Integer.BYTES);
+	}
+
+	/**
+	 * Returns the array of the components indexed by the entity id. The array
+	 * is replaced when the storage grows, so it must not be retained.
+	 *
+	 * @return The array of the components
+	 */
+	IComponent[] getComponentArray() {
+		return mComponents;
+	}
+
+	/**
+	 * Internal method to grow the arrays to the given length.
+	 *
+	 * @param length The new length of the arrays
+	 */
+	private void grow(int length) {
+		mComponents = Arrays.copyOf(mComponents, length);
+		mAddedTicks = Arrays.copyOf(mAddedTicks, length);
+		mChangedTicks = Arrays.copyOf(mChangedTicks, length);
+	}
+}
@@ -17,11 +17,13 @@
  */
 package me.thehutch.fusion.engine.component;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.UUID;
 import me.thehutch.fusion.api.component.ComponentType;
+import me.thehutch.fusion.api.component.EntityHandle;
+import me.thehutch.fusion.api.component.EntityTemplate;
 import me.thehutch.fusion.api.component.IComponent;
-import me.thehutch.fusion.api.component.IComponentSystem;
 import me.thehutch.fusion.api.component.IEntity;
 import me.thehutch.fusion.api.util.container.Bag;
 
@@ -29,23 +31,23 @@ import me.thehutch.fusion.api.util.container.Bag;
  * @author thehutch
  */
 public final class Entity implements IEntity {
-	private final ComponentManager mComponentManager;
-	private final EntityManager mEntityManager;
-	private final IComponentSystem mSystem;
-	private final BitSet mComponentBits;
+	private final ComponentSystem mSystem;
 	private final BitSet mProcessorBits;
-	private final UUID mUUID;
+	private long[] mComponentMask;
+	private long[] mChangedMask;
+	private volatile UUID mUUID;
+	private final long mHandle;
 	private final int mID;
 
-	public Entity(ComponentSystem system, int id) {
-		mComponentManager = system.getComponentManager();
-		mEntityManager = system.getEntityManager();
+	public Entity(ComponentSystem system, int id, int generation) {
 		mSystem = system;
 
-		mComponentBits = new BitSet();
 		mProcessorBits = new BitSet();
+		mComponentMask = new long[1];
+		mChangedMask = new long[1];
 
-		mUUID = UUID.randomUUID();
+		mUUID = null;
+		mHandle = EntityHandle.of(id, generation);
 		mID = id;
 	}
 
@@ -57,12 +59,30 @@ public final class Entity implements IEntity {
 		return mID;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getHandle() {
+		return mHandle;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public UUID getUUID() {
-		return mUUID;
+		UUID uuid = mUUID;
+		if (uuid == null) {
+			synchronized (this) {
+				uuid = mUUID;
+				if (uuid == null) {
+					uuid = UUID.randomUUID();
+					mUUID = uuid;
+				}
+			}
+		}
+		return uuid;
 	}
 
 	/**
@@ -70,7 +90,7 @@ public final class Entity implements IEntity {
 	 */
 	@Override
 	public boolean isActive() {
-		return mEntityManager.isActive(mID);
+		return mSystem.getEntityManager().isActive(mHandle);
 	}
 
 	/**
@@ -78,7 +98,7 @@ public final class Entity implements IEntity {
 	 */
 	@Override
 	public boolean isEnabled() {
-		return mEntityManager.isEnabled(mID);
+		return mSystem.getEntityManager().isEnabled(mID);
 	}
 
 	/**
@@ -86,7 +106,15 @@ public final class Entity implements IEntity {
 	 */
 	@Override
 	public BitSet getComponentBits() {
-		return mComponentBits;
+		return BitSet.valueOf(mComponentMask);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long[] getComponentMask() {
+		return mComponentMask;
 	}
 
 	/**
@@ -142,7 +170,7 @@ public final class Entity implements IEntity {
 	 */
 	@Override
 	public IComponent getComponent(ComponentType type) {
-		return mComponentManager.getComponent(this, type);
+		return mSystem.getComponentManager().getComponent(this, type);
 	}
 
 	/**
@@ -158,7 +186,7 @@ public final class Entity implements IEntity {
 	 */
 	@Override
 	public void getComponents(Bag<IComponent> fillbag) {
-		mComponentManager.getComponentsFor(this, fillbag);
+		mSystem.getComponentManager().getComponentsFor(this, fillbag);
 	}
 
 	/**
@@ -174,7 +202,7 @@ public final class Entity implements IEntity {
 	 */
 	@Override
 	public Entity addComponent(IComponent component, ComponentType type) {
-		mComponentManager.addComponent(this, type, component);
+		mSystem.getComponentManager().addComponent(this, type, component);
 		return this;
 	}
 
@@ -199,7 +227,78 @@ public final class Entity implements IEntity {
 	 */
 	@Override
 	public Entity removeComponent(ComponentType type) {
-		mComponentManager.removeComponent(this, type);
+		mSystem.getComponentManager().removeComponent(this, type);
 		return this;
 	}
+
+	/**
+	 * Sets the bit of a component type in the component mask.
+	 *
+	 * @param index The index of the component type
+	 */
+	void setComponentBit(int index) {
+		final int word = index >>> 6;
+		if (word >= mComponentMask.length) {
+			mComponentMask = Arrays.copyOf(mComponentMask, word + 1);
+			mChangedMask = Arrays.copyOf(mChangedMask, word + 1);
+		}
+		final long bit = 1L << index;
+		mChangedMask[word] |= ~mComponentMask[word] & bit;
+		mComponentMask[word] |= bit;
+	}
+
+	/**
+	 * Clears the bit of a component type in the component mask.
+	 *
+	 * @param index The index of the component type
+	 */
+	void clearComponentBit(int index) {
+		final int word = index >>> 6;
+		if (word < mComponentMask.length) {
+			final long bit = 1L << index;
+			mChangedMask[word] |= mComponentMask[word] & bit;
+			mComponentMask[word] &= ~bit;
+		}
+	}
+
+	/**
+	 * Clears the component mask and changed mask of a deleted entity.
+	 */
+	void clearComponentBits() {
+		Arrays.fill(mComponentMask, 0L);
+		Arrays.fill(mChangedMask, 0L);
+	}
+
+	/**
+	 * Sets the component mask of a newly spawned entity to that of the
+	 * template, without marking the component types as changed.
+	 *
+	 * @param template The template the entity was spawned from
+	 */
+	void setComponentBits(EntityTemplate template) {
+		final long[] templateMask = template.getComponentMask();
+		if (templateMask.length > mComponentMask.length) {
+			mComponentMask = Arrays.copyOf(templateMask, templateMask.length);
+			mChangedMask = new long[templateMask.length];
+		} else {
+			System.arraycopy(templateMask, 0, mComponentMask, 0, templateMask.length);
+		}
+	}
+
+	/**
+	 * Returns the mask of the component types which have been added or
+	 * removed since the component system last notified the processors.
+	 *
+	 * @return The mask of the changed component types
+	 */
+	long[] getChangedMask() {
+		return mChangedMask;
+	}
+
+	/**
+	 * Clears the mask of the changed component types.
+	 */
+	void clearChangedMask() {
+		Arrays.fill(mChangedMask, 0L);
+	}
 }
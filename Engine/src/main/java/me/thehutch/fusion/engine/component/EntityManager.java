@@ -17,12 +17,20 @@
  */
 package me.thehutch.fusion.engine.component;
 
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import me.thehutch.fusion.api.component.EntityHandle;
 import me.thehutch.fusion.api.component.IEntity;
 import me.thehutch.fusion.api.component.Manager;
 import me.thehutch.fusion.api.util.container.Bag;
+import me.thehutch.fusion.api.util.container.ImmutableBag;
 
 /**
+ * Tracks the active entities and assigns their ids. Every id has a generation
+ * which is incremented when the entity with the id is deleted, so the handles
+ * of deleted entities are detected after the id is reused.
+ *
  * @author thehutch
  */
 public final class EntityManager extends Manager {
@@ -61,13 +69,38 @@ public final class EntityManager extends Manager {
 		++mAdded;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addedAll(ImmutableBag<IEntity> entities) {
+		final int numEntities = entities.size();
+		if (numEntities > 0) {
+			int highestID = 0;
+			for (int i = 0; i < numEntities; ++i) {
+				highestID = Math.max(highestID, entities.get(i).getId());
+			}
+			mEntities.ensureCapacity(highestID);
+			for (int i = 0; i < numEntities; ++i) {
+				final IEntity e = entities.get(i);
+				mEntities.set(e.getId(), e);
+			}
+			mActive += numEntities;
+			mAdded += numEntities;
+		}
+	}
+
 	@Override
 	public void deleted(IEntity e) {
 		final int entityID = e.getId();
+		// Ignore an entity which has already been deleted
+		if (mIdentifierPool.getGeneration(entityID) != EntityHandle.getGeneration(e.getHandle())) {
+			return;
+		}
 		mEntities.set(entityID, null);
 		// Disable the entity
 		mDisabled.clear(entityID);
-		// Add the id back to the available pool
+		// Add the id back to the available pool with the next generation
 		mIdentifierPool.checkIn(entityID);
 		// Update statistics
 		--mActive;
@@ -108,6 +141,17 @@ public final class EntityManager extends Manager {
 		return mEntities.get(entityId) != null;
 	}
 
+	/**
+	 * Returns true if the entity of the given handle is active.
+	 * <p>
+	 * @param handle The entity handle
+	 * <p>
+	 * @return True if the entity of the handle is active
+	 */
+	public boolean isActive(long handle) {
+		return getEntity(handle) != null;
+	}
+
 	/**
 	 * Returns true if the given entity id is enabled.
 	 * <p>
@@ -158,6 +202,32 @@ public final class EntityManager extends Manager {
 		return mEntities.get(entityId);
 	}
 
+	/**
+	 * Returns the active entities indexed by their id, an id without an
+	 * active entity is null.
+	 * <p>
+	 * @return The active entities
+	 */
+	public ImmutableBag<IEntity> getEntities() {
+		return mEntities;
+	}
+
+	/**
+	 * Returns the entity with the given handle.
+	 * <p>
+	 * @param handle The entity handle
+	 * <p>
+	 * @return The entity, null if the entity of the handle is not active
+	 */
+	public IEntity getEntity(long handle) {
+		final int entityId = EntityHandle.getId(handle);
+		if (!mEntities.isIndexWithinBounds(entityId)) {
+			return null;
+		}
+		final IEntity e = mEntities.get(entityId);
+		return e != null && e.getHandle() == handle ? e : null;
+	}
+
 	/**
 	 * Creates a new {@link Entity}.
 	 * <p>
@@ -167,37 +237,84 @@ public final class EntityManager extends Manager {
 		// Get the component system
 		final ComponentSystem componentSystem = (ComponentSystem) getSystem();
 		// Get the entity's id
-		final int entityID = mIdentifierPool.checkOut();
+		final IdentifierPool identifierPool = mIdentifierPool;
+		final int entityID = identifierPool.checkOut();
 
 		// Increment the number of created entities
 		++mCreated;
 
 		// Return the new Entity
-		return new Entity(componentSystem, entityID);
+		return new Entity(componentSystem, entityID, identifierPool.getGeneration(entityID));
+	}
+
+	/**
+	 * Creates new entities. The ids of deleted entities are reused first and
+	 * the new entities with reused ids are added to the bag first, the
+	 * remaining entities are given a contiguous range of ids after the highest
+	 * id ever used.
+	 * <p>
+	 * @param count   The number of entities to create
+	 * @param fillbag The bag to fill with the new entities
+	 * <p>
+	 * @return The number of entities given a reused id
+	 */
+	public int createEntityInstances(int count, Bag<IEntity> fillbag) {
+		// Get the component system
+		final ComponentSystem componentSystem = (ComponentSystem) getSystem();
+		// Get the entities' ids
+		final IdentifierPool identifierPool = mIdentifierPool;
+		final int numReused = identifierPool.getAvailableCount(count);
+		fillbag.ensureCapacity(fillbag.size() + count);
+		for (int i = 0; i < numReused; ++i) {
+			final int entityID = identifierPool.checkOut();
+			fillbag.add(new Entity(componentSystem, entityID, identifierPool.getGeneration(entityID)));
+		}
+		final int numFresh = count - numReused;
+		final int firstID = identifierPool.checkOutRange(numFresh);
+		for (int i = 0; i < numFresh; ++i) {
+			final int entityID = firstID + i;
+			fillbag.add(new Entity(componentSystem, entityID, identifierPool.getGeneration(entityID)));
+		}
+		// Increment the number of created entities
+		mCreated += count;
+
+		return numReused;
 	}
 
 	/**
 	 * A pool of currently available and used entity id's.
 	 */
 	private static class IdentifierPool {
-		private final Bag<Integer> mIDs;
+		private final TIntArrayList mIDs;
+		private final BitSet mAvailable;
+		private int[] mGenerations;
 		private int mNextAvailableID;
 
 		/**
 		 * Private constructor for {@link IdentifierPool}.
 		 */
 		private IdentifierPool() {
-			mIDs = new Bag<>();
+			mIDs = new TIntArrayList();
+			mAvailable = new BitSet();
+			mGenerations = new int[64];
 			mNextAvailableID = 0;
 		}
 
 		/**
 		 * Used to return an entity id to the pool once
-		 * that entity has been deleted.
+		 * that entity has been deleted, the generation of
+		 * the id is incremented.
 		 * <p>
 		 * @param id The id to return
+		 * <p>
+		 * @throws IllegalStateException If the id is not checked out
 		 */
 		public void checkIn(int id) {
+			if (id < 0 || id >= mNextAvailableID || mAvailable.get(id)) {
+				throw new IllegalStateException("Entity id " + id + " is not in use");
+			}
+			mAvailable.set(id);
+			++mGenerations[id];
 			mIDs.add(id);
 		}
 
@@ -208,11 +325,57 @@ public final class EntityManager extends Manager {
 		 * @return An entity id
 		 */
 		public int checkOut() {
-			final Bag<Integer> ids = mIDs;
-			if (ids.size() > 0) {
-				return ids.removeLast();
+			final TIntArrayList ids = mIDs;
+			if (!ids.isEmpty()) {
+				final int id = ids.removeAt(ids.size() - 1);
+				mAvailable.clear(id);
+				return id;
+			}
+			final int id = mNextAvailableID++;
+			if (id >= mGenerations.length) {
+				mGenerations = Arrays.copyOf(mGenerations, mGenerations.length * 2);
 			}
-			return mNextAvailableID++;
+			return id;
+		}
+
+		/**
+		 * Returns the number of ids of deleted entities which
+		 * can be reused, at most the given count.
+		 * <p>
+		 * @param count The number of ids required
+		 * <p>
+		 * @return The number of reusable ids
+		 */
+		public int getAvailableCount(int count) {
+			return Math.min(count, mIDs.size());
+		}
+
+		/**
+		 * Returns the first of a contiguous range of entity
+		 * ids which have never been used.
+		 * <p>
+		 * @param count The number of ids in the range
+		 * <p>
+		 * @return The first entity id of the range
+		 */
+		public int checkOutRange(int count) {
+			final int id = mNextAvailableID;
+			mNextAvailableID += count;
+			if (mNextAvailableID > mGenerations.length) {
+				mGenerations = Arrays.copyOf(mGenerations, Math.max(mNextAvailableID, mGenerations.length * 2));
+			}
+			return id;
+		}
+
+		/**
+		 * Returns the current generation of an entity id.
+		 * <p>
+		 * @param id The entity id
+		 * <p>
+		 * @return The generation of the id
+		 */
+		public int getGeneration(int id) {
+			return mGenerations[id];
 		}
 	}
 }
@@ -0,0 +1,195 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.component.ComponentType;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IComponentStorage;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.component.IEntityQuery;
+import me.thehutch.fusion.api.util.container.Bag;
+import me.thehutch.fusion.api.util.container.ImmutableBag;
+
+/**
+ * The entities matching an {@link Aspect}, kept up to date by the
+ * {@link ComponentSystem}.
+ * <p>
+ * The entities are packed in a bag with the slot of each entity indexed by
+ * its id, so inserting and removing an entity are constant time. Removing an
+ * entity moves the last entity into its slot.
+ *
+ * @author thehutch
+ */
+public final class EntityQuery implements IEntityQuery {
+	private final Bag<IEntity> mEntities = new Bag<>();
+	private int[] mSlots = new int[64];
+	private final ComponentManager mComponentManager;
+	private final Aspect mAspect;
+	private final int mIndex;
+
+	/**
+	 * Constructor for {@link EntityQuery}.
+	 * <p>
+	 * @param aspect           The aspect of the entities
+	 * @param componentManager The component manager
+	 * @param index            The index of the query within the system
+	 */
+	EntityQuery(Aspect aspect, ComponentManager componentManager, int index) {
+		mComponentManager = componentManager;
+		mAspect = aspect;
+		mIndex = index;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Aspect getAspect() {
+		return mAspect;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ImmutableBag<IEntity> getEntities() {
+		return mEntities;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return mEntities.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(IEntity e) {
+		final int entityId = e.getId();
+		// The slot is stored offset by one so an empty slot is zero
+		return entityId < mSlots.length && mSlots[entityId] != 0 && mEntities.get(mSlots[entityId] - 1) == e;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <A extends IComponent> void forEach(Class<A> typeA, BiConsumer<? super IEntity, ? super A> action) {
+		final IComponentStorage componentsA = mComponentManager.getComponentsByType(ComponentType.getTypeFor(typeA));
+		final Bag<IEntity> entities = mEntities;
+		final int numEntities = entities.size();
+		for (int i = 0; i < numEntities; ++i) {
+			final IEntity e = entities.get(i);
+			action.accept(e, (A) componentsA.get(e.getId()));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <A extends IComponent, B extends IComponent> void forEach(Class<A> typeA, Class<B> typeB, Join<? super A, ? super B> action) {
+		final IComponentStorage componentsA = mComponentManager.getComponentsByType(ComponentType.getTypeFor(typeA));
+		final IComponentStorage componentsB = mComponentManager.getComponentsByType(ComponentType.getTypeFor(typeB));
+		final Bag<IEntity> entities = mEntities;
+		final int numEntities = entities.size();
+		for (int i = 0; i < numEntities; ++i) {
+			final IEntity e = entities.get(i);
+			final int entityId = e.getId();
+			action.accept(e, (A) componentsA.get(entityId), (B) componentsB.get(entityId));
+		}
+	}
+
+	/**
+	 * @return The index of this query within the system
+	 */
+	int getIndex() {
+		return mIndex;
+	}
+
+	/**
+	 * Inserts or removes the entity depending on whether it matches the aspect.
+	 * <p>
+	 * @param e The entity to check
+	 */
+	void check(IEntity e) {
+		if (mAspect.matches(e.getComponentMask())) {
+			insert(e);
+		} else {
+			remove(e);
+		}
+	}
+
+	/**
+	 * Inserts the entity if it is not already in this query.
+	 * <p>
+	 * @param e The entity to insert
+	 */
+	void insert(IEntity e) {
+		if (contains(e)) {
+			return;
+		}
+		final int entityId = e.getId();
+		if (entityId >= mSlots.length) {
+			mSlots = Arrays.copyOf(mSlots, Math.max(entityId + 1, mSlots.length * 2));
+		}
+		mEntities.add(e);
+		mSlots[entityId] = mEntities.size();
+	}
+
+	/**
+	 * Inserts a batch of entities which all match the aspect.
+	 * <p>
+	 * @param entities The entities to insert
+	 */
+	void insertAll(ImmutableBag<IEntity> entities) {
+		final int numEntities = entities.size();
+		mEntities.ensureCapacity(mEntities.size() + numEntities);
+		for (int i = 0; i < numEntities; ++i) {
+			insert(entities.get(i));
+		}
+	}
+
+	/**
+	 * Removes the entity if it is in this query.
+	 * <p>
+	 * @param e The entity to remove
+	 */
+	void remove(IEntity e) {
+		if (!contains(e)) {
+			return;
+		}
+		final Bag<IEntity> entities = mEntities;
+		final int entityId = e.getId();
+		final int slot = mSlots[entityId] - 1;
+		entities.remove(slot);
+		mSlots[entityId] = 0;
+		if (slot < entities.size()) {
+			mSlots[entities.get(slot).getId()] = slot + 1;
+		}
+	}
+}
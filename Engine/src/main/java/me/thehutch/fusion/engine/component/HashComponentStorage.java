@@ -0,0 +1,270 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.Arrays;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IComponentStorage;
+import me.thehutch.fusion.api.component.StorageType;
+
+/**
+ * Stores the components in an open addressing hash map keyed by the entity
+ * id, using linear probing. The table is kept at most half full. The added
+ * and changed ticks of each component are stored in its slot.
+ *
+ * @author thehutch
+ */
+final class HashComponentStorage implements IComponentStorage, ComponentVersions {
+	private static final int EMPTY = -1;
+	private IComponent[] mComponents;
+	private int[] mEntityIds;
+	private int[] mAddedTicks;
+	private int[] mChangedTicks;
+	private int mMask;
+	private int mSize;
+
+	/**
+	 * Default constructor for {@link HashComponentStorage}.
+	 */
+	HashComponentStorage() {
+		allocate(16);
+		mSize = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IComponent get(int entityId) {
+		final int slot = slotOf(entityId);
+		return slot < 0 ? null : mComponents[slot];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void set(int entityId, IComponent component) {
+		if (component == null) {
+			remove(entityId);
+			return;
+		}
+		final int mask = mMask;
+		int slot = hash(entityId) & mask;
+		for (int id = mEntityIds[slot]; id != EMPTY; id = mEntityIds[slot]) {
+			if (id == entityId) {
+				mComponents[slot] = component;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		mEntityIds[slot] = entityId;
+		mComponents[slot] = component;
+		if (++mSize * 2 > mEntityIds.length) {
+			rehash(mEntityIds.length * 2);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove(int entityId) {
+		final int[] entityIds = mEntityIds;
+		final IComponent[] components = mComponents;
+		final int mask = mMask;
+		int slot = hash(entityId) & mask;
+		while (entityIds[slot] != entityId) {
+			if (entityIds[slot] == EMPTY) {
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		--mSize;
+		// Shift the following entries of the probe sequence back into the hole
+		int hole = slot;
+		for (slot = (slot + 1) & mask; entityIds[slot] != EMPTY; slot = (slot + 1) & mask) {
+			final int home = hash(entityIds[slot]) & mask;
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				entityIds[hole] = entityIds[slot];
+				components[hole] = components[slot];
+				mAddedTicks[hole] = mAddedTicks[slot];
+				mChangedTicks[hole] = mChangedTicks[slot];
+				hole = slot;
+			}
+		}
+		entityIds[hole] = EMPTY;
+		components[hole] = null;
+		mAddedTicks[hole] = NEVER;
+		mChangedTicks[hole] = NEVER;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reserve(int firstId, int count) {
+		final long required = ((long) mSize + count) * 2L;
+		if (required > mEntityIds.length) {
+			int capacity = mEntityIds.length;
+			while (capacity < required) {
+				capacity *= 2;
+			}
+			rehash(capacity);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void added(int entityId, int tick) {
+		final int slot = slotOf(entityId);
+		mAddedTicks[slot] = tick;
+		mChangedTicks[slot] = tick;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void changed(int entityId, int tick) {
+		final int slot = slotOf(entityId);
+		if (slot >= 0) {
+			mChangedTicks[slot] = tick;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAddedTick(int entityId) {
+		final int slot = slotOf(entityId);
+		return slot < 0 ? NEVER : mAddedTicks[slot];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getChangedTick(int entityId) {
+		final int slot = slotOf(entityId);
+		return slot < 0 ? NEVER : mChangedTicks[slot];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StorageType getStorageType() {
+		return StorageType.HASH;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getMemoryUsage() {
+		return ComponentStorages.arraySize(mComponents.length, ComponentStorages.REFERENCE_SIZE)
+			   + ComponentStorages.arraySize(mEntityIds.length, Integer.BYTES)
+			   + ComponentStorages.arraySize(mAddedTicks.length, Integer.BYTES)
+			   + ComponentStorages.arraySize(mChangedTicks.length, Integer.BYTES);
+	}
+
+	/**
+	 * Internal method to find the slot of an entity id.
+	 *
+	 * @param entityId The entity id
+	 *
+	 * @return The slot, -1 if the entity id has no component
+	 */
+	private int slotOf(int entityId) {
+		final int[] entityIds = mEntityIds;
+		final int mask = mMask;
+		for (int slot = hash(entityId) & mask;; slot = (slot + 1) & mask) {
+			final int id = entityIds[slot];
+			if (id == entityId) {
+				return slot;
+			} else if (id == EMPTY) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Internal method to allocate empty tables.
+	 *
+	 * @param capacity The capacity of the tables, a power of two
+	 */
+	private void allocate(int capacity) {
+		mComponents = new IComponent[capacity];
+		mEntityIds = new int[capacity];
+		mAddedTicks = new int[capacity];
+		mChangedTicks = new int[capacity];
+		Arrays.fill(mEntityIds, EMPTY);
+		mMask = capacity - 1;
+	}
+
+	/**
+	 * Internal method to move every entry into larger tables.
+	 *
+	 * @param capacity The new capacity of the tables, a power of two
+	 */
+	private void rehash(int capacity) {
+		final IComponent[] components = mComponents;
+		final int[] entityIds = mEntityIds;
+		final int[] addedTicks = mAddedTicks;
+		final int[] changedTicks = mChangedTicks;
+		allocate(capacity);
+		final int mask = mMask;
+		for (int i = 0; i < entityIds.length; ++i) {
+			final int entityId = entityIds[i];
+			if (entityId != EMPTY) {
+				int slot = hash(entityId) & mask;
+				while (mEntityIds[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				mEntityIds[slot] = entityId;
+				mComponents[slot] = components[i];
+				mAddedTicks[slot] = addedTicks[i];
+				mChangedTicks[slot] = changedTicks[i];
+			}
+		}
+	}
+
+	/**
+	 * Internal method to spread the bits of an entity id.
+	 *
+	 * @param entityId The entity id
+	 *
+	 * @return The hash of the entity id
+	 */
+	private static int hash(int entityId) {
+		final int h = entityId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
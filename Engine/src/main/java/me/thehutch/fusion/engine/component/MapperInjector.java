@@ -0,0 +1,128 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.annotations.Mapper;
+import me.thehutch.fusion.api.util.container.Bag;
+
+/**
+ * Sets the {@link Mapper} fields of an object to the {@link ComponentMapper}'s
+ * of their component types.
+ * <p>
+ * The fields of a class are found once, and are set through method handles,
+ * so wiring many instances of a class does not reflect over the class again.
+ *
+ * @author thehutch
+ */
+final class MapperInjector {
+	private static final ClassValue<MapperInjector> INJECTORS = new ClassValue<MapperInjector>() {
+		@Override
+		protected MapperInjector computeValue(Class<?> type) {
+			return new MapperInjector(type);
+		}
+	};
+	private final MethodHandle[] mSetters;
+	private final Class<? extends IComponent>[] mComponentTypes;
+
+	/**
+	 * Constructor for {@link MapperInjector}.
+	 *
+	 * @param clazz The class of the objects to inject
+	 */
+	@SuppressWarnings("unchecked")
+	private MapperInjector(Class<?> clazz) {
+		final Bag<MethodHandle> setters = new Bag<>();
+		final Bag<Class<? extends IComponent>> componentTypes = new Bag<>();
+		try {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			for (Field field : clazz.getDeclaredFields()) {
+				final Mapper annotation = field.getAnnotation(Mapper.class);
+				if (annotation != null) {
+					componentTypes.add(getComponentType(field));
+
+					field.setAccessible(true);
+					setters.add(lookup.unreflectSetter(field));
+					field.setAccessible(false);
+				}
+			}
+		} catch (IllegalAccessException | SecurityException ex) {
+			throw new RuntimeException("Error whilst setting component mappers!", ex);
+		}
+		mSetters = new MethodHandle[setters.size()];
+		mComponentTypes = new Class[componentTypes.size()];
+		for (int i = 0; i < mSetters.length; ++i) {
+			mSetters[i] = setters.get(i);
+			mComponentTypes[i] = componentTypes.get(i);
+		}
+	}
+
+	/**
+	 * Sets the mapper fields of the target.
+	 *
+	 * @param target           The object to inject
+	 * @param componentManager The component manager of the mappers
+	 */
+	void inject(Object target, ComponentManager componentManager) {
+		final MethodHandle[] setters = mSetters;
+		try {
+			for (int i = 0; i < setters.length; ++i) {
+				setters[i].invoke(target, componentManager.getMapper(mComponentTypes[i]));
+			}
+		} catch (Throwable ex) {
+			throw new RuntimeException("Error whilst setting component mappers!", ex);
+		}
+	}
+
+	/**
+	 * Returns the component type of a mapper field, the type argument of the
+	 * field must be a component class.
+	 *
+	 * @param field The mapper field
+	 *
+	 * @return The component type
+	 */
+	@SuppressWarnings("unchecked")
+	static Class<? extends IComponent> getComponentType(Field field) {
+		final Type genericType = field.getGenericType();
+		if (genericType instanceof ParameterizedType) {
+			final Type componentType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+			if (componentType instanceof Class) {
+				return (Class<? extends IComponent>) componentType;
+			}
+		}
+		throw new IllegalArgumentException("Mapper field " + field.getDeclaringClass().getName() + '.' + field.getName()
+										   + " must declare its component class, found " + genericType.getTypeName());
+	}
+
+	/**
+	 * Returns the injector of the given class.
+	 *
+	 * @param clazz The class of the objects to inject
+	 *
+	 * @return The injector
+	 */
+	static MapperInjector of(Class<?> clazz) {
+		return INJECTORS.get(clazz);
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.lang.reflect.Field;
+import java.util.BitSet;
+import me.thehutch.fusion.api.component.ComponentType;
+import me.thehutch.fusion.api.component.EntityProcessor;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.annotations.Mapper;
+import me.thehutch.fusion.api.component.annotations.Reads;
+import me.thehutch.fusion.api.component.annotations.Writes;
+import me.thehutch.fusion.api.util.container.Bag;
+
+/**
+ * The component types an {@link EntityProcessor} reads and writes, declared
+ * by the {@link Reads} and {@link Writes} annotations of the processor.
+ * <p>
+ * A processor which declares neither is exclusive, it may access anything and
+ * can not run concurrently with any other processor.
+ *
+ * @author thehutch
+ */
+final class ProcessorAccess {
+	private final BitSet mReads;
+	private final BitSet mWrites;
+	private final Bag<ComponentType> mTypes;
+	private final boolean mIsExclusive;
+	private boolean mHasStorages;
+
+	/**
+	 * Default constructor for {@link ProcessorAccess}.
+	 *
+	 * @param reads     The component types read
+	 * @param writes    The component types written
+	 * @param types     The component types read or written
+	 * @param exclusive True if the processor is exclusive
+	 */
+	private ProcessorAccess(BitSet reads, BitSet writes, Bag<ComponentType> types, boolean exclusive) {
+		mReads = reads;
+		mWrites = writes;
+		mTypes = types;
+		mIsExclusive = exclusive;
+	}
+
+	/**
+	 * @return The component types read by the processor
+	 */
+	BitSet getReads() {
+		return mReads;
+	}
+
+	/**
+	 * @return The component types written by the processor
+	 */
+	BitSet getWrites() {
+		return mWrites;
+	}
+
+	/**
+	 * Creates the storage of every component type read or written by the
+	 * processor, so no storage is created whilst processors are processed
+	 * concurrently.
+	 *
+	 * @param componentManager The component manager
+	 */
+	void createStorages(ComponentManager componentManager) {
+		if (!mHasStorages) {
+			final Bag<ComponentType> types = mTypes;
+			for (int i = 0; i < types.size(); ++i) {
+				componentManager.getComponentsByType(types.get(i));
+			}
+			mHasStorages = true;
+		}
+	}
+
+	/**
+	 * @return True if the processor can not run concurrently with any other processor
+	 */
+	boolean isExclusive() {
+		return mIsExclusive;
+	}
+
+	/**
+	 * Reads the declared access of the given processor.
+	 *
+	 * @param processor The processor
+	 *
+	 * @return The access of the processor
+	 */
+	static ProcessorAccess of(EntityProcessor processor) {
+		final Class<?> clazz = processor.getClass();
+		final BitSet reads = new BitSet();
+		final BitSet writes = new BitSet();
+		final Bag<ComponentType> types = new Bag<>();
+		boolean declared = false;
+
+		// The types declared on the class
+		final Reads classReads = clazz.getAnnotation(Reads.class);
+		if (classReads != null) {
+			declared = true;
+			for (Class<? extends IComponent> type : classReads.value()) {
+				reads.set(ComponentType.getIndexFor(type));
+				types.add(ComponentType.getTypeFor(type));
+			}
+		}
+		final Writes classWrites = clazz.getAnnotation(Writes.class);
+		if (classWrites != null) {
+			declared = true;
+			for (Class<? extends IComponent> type : classWrites.value()) {
+				writes.set(ComponentType.getIndexFor(type));
+				types.add(ComponentType.getTypeFor(type));
+			}
+		}
+
+		// The types of the mapper fields, a mapper is written unless it is only read
+		for (Field field : clazz.getDeclaredFields()) {
+			if (field.getAnnotation(Mapper.class) != null) {
+				final ComponentType type = ComponentType.getTypeFor(MapperInjector.getComponentType(field));
+				final int index = type.getIndex();
+				types.add(type);
+				final boolean fieldReads = field.getAnnotation(Reads.class) != null;
+				final boolean fieldWrites = field.getAnnotation(Writes.class) != null;
+				declared |= fieldReads || fieldWrites;
+				if (fieldReads && !fieldWrites) {
+					reads.set(index);
+				} else {
+					writes.set(index);
+				}
+			}
+		}
+
+		// A written type does not also need to be read
+		reads.andNot(writes);
+		return new ProcessorAccess(reads, writes, types, !declared);
+	}
+}
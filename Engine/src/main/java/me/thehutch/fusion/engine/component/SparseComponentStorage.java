@@ -0,0 +1,251 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.Arrays;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IComponentStorage;
+import me.thehutch.fusion.api.component.StorageType;
+
+/**
+ * Stores the components packed in an array with an index from the entity id
+ * into the packed array. The index is split into pages which are only
+ * allocated once an entity id within the page has a component. The added and
+ * changed ticks of each component are packed alongside it.
+ * <p>
+ * Removing a component moves the last packed component into its place.
+ *
+ * @author thehutch
+ */
+final class SparseComponentStorage implements IComponentStorage, ComponentVersions {
+	private static final int PAGE_SHIFT = 10;
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private int[][] mPages;
+	private IComponent[] mComponents;
+	private int[] mEntityIds;
+	private int[] mAddedTicks;
+	private int[] mChangedTicks;
+	private int mNumPages;
+	private int mSize;
+
+	/**
+	 * Default constructor for {@link SparseComponentStorage}.
+	 */
+	SparseComponentStorage() {
+		mPages = new int[4][];
+		mComponents = new IComponent[16];
+		mEntityIds = new int[16];
+		mAddedTicks = new int[16];
+		mChangedTicks = new int[16];
+		mNumPages = 0;
+		mSize = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IComponent get(int entityId) {
+		final int index = indexOf(entityId);
+		return index < 0 ? null : mComponents[index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void set(int entityId, IComponent component) {
+		if (component == null) {
+			remove(entityId);
+			return;
+		}
+		final int index = indexOf(entityId);
+		if (index >= 0) {
+			mComponents[index] = component;
+			return;
+		}
+		if (mSize == mComponents.length) {
+			grow(mSize * 2);
+		}
+		mComponents[mSize] = component;
+		mEntityIds[mSize] = entityId;
+		// The index is stored offset by one so an empty slot is zero
+		page(entityId)[entityId & PAGE_MASK] = ++mSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove(int entityId) {
+		final int index = indexOf(entityId);
+		if (index < 0) {
+			return;
+		}
+		final int last = --mSize;
+		if (index != last) {
+			final int movedId = mEntityIds[last];
+			mComponents[index] = mComponents[last];
+			mEntityIds[index] = movedId;
+			mAddedTicks[index] = mAddedTicks[last];
+			mChangedTicks[index] = mChangedTicks[last];
+			mPages[movedId >>> PAGE_SHIFT][movedId & PAGE_MASK] = index + 1;
+		}
+		mComponents[last] = null;
+		mAddedTicks[last] = NEVER;
+		mChangedTicks[last] = NEVER;
+		mPages[entityId >>> PAGE_SHIFT][entityId & PAGE_MASK] = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reserve(int firstId, int count) {
+		if (count <= 0) {
+			return;
+		}
+		final int capacity = mSize + count;
+		if (capacity > mComponents.length) {
+			grow(capacity);
+		}
+		// Allocate every page of the range up front
+		final int lastId = firstId + count - 1;
+		for (int entityId = firstId & ~PAGE_MASK; entityId <= lastId; entityId += PAGE_SIZE) {
+			page(entityId);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void added(int entityId, int tick) {
+		final int index = indexOf(entityId);
+		mAddedTicks[index] = tick;
+		mChangedTicks[index] = tick;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void changed(int entityId, int tick) {
+		final int index = indexOf(entityId);
+		if (index >= 0) {
+			mChangedTicks[index] = tick;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAddedTick(int entityId) {
+		final int index = indexOf(entityId);
+		return index < 0 ? NEVER : mAddedTicks[index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getChangedTick(int entityId) {
+		final int index = indexOf(entityId);
+		return index < 0 ? NEVER : mChangedTicks[index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StorageType getStorageType() {
+		return StorageType.SPARSE_SET;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getMemoryUsage() {
+		return ComponentStorages.arraySize(mPages.length, ComponentStorages.REFERENCE_SIZE)
+			   + ComponentStorages.arraySize(PAGE_SIZE, Integer.BYTES) * mNumPages
+			   + ComponentStorages.arraySize(mComponents.length, ComponentStorages.REFERENCE_SIZE)
+			   + ComponentStorages.arraySize(mEntityIds.length, Integer.BYTES)
+			   + ComponentStorages.arraySize(mAddedTicks.length, Integer.BYTES)
+			   + ComponentStorages.arraySize(mChangedTicks.length, Integer.BYTES);
+	}
+
+	/**
+	 * Internal method to grow the packed arrays to the given length.
+	 *
+	 * @param length The new length of the arrays
+	 */
+	private void grow(int length) {
+		mComponents = Arrays.copyOf(mComponents, length);
+		mEntityIds = Arrays.copyOf(mEntityIds, length);
+		mAddedTicks = Arrays.copyOf(mAddedTicks, length);
+		mChangedTicks = Arrays.copyOf(mChangedTicks, length);
+	}
+
+	/**
+	 * Internal method to find the packed index of an entity id.
+	 *
+	 * @param entityId The entity id
+	 *
+	 * @return The packed index, -1 if the entity id has no component
+	 */
+	private int indexOf(int entityId) {
+		final int pageIndex = entityId >>> PAGE_SHIFT;
+		if (pageIndex >= mPages.length) {
+			return -1;
+		}
+		final int[] page = mPages[pageIndex];
+		return page == null ? -1 : page[entityId & PAGE_MASK] - 1;
+	}
+
+	/**
+	 * Internal method to get the page of an entity id, allocating it if needed.
+	 *
+	 * @param entityId The entity id
+	 *
+	 * @return The page
+	 */
+	private int[] page(int entityId) {
+		final int pageIndex = entityId >>> PAGE_SHIFT;
+		if (pageIndex >= mPages.length) {
+			mPages = Arrays.copyOf(mPages, Math.max(pageIndex + 1, mPages.length * 2));
+		}
+		int[] page = mPages[pageIndex];
+		if (page == null) {
+			page = new int[PAGE_SIZE];
+			mPages[pageIndex] = page;
+			++mNumPages;
+		}
+		return page;
+	}
+}
@@ -17,137 +17,368 @@
  */
 package me.thehutch.fusion.engine.component;
 
+import java.util.Arrays;
 import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.maths.FastMaths;
 import me.thehutch.fusion.api.maths.Quaternion;
 import me.thehutch.fusion.api.maths.Vector3;
 
 /**
+ * The position, rotation and scale of an entity.
+ * <p>
+ * The transform is stored within a slot of a {@link TransformStore}, this
+ * component only accesses that slot. A component created by its constructor,
+ * or whose entity has been deleted from its store, keeps its transform inline.
+ * <p>
+ * Every mutation of an attached transform marks the component as changed at
+ * the current tick of the component system.
+ *
  * @author thehutch
  */
 public class TransformComponent implements IComponent {
-	private Quaternion rotation;
-	private Vector3 position;
-	private Vector3 scale;
+	private TransformStore mStore;
+	private int mIndex;
+	/**
+	 * The inline transform, used when the component is not within a store
+	 */
+	private float[] mPositions;
+	private float[] mRotations;
+	private float[] mScales;
 
 	public TransformComponent() {
 		this(Quaternion.IDENTITY, Vector3.ZERO, Vector3.ONE);
 	}
 
 	public TransformComponent(Quaternion rotation, Vector3 position, Vector3 scale) {
-		this.rotation = rotation;
-		this.position = position;
-		this.scale = scale;
+		mPositions = new float[TransformStore.POSITION_STRIDE];
+		mRotations = new float[TransformStore.ROTATION_STRIDE];
+		mScales = new float[TransformStore.SCALE_STRIDE];
+		setRotation(rotation);
+		setPosition(position);
+		setScale(scale);
+	}
+
+	TransformComponent(TransformStore store, int index) {
+		store.ensureCapacity(index + 1);
+		mStore = store;
+		mIndex = index;
 	}
 
 	public Vector3 getPosition() {
-		return position;
+		final float[] positions = positions();
+		final int p = mIndex * TransformStore.POSITION_STRIDE;
+		return new Vector3(positions[p], positions[p + 1], positions[p + 2]);
 	}
 
 	public void setPosition(Vector3 position) {
-		this.position = position;
+		setPosition(position.getX(), position.getY(), position.getZ());
+	}
+
+	public void setPosition(float x, float y, float z) {
+		final float[] positions = positions();
+		final int p = mIndex * TransformStore.POSITION_STRIDE;
+		positions[p] = x;
+		positions[p + 1] = y;
+		positions[p + 2] = z;
+		markChanged();
 	}
 
 	public Quaternion getRotation() {
-		return rotation;
+		final float[] rotations = rotations();
+		final int r = mIndex * TransformStore.ROTATION_STRIDE;
+		return new Quaternion(rotations[r], rotations[r + 1], rotations[r + 2], rotations[r + 3]);
 	}
 
 	public void setRotation(Quaternion rotation) {
-		this.rotation = rotation;
+		setRotation(rotation.getX(), rotation.getY(), rotation.getZ(), rotation.getW());
+	}
+
+	public void setRotation(float x, float y, float z, float w) {
+		final float[] rotations = rotations();
+		final int r = mIndex * TransformStore.ROTATION_STRIDE;
+		rotations[r] = x;
+		rotations[r + 1] = y;
+		rotations[r + 2] = z;
+		rotations[r + 3] = w;
+		markChanged();
 	}
 
 	public Vector3 getScale() {
-		return scale;
+		final float[] scales = scales();
+		final int s = mIndex * TransformStore.SCALE_STRIDE;
+		return new Vector3(scales[s], scales[s + 1], scales[s + 2]);
 	}
 
 	public void moveX(float dx) {
-		this.position.add(dx, 0.0f, 0.0f);
+		move(dx, 0.0f, 0.0f);
 	}
 
 	public void moveLocalX(float dx) {
-		this.position.add(getRight().mul(dx));
+		moveLocal(1.0f, 0.0f, 0.0f, dx);
 	}
 
 	public void moveY(float dy) {
-		this.position.add(0.0f, dy, 0.0f);
+		move(0.0f, dy, 0.0f);
 	}
 
 	public void moveLocalY(float dy) {
-		this.position.add(getUp().mul(dy));
+		moveLocal(0.0f, 1.0f, 0.0f, dy);
 	}
 
 	public void moveZ(float dz) {
-		this.position.add(0.0f, 0.0f, dz);
+		move(0.0f, 0.0f, dz);
 	}
 
 	public void moveLocalZ(float dz) {
-		this.position.add(getForward().mul(dz));
+		moveLocal(0.0f, 0.0f, 1.0f, dz);
 	}
 
 	public void move(float dx, float dy, float dz) {
-		this.position.add(dx, dy, dz);
+		final float[] positions = positions();
+		final int p = mIndex * TransformStore.POSITION_STRIDE;
+		positions[p] += dx;
+		positions[p + 1] += dy;
+		positions[p + 2] += dz;
+		markChanged();
 	}
 
 	public void rotateX(float angle) {
-		rotate(Quaternion.fromAxisAngleRad(Vector3.UNIT_X, angle));
+		rotateAxis(1.0f, 0.0f, 0.0f, angle);
 	}
 
 	public void rotateLocalX(float angle) {
-		rotate(Quaternion.fromAxisAngleRad(getRight(), angle));
+		rotateLocal(1.0f, 0.0f, 0.0f, angle);
 	}
 
 	public void rotateY(float angle) {
-		rotate(Quaternion.fromAxisAngleRad(Vector3.UNIT_Y, angle));
+		rotateAxis(0.0f, 1.0f, 0.0f, angle);
 	}
 
 	public void rotateLocalY(float angle) {
-		rotate(Quaternion.fromAxisAngleRad(getUp(), angle));
+		rotateLocal(0.0f, 1.0f, 0.0f, angle);
 	}
 
 	public void rotateZ(float angle) {
-		rotate(Quaternion.fromAxisAngleRad(Vector3.UNIT_Z, angle));
+		rotateAxis(0.0f, 0.0f, 1.0f, angle);
 	}
 
 	public void rotateLocalZ(float angle) {
-		rotate(Quaternion.fromAxisAngleRad(getForward(), angle));
+		rotateLocal(0.0f, 0.0f, 1.0f, angle);
 	}
 
 	public void rotate(Quaternion rotation) {
-		this.rotation = rotation.normalise().mul(getRotation());
+		rotate(rotation.getX(), rotation.getY(), rotation.getZ(), rotation.getW());
+	}
+
+	public void rotate(float x, float y, float z, float w) {
+		// Normalise the rotation
+		final float lenSq = x * x + y * y + z * z + w * w;
+		if (lenSq != 0.0f && lenSq != 1.0f) {
+			final float invLength = 1.0f / FastMaths.fastSqrt(lenSq);
+			x *= invLength;
+			y *= invLength;
+			z *= invLength;
+			w *= invLength;
+		}
+		// Multiply the rotation with the current rotation
+		final float[] rotations = rotations();
+		final int r = mIndex * TransformStore.ROTATION_STRIDE;
+		final float qx = rotations[r];
+		final float qy = rotations[r + 1];
+		final float qz = rotations[r + 2];
+		final float qw = rotations[r + 3];
+		rotations[r] = w * qx + x * qw + y * qz - z * qy;
+		rotations[r + 1] = w * qy + y * qw + z * qx - x * qz;
+		rotations[r + 2] = w * qz + z * qw + x * qy - y * qx;
+		rotations[r + 3] = w * qw - x * qx - y * qy - z * qz;
+		markChanged();
 	}
 
 	public void setScale(Vector3 scale) {
-		this.scale = scale;
+		setScale(scale.getX(), scale.getY(), scale.getZ());
+	}
+
+	public void setScale(float x, float y, float z) {
+		final float[] scales = scales();
+		final int s = mIndex * TransformStore.SCALE_STRIDE;
+		scales[s] = x;
+		scales[s + 1] = y;
+		scales[s + 2] = z;
+		markChanged();
 	}
 
 	public void scaleX(float scale) {
-		this.scale.mul(scale, 1.0f, 1.0f);
+		scale(scale, 1.0f, 1.0f);
 	}
 
 	public void scaleY(float scale) {
-		this.scale.mul(1.0f, scale, 1.0f);
+		scale(1.0f, scale, 1.0f);
 	}
 
 	public void scaleZ(float scale) {
-		this.scale.mul(1.0f, 1.0f, scale);
+		scale(1.0f, 1.0f, scale);
 	}
 
 	public void scale(float scale) {
-		this.scale.mul(scale, scale, scale);
+		scale(scale, scale, scale);
 	}
 
 	public void scale(float scaleX, float scaleY, float scaleZ) {
-		this.scale.mul(scaleX, scaleY, scaleZ);
+		final float[] scales = scales();
+		final int s = mIndex * TransformStore.SCALE_STRIDE;
+		scales[s] *= scaleX;
+		scales[s + 1] *= scaleY;
+		scales[s + 2] *= scaleZ;
+		markChanged();
 	}
 
 	public Vector3 getRight() {
-		return Vector3.UNIT_X.rotate(rotation);
+		return Vector3.UNIT_X.rotate(getRotation());
 	}
 
 	public Vector3 getUp() {
-		return Vector3.UNIT_Y.rotate(rotation);
+		return Vector3.UNIT_Y.rotate(getRotation());
 	}
 
 	public Vector3 getForward() {
-		return Vector3.UNIT_Z.rotate(rotation);
+		return Vector3.UNIT_Z.rotate(getRotation());
+	}
+
+	/**
+	 * Points this component at the slot of another store, used by flyweights.
+	 *
+	 * @param store The store
+	 * @param index The slot within the store
+	 */
+	void bind(TransformStore store, int index) {
+		mStore = store;
+		mIndex = index;
+	}
+
+	/**
+	 * Copies the transform out of its store slot, the component then keeps
+	 * its transform inline and no longer accesses the store.
+	 */
+	void detach() {
+		final TransformStore store = mStore;
+		if (store == null) {
+			return;
+		}
+		final int p = mIndex * TransformStore.POSITION_STRIDE;
+		final int r = mIndex * TransformStore.ROTATION_STRIDE;
+		final int s = mIndex * TransformStore.SCALE_STRIDE;
+		mPositions = Arrays.copyOfRange(store.mPositions, p, p + TransformStore.POSITION_STRIDE);
+		mRotations = Arrays.copyOfRange(store.mRotations, r, r + TransformStore.ROTATION_STRIDE);
+		mScales = Arrays.copyOfRange(store.mScales, s, s + TransformStore.SCALE_STRIDE);
+		mStore = null;
+		mIndex = 0;
+	}
+
+	/**
+	 * @return The store the component accesses, null if the transform is inline
+	 */
+	TransformStore getStore() {
+		return mStore;
+	}
+
+	/**
+	 * Internal method to get the array holding the position.
+	 *
+	 * @return The positions array
+	 */
+	private float[] positions() {
+		final TransformStore store = mStore;
+		return store != null ? store.mPositions : mPositions;
+	}
+
+	/**
+	 * Internal method to get the array holding the rotation.
+	 *
+	 * @return The rotations array
+	 */
+	private float[] rotations() {
+		final TransformStore store = mStore;
+		return store != null ? store.mRotations : mRotations;
+	}
+
+	/**
+	 * Internal method to get the array holding the scale.
+	 *
+	 * @return The scales array
+	 */
+	private float[] scales() {
+		final TransformStore store = mStore;
+		return store != null ? store.mScales : mScales;
+	}
+
+	/**
+	 * Internal method to mark the transform as changed within its store.
+	 */
+	private void markChanged() {
+		final TransformStore store = mStore;
+		if (store != null) {
+			store.markChanged(mIndex);
+		}
+	}
+
+	/**
+	 * Internal method to move along an axis rotated by the current rotation.
+	 *
+	 * @param ax       The x-component of the axis
+	 * @param ay       The y-component of the axis
+	 * @param az       The z-component of the axis
+	 * @param distance The distance to move
+	 */
+	private void moveLocal(float ax, float ay, float az, float distance) {
+		final float[] rotations = rotations();
+		final int r = mIndex * TransformStore.ROTATION_STRIDE;
+		final float qx = rotations[r];
+		final float qy = rotations[r + 1];
+		final float qz = rotations[r + 2];
+		final float qw = rotations[r + 3];
+		// Rotate the axis, v' = v + w * t + q x t where t = 2 * (q x v)
+		final float tx = 2.0f * (qy * az - qz * ay);
+		final float ty = 2.0f * (qz * ax - qx * az);
+		final float tz = 2.0f * (qx * ay - qy * ax);
+		move((ax + qw * tx + qy * tz - qz * ty) * distance,
+			 (ay + qw * ty + qz * tx - qx * tz) * distance,
+			 (az + qw * tz + qx * ty - qy * tx) * distance);
+	}
+
+	/**
+	 * Internal method to rotate around an axis rotated by the current rotation.
+	 *
+	 * @param ax    The x-component of the axis
+	 * @param ay    The y-component of the axis
+	 * @param az    The z-component of the axis
+	 * @param angle The angle in radians
+	 */
+	private void rotateLocal(float ax, float ay, float az, float angle) {
+		final float[] rotations = rotations();
+		final int r = mIndex * TransformStore.ROTATION_STRIDE;
+		final float qx = rotations[r];
+		final float qy = rotations[r + 1];
+		final float qz = rotations[r + 2];
+		final float qw = rotations[r + 3];
+		final float tx = 2.0f * (qy * az - qz * ay);
+		final float ty = 2.0f * (qz * ax - qx * az);
+		final float tz = 2.0f * (qx * ay - qy * ax);
+		rotateAxis(ax + qw * tx + qy * tz - qz * ty,
+				   ay + qw * ty + qz * tx - qx * tz,
+				   az + qw * tz + qx * ty - qy * tx, angle);
+	}
+
+	/**
+	 * Internal method to rotate around an axis.
+	 *
+	 * @param ax    The x-component of the axis
+	 * @param ay    The y-component of the axis
+	 * @param az    The z-component of the axis
+	 * @param angle The angle in radians
+	 */
+	private void rotateAxis(float ax, float ay, float az, float angle) {
+		final float halfAngle = angle / 2.0f;
+		final float q = (float) (Math.sin(halfAngle) / FastMaths.fastSqrt(ax * ax + ay * ay + az * az));
+		rotate(ax * q, ay * q, az * q, (float) Math.cos(halfAngle));
 	}
 }
@@ -0,0 +1,296 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import me.thehutch.fusion.api.component.ComponentType;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.component.Manager;
+
+/**
+ * Stores the transforms of the entities as packed primitive arrays indexed by
+ * the entity id. The positions and scales use 3 floats per entity (x, y, z)
+ * and the rotations use 4 floats per entity (x, y, z, w).
+ * <p>
+ * The {@link TransformComponent} of an attached entity reads and writes its
+ * slot of the arrays, so moving or rotating an entity does not allocate.
+ * Processors may also iterate the arrays directly, see {@link #getPositions()}.
+ * <p>
+ * Mutating an attached transform, through its component or the bulk methods,
+ * marks the {@link TransformComponent} of the entity as changed. Once the
+ * entity is deleted its component is detached from the store.
+ *
+ * @author thehutch
+ */
+public final class TransformStore extends Manager {
+	public static final int POSITION_STRIDE = 3;
+	public static final int ROTATION_STRIDE = 4;
+	public static final int SCALE_STRIDE = 3;
+	private static final int DEFAULT_CAPACITY = 64;
+	private final BitSet mAttached;
+	private ComponentVersions mVersions;
+	float[] mPositions;
+	float[] mRotations;
+	float[] mScales;
+
+	/**
+	 * Default constructor for {@link TransformStore}.
+	 */
+	public TransformStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor for {@link TransformStore}.
+	 * <p>
+	 * @param capacity The initial number of entity slots
+	 */
+	public TransformStore(int capacity) {
+		mAttached = new BitSet(capacity);
+		mPositions = new float[capacity * POSITION_STRIDE];
+		mRotations = new float[capacity * ROTATION_STRIDE];
+		mScales = new float[capacity * SCALE_STRIDE];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialise() {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void added(IEntity e) {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void deleted(IEntity e) {
+		final int entityId = e.getId();
+		if (mAttached.get(entityId)) {
+			mAttached.clear(entityId);
+			// The slot will be reused, so the component keeps its transform inline
+			final TransformComponent transform = e.getComponent(TransformComponent.class);
+			if (transform != null && transform.getStore() == this) {
+				transform.detach();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void changed(IEntity e) {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void enabled(IEntity e) {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void disabled(IEntity e) {
+	}
+
+	/**
+	 * Attaches the entity to this store with an identity transform and adds
+	 * a {@link TransformComponent} backed by its slot to the entity.
+	 * <p>
+	 * @param e The entity to attach
+	 * <p>
+	 * @return The transform component of the entity
+	 */
+	public TransformComponent attach(IEntity e) {
+		final int entityId = e.getId();
+		ensureCapacity(entityId + 1);
+		reset(entityId);
+		mAttached.set(entityId);
+
+		final TransformComponent transform = new TransformComponent(this, entityId);
+		e.addComponent(transform);
+		return transform;
+	}
+
+	/**
+	 * Returns true if the given entity id is attached to this store.
+	 * <p>
+	 * @param entityId The entity id
+	 * <p>
+	 * @return True if the entity is attached
+	 */
+	public boolean isAttached(int entityId) {
+		return mAttached.get(entityId);
+	}
+
+	/**
+	 * Points the given flyweight at the slot of the given entity id. A single
+	 * flyweight can be reused to access the transforms of many entities.
+	 * <p>
+	 * @param flyweight The flyweight to reuse, null to create a new flyweight
+	 * @param entityId  The entity id
+	 * <p>
+	 * @return The flyweight
+	 */
+	public TransformComponent flyweight(TransformComponent flyweight, int entityId) {
+		if (flyweight == null) {
+			return new TransformComponent(this, entityId);
+		}
+		flyweight.bind(this, entityId);
+		return flyweight;
+	}
+
+	/**
+	 * @return The number of entity slots in the arrays
+	 */
+	public int getCapacity() {
+		return mScales.length / SCALE_STRIDE;
+	}
+
+	/**
+	 * Returns the packed positions, the position of an entity starts at
+	 * {@code id * POSITION_STRIDE}. The array is replaced when the store grows.
+	 * <p>
+	 * @return The positions array
+	 */
+	public float[] getPositions() {
+		return mPositions;
+	}
+
+	/**
+	 * Returns the packed rotations, the rotation of an entity starts at
+	 * {@code id * ROTATION_STRIDE}. The array is replaced when the store grows.
+	 * <p>
+	 * @return The rotations array
+	 */
+	public float[] getRotations() {
+		return mRotations;
+	}
+
+	/**
+	 * Returns the packed scales, the scale of an entity starts at
+	 * {@code id * SCALE_STRIDE}. The array is replaced when the store grows.
+	 * <p>
+	 * @return The scales array
+	 */
+	public float[] getScales() {
+		return mScales;
+	}
+
+	/**
+	 * Translates the positions of many entities at once.
+	 * <p>
+	 * @param entityIds The ids of the entities
+	 * @param deltas    The translations, 3 floats for each entity id
+	 * @param count     The number of entity ids to translate
+	 */
+	public void translate(int[] entityIds, float[] deltas, int count) {
+		final float[] positions = mPositions;
+		for (int i = 0, d = 0; i < count; ++i, d += POSITION_STRIDE) {
+			final int p = entityIds[i] * POSITION_STRIDE;
+			positions[p] += deltas[d];
+			positions[p + 1] += deltas[d + 1];
+			positions[p + 2] += deltas[d + 2];
+			markChanged(entityIds[i]);
+		}
+	}
+
+	/**
+	 * Translates the positions of many entities at once by the scaled velocities.
+	 * <p>
+	 * @param entityIds  The ids of the entities
+	 * @param velocities The velocities, 3 floats for each entity id
+	 * @param dt         The amount to scale the velocities by
+	 * @param count      The number of entity ids to translate
+	 */
+	public void integrate(int[] entityIds, float[] velocities, float dt, int count) {
+		final float[] positions = mPositions;
+		for (int i = 0, v = 0; i < count; ++i, v += POSITION_STRIDE) {
+			final int p = entityIds[i] * POSITION_STRIDE;
+			positions[p] += velocities[v] * dt;
+			positions[p + 1] += velocities[v + 1] * dt;
+			positions[p + 2] += velocities[v + 2] * dt;
+			markChanged(entityIds[i]);
+		}
+	}
+
+	/**
+	 * Ensures the store has at least the given number of entity slots.
+	 * <p>
+	 * @param capacity The number of entity slots
+	 */
+	public void ensureCapacity(int capacity) {
+		final int current = getCapacity();
+		if (capacity > current) {
+			final int newCapacity = Math.max(capacity, (current * 3) / 2 + 1);
+			mPositions = Arrays.copyOf(mPositions, newCapacity * POSITION_STRIDE);
+			mRotations = Arrays.copyOf(mRotations, newCapacity * ROTATION_STRIDE);
+			mScales = Arrays.copyOf(mScales, newCapacity * SCALE_STRIDE);
+		}
+	}
+
+	/**
+	 * Marks the transform of the given entity id as changed at the current
+	 * tick, if the entity is attached to this store.
+	 * <p>
+	 * @param entityId The entity id
+	 */
+	void markChanged(int entityId) {
+		final ComponentSystem system = (ComponentSystem) getSystem();
+		if (system == null || !mAttached.get(entityId)) {
+			return;
+		}
+		final ComponentManager componentManager = system.getComponentManager();
+		if (mVersions == null) {
+			mVersions = componentManager.getVersionsByType(ComponentType.getTypeFor(TransformComponent.class));
+		}
+		mVersions.changed(entityId, componentManager.getTick());
+	}
+
+	/**
+	 * Internal method to reset a slot to the identity transform.
+	 * <p>
+	 * @param entityId The entity id
+	 */
+	private void reset(int entityId) {
+		final int p = entityId * POSITION_STRIDE;
+		mPositions[p] = 0.0f;
+		mPositions[p + 1] = 0.0f;
+		mPositions[p + 2] = 0.0f;
+		final int r = entityId * ROTATION_STRIDE;
+		mRotations[r] = 0.0f;
+		mRotations[r + 1] = 0.0f;
+		mRotations[r + 2] = 0.0f;
+		mRotations[r + 3] = 1.0f;
+		final int s = entityId * SCALE_STRIDE;
+		mScales[s] = 1.0f;
+		mScales[s + 1] = 1.0f;
+		mScales[s + 2] = 1.0f;
+	}
+}
@@ -138,6 +138,8 @@ public final class PluginLoader {
 			mLoaders.remove(plugin.getName());
 			// Disable the plugin
 			plugin.setEnabled(false);
+			// Cancel any tasks the plugin left scheduled
+			mEngine.getScheduler().cancelTasks(plugin);
 			// Execute the plugin disabled event
 			mEngine.getEventManager().invoke(new PluginDisabledEvent(plugin));
 		}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+/**
+ * A fixed size log-linear histogram of durations.
+ * <p>
+ * Values are grouped into power of two ranges which are each split into
+ * {@value #SUB_BUCKETS} linear buckets, so a percentile is accurate to
+ * within 25% of the true value while recording is a few shifts.
+ *
+ * @author thehutch
+ */
+public final class Histogram {
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NUM_BUCKETS = Long.SIZE * SUB_BUCKETS;
+	private final int[] mCounts;
+	private long mCount;
+	private long mTotal;
+	private long mMax;
+
+	/**
+	 * Default constructor for {@link Histogram}.
+	 */
+	public Histogram() {
+		mCounts = new int[NUM_BUCKETS];
+	}
+
+	/**
+	 * Copy constructor for {@link Histogram}.
+	 *
+	 * @param histogram The histogram to copy
+	 */
+	public Histogram(Histogram histogram) {
+		mCounts = histogram.mCounts.clone();
+		mCount = histogram.mCount;
+		mTotal = histogram.mTotal;
+		mMax = histogram.mMax;
+	}
+
+	/**
+	 * Records a value within the histogram.
+	 *
+	 * @param value The value to record, negative values are recorded as zero
+	 */
+	public void record(long value) {
+		final long sample = value < 0L ? 0L : value;
+		++mCounts[indexOf(sample)];
+		++mCount;
+		mTotal += sample;
+		if (sample > mMax) {
+			mMax = sample;
+		}
+	}
+
+	/**
+	 * Records all the values of another histogram within this histogram.
+	 *
+	 * @param histogram The histogram to add
+	 */
+	public void add(Histogram histogram) {
+		for (int i = 0; i < NUM_BUCKETS; ++i) {
+			mCounts[i] += histogram.mCounts[i];
+		}
+		mCount += histogram.mCount;
+		mTotal += histogram.mTotal;
+		mMax = Math.max(mMax, histogram.mMax);
+	}
+
+	/**
+	 * @return The number of values recorded
+	 */
+	public long getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return The mean of the recorded values
+	 */
+	public long getMean() {
+		return mCount == 0L ? 0L : mTotal / mCount;
+	}
+
+	/**
+	 * @return The largest recorded value
+	 */
+	public long getMax() {
+		return mMax;
+	}
+
+	/**
+	 * Returns an upper bound of the value at the given percentile.
+	 *
+	 * @param percentile The percentile between 0 and 100
+	 *
+	 * @return The value at the percentile
+	 */
+	public long getPercentile(double percentile) {
+		if (mCount == 0L) {
+			return 0L;
+		}
+		final long target = Math.max(1L, (long) Math.ceil(mCount * (percentile / 100.0)));
+		long cumulative = 0L;
+		for (int i = 0; i < NUM_BUCKETS; ++i) {
+			cumulative += mCounts[i];
+			if (cumulative >= target) {
+				return Math.min(upperBoundOf(i), mMax);
+			}
+		}
+		return mMax;
+	}
+
+	/**
+	 * Removes all the recorded values.
+	 */
+	public void reset() {
+		for (int i = 0; i < NUM_BUCKETS; ++i) {
+			mCounts[i] = 0;
+		}
+		mCount = 0L;
+		mTotal = 0L;
+		mMax = 0L;
+	}
+
+	/**
+	 * Internal method to calculate the bucket of a value.
+	 *
+	 * @param value The value, not negative
+	 *
+	 * @return The bucket index
+	 */
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int msb = 63 - Long.numberOfLeadingZeros(value);
+		final int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Internal method to calculate the largest value held by a bucket.
+	 *
+	 * @param index The bucket index
+	 *
+	 * @return The upper bound of the bucket
+	 */
+	private static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		final int shift = index / SUB_BUCKETS - 1;
+		final long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1L;
+	}
+}
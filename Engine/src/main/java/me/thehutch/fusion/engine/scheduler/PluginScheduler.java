@@ -0,0 +1,149 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+import java.util.concurrent.Executor;
+import me.thehutch.fusion.api.plugin.Plugin;
+import me.thehutch.fusion.api.scheduler.IScheduler;
+import me.thehutch.fusion.api.scheduler.TaskPriority;
+
+/**
+ * The view of the {@link Scheduler} given to a plugin, every task submitted
+ * through it is owned by the plugin.
+ *
+ * @author thehutch
+ */
+final class PluginScheduler implements IScheduler {
+	private final Scheduler mScheduler;
+	private final ClassLoader mOwner;
+
+	/**
+	 * Default constructor for {@link PluginScheduler}.
+	 *
+	 * @param scheduler The scheduler
+	 * @param plugin    The plugin owning the tasks
+	 */
+	PluginScheduler(Scheduler scheduler, Plugin plugin) {
+		mScheduler = scheduler;
+		mOwner = plugin.getClassLoader();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int invoke(Runnable task, TaskPriority priority) {
+		return mScheduler.addTask(task, priority, 0L, 0L, false, null, mOwner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int invokeDelayed(Runnable task, TaskPriority priority, long delay) {
+		return mScheduler.addTask(task, priority, delay, 0L, false, null, mOwner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int invokeRepeating(Runnable task, TaskPriority priority, long delay, long period) {
+		return mScheduler.addTask(task, priority, delay, period, false, null, mOwner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int invokeParallel(Runnable task, TaskPriority priority, Object... resources) {
+		return mScheduler.addTask(task, priority, 0L, 0L, false, Scheduler.checkResources(resources), mOwner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int invokeRepeatingParallel(Runnable task, TaskPriority priority, long delay, long period, Object... resources) {
+		return mScheduler.addTask(task, priority, delay, period, false, Scheduler.checkResources(resources), mOwner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int invokeAsync(Runnable task, TaskPriority priority) {
+		return mScheduler.addTask(task, priority, 0L, 0L, true, null, mOwner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int invokeDelayedAsync(Runnable task, TaskPriority priority, long delay) {
+		return mScheduler.addTask(task, priority, delay, 0L, true, null, mOwner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void cancelTask(int taskId) {
+		mScheduler.cancelTask(taskId);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void cancelTasks(Plugin owner) {
+		mScheduler.cancelTasks(owner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IScheduler forPlugin(Plugin owner) {
+		return mScheduler.forPlugin(owner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public float getDelta() {
+		return mScheduler.getDelta();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Executor getMainThreadExecutor() {
+		return mScheduler.getMainThreadExecutor();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Executor getAsyncExecutor(TaskPriority priority) {
+		return mScheduler.getAsyncExecutor(priority);
+	}
+}
@@ -0,0 +1,291 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import me.thehutch.fusion.api.scheduler.TaskPriority;
+
+/**
+ * An asynchronous executor with a separate bounded lane for each {@link TaskPriority}.
+ * <p>
+ * Workers always take from the highest priority lane which has work, unless the
+ * oldest entry of a lower lane has waited for longer than the maximum deferred
+ * time of its priority. Aged entries are taken first, which guarantees the lower
+ * lanes still progress whilst the higher lanes are saturated.
+ * <p>
+ * When a lane is full the runnable is rejected, it is never executed by the
+ * submitting thread which is usually the scheduler thread.
+ *
+ * @author thehutch
+ */
+public final class PriorityExecutor {
+	private static final int NUM_PRIORITIES = TaskPriority.values().length;
+	private final ReentrantLock mLock;
+	private final Condition mNotEmpty;
+	private final Lane[] mLanes;
+	private final Thread[] mWorkers;
+	private final int mLaneCapacity;
+	private boolean mIsShutdown;
+	private int mSize;
+
+	/**
+	 * Default constructor for {@link PriorityExecutor}.
+	 *
+	 * @param numThreads   The number of worker threads
+	 * @param laneCapacity The maximum number of queued runnables of each lane
+	 */
+	public PriorityExecutor(int numThreads, int laneCapacity) {
+		if (numThreads <= 0) {
+			throw new IllegalArgumentException("Number of threads must be greater than 0");
+		}
+		if (laneCapacity <= 0) {
+			throw new IllegalArgumentException("Lane capacity must be greater than 0");
+		}
+		mLock = new ReentrantLock();
+		mNotEmpty = mLock.newCondition();
+		mLaneCapacity = laneCapacity;
+		mLanes = new Lane[NUM_PRIORITIES];
+		for (int i = 0; i < NUM_PRIORITIES; ++i) {
+			mLanes[i] = new Lane(TaskPriority.getByIndex(i));
+		}
+		mWorkers = new Thread[numThreads];
+		for (int i = 0; i < numThreads; ++i) {
+			final Thread worker = new Thread(this::work, "Fusion-Scheduler-Worker-" + i);
+			mWorkers[i] = worker;
+			worker.start();
+		}
+	}
+
+	/**
+	 * Submits the runnable to the lane of the given priority.
+	 *
+	 * @param runnable The runnable to execute
+	 * @param priority The priority of the runnable
+	 *
+	 * @throws RejectedExecutionException If the lane is full or the executor has been shutdown
+	 */
+	public void submit(Runnable runnable, TaskPriority priority) {
+		final Lane lane = mLanes[priority.ordinal()];
+		final ReentrantLock lock = mLock;
+		lock.lock();
+		try {
+			if (mIsShutdown) {
+				throw new RejectedExecutionException("Executor has been shutdown");
+			}
+			if (lane.mQueue.size() < mLaneCapacity) {
+				lane.mQueue.add(new Entry(runnable, System.nanoTime()));
+				++mSize;
+				mNotEmpty.signal();
+				return;
+			}
+			++lane.mRejected;
+		} finally {
+			lock.unlock();
+		}
+		throw new RejectedExecutionException("The " + priority + " lane is full");
+	}
+
+	/**
+	 * Stops accepting new runnables, the workers exit once all lanes are empty.
+	 */
+	public void shutdown() {
+		final ReentrantLock lock = mLock;
+		lock.lock();
+		try {
+			mIsShutdown = true;
+			mNotEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of runnables waiting in the lane of the given priority.
+	 *
+	 * @param priority The priority of the lane
+	 *
+	 * @return The queue depth of the lane
+	 */
+	public int getQueueDepth(TaskPriority priority) {
+		final ReentrantLock lock = mLock;
+		lock.lock();
+		try {
+			return mLanes[priority.ordinal()].mQueue.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the mean time runnables of the given priority waited before being executed.
+	 *
+	 * @param priority The priority of the lane
+	 * @param timeUnit The time unit of the result
+	 *
+	 * @return The mean wait time of the lane
+	 */
+	public long getMeanWaitTime(TaskPriority priority, TimeUnit timeUnit) {
+		final ReentrantLock lock = mLock;
+		lock.lock();
+		try {
+			final Lane lane = mLanes[priority.ordinal()];
+			return lane.mTaken == 0L ? 0L : timeUnit.convert(lane.mTotalWait / lane.mTaken, TimeUnit.NANOSECONDS);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the longest time a runnable of the given priority waited before being executed.
+	 *
+	 * @param priority The priority of the lane
+	 * @param timeUnit The time unit of the result
+	 *
+	 * @return The maximum wait time of the lane
+	 */
+	public long getMaxWaitTime(TaskPriority priority, TimeUnit timeUnit) {
+		final ReentrantLock lock = mLock;
+		lock.lock();
+		try {
+			return timeUnit.convert(mLanes[priority.ordinal()].mMaxWait, TimeUnit.NANOSECONDS);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of runnables of the given priority which were rejected
+	 * because their lane was full.
+	 *
+	 * @param priority The priority of the lane
+	 *
+	 * @return The number of rejected runnables
+	 */
+	public long getRejectedCount(TaskPriority priority) {
+		final ReentrantLock lock = mLock;
+		lock.lock();
+		try {
+			return mLanes[priority.ordinal()].mRejected;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Internal method run by each of the worker threads.
+	 */
+	private void work() {
+		Runnable runnable;
+		while ((runnable = take()) != null) {
+			execute(runnable);
+		}
+	}
+
+	/**
+	 * Internal method to take the next runnable, blocking until one is available.
+	 *
+	 * @return The next runnable, null if the executor has been shutdown
+	 */
+	private Runnable take() {
+		final ReentrantLock lock = mLock;
+		lock.lock();
+		try {
+			while (mSize == 0) {
+				if (mIsShutdown) {
+					return null;
+				}
+				mNotEmpty.awaitUninterruptibly();
+			}
+			final long now = System.nanoTime();
+
+			// Pick the most overdue lane, else the highest priority lane
+			Lane selected = null;
+			long mostOverdue = 0L;
+			for (Lane lane : mLanes) {
+				final Entry head = lane.mQueue.peek();
+				if (head != null) {
+					if (selected == null) {
+						selected = lane;
+					}
+					final long overdue = now - head.mTime - lane.mMaxDeferred;
+					if (overdue > mostOverdue) {
+						selected = lane;
+						mostOverdue = overdue;
+					}
+				}
+			}
+
+			final Entry entry = selected.mQueue.poll();
+			final long wait = now - entry.mTime;
+			selected.mTotalWait += wait;
+			selected.mMaxWait = Math.max(selected.mMaxWait, wait);
+			++selected.mTaken;
+			--mSize;
+			return entry.mRunnable;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Internal method to execute a runnable, reporting any exception thrown.
+	 *
+	 * @param runnable The runnable to execute
+	 */
+	private static void execute(Runnable runnable) {
+		try {
+			runnable.run();
+		} catch (Throwable ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * A queue of runnables of a single priority and its statistics.
+	 */
+	private static final class Lane {
+		private final ArrayDeque<Entry> mQueue;
+		private final long mMaxDeferred;
+		private long mRejected;
+		private long mTaken;
+		private long mTotalWait;
+		private long mMaxWait;
+
+		private Lane(TaskPriority priority) {
+			mQueue = new ArrayDeque<>();
+			mMaxDeferred = TimeUnit.MILLISECONDS.toNanos(priority.getMaxDeferred());
+		}
+	}
+
+	/**
+	 * A queued runnable and the time it was submitted.
+	 */
+	private static final class Entry {
+		private final Runnable mRunnable;
+		private final long mTime;
+
+		private Entry(Runnable runnable, long time) {
+			mRunnable = runnable;
+			mTime = time;
+		}
+	}
+}
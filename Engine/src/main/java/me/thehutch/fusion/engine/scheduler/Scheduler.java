@@ -17,37 +17,87 @@
  */
 package me.thehutch.fusion.engine.scheduler;
 
-import java.util.ArrayDeque;
-import java.util.PriorityQueue;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TMap;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.THashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.set.hash.THashSet;
+import gnu.trove.set.hash.TIntHashSet;
+import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import me.thehutch.fusion.api.plugin.Plugin;
 import me.thehutch.fusion.api.scheduler.IScheduler;
 import me.thehutch.fusion.api.scheduler.TaskPriority;
+import me.thehutch.fusion.api.util.container.Bag;
 
 /**
  * @author thehutch
  */
 public final class Scheduler implements IScheduler {
 	private static final float OVERLOAD_FACTOR = 1.5f;
-	private static final long SECOND_AS_MILLISECOND = 1000L;
+	private static final long SECOND_AS_NANOSECOND = 1000000000L;
+	private static final long DEFAULT_SPIN_THRESHOLD = 2000000L;
+	private static final long YIELD_THRESHOLD = 200000L;
+	private static final int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+	private static final int ASYNC_LANE_CAPACITY = 4096;
+	private static final int DEFAULT_MAX_CONTINUATIONS = 256;
+	private static final float CONTINUATION_BUDGET = 0.25f;
+	private static final long PROFILER_WINDOW_SECONDS = 10L;
+	private static final int MAX_POOLED_TASKS = 1024;
 	private static final AtomicInteger TASK_ID_COUNTER = new AtomicInteger(0);
-	private final Queue<Task> mCurrentTasks;
+	private final TimingWheel mTasks;
 	private final Queue<Task> mPendingTasks;
-	private final ExecutorService mExecutor;
+	private final Queue<Integer> mCancelledTasks;
+	private final Bag<Task> mLocalPendingTasks;
+	private final TIntArrayList mLocalCancelledTasks;
+	private final Bag<Task> mTaskPool;
+	private final Bag<Task> mExpiredTasks;
+	private final Bag<Task> mSyncTasks;
+	private final Queue<Plugin> mCancelledOwners;
+	private final TaskIndex mTasksById;
+	private final TMap<ClassLoader, Task> mTasksByOwner;
+	private TIntHashSet mCancelledIds;
+	private TIntHashSet mLastCancelledIds;
+	private Set<ClassLoader> mCancelledLoaders;
+	private Set<ClassLoader> mLastCancelledLoaders;
+	private final Queue<Runnable> mContinuations;
+	private final Executor mMainThreadExecutor;
+	private final Executor[] mAsyncExecutors;
+	private final SchedulerProfiler mProfiler;
+	private final AtomicLongArray mShedCounts;
+	private final AtomicLongArray mDeferredCounts;
+	private final PriorityExecutor mExecutor;
+	private final ForkJoinPool mParallelPool;
+	private final Bag<Task> mParallelBatch;
+	private final Bag<Bag<Task>> mParallelWaves;
+	private final TObjectIntMap<Object> mLastWaves;
 	private final AtomicBoolean mIsOverloaded;
 	private final AtomicBoolean mIsActive;
 	private final AtomicLong mDelta;
-	private final long mTicksPerSecond;
 	private final long mTimePerTick;
-	private long mNextTick;
-	private long mUptime;
+	private volatile long mSpinThreshold;
+	private volatile int mMaxCatchUpTicks;
+	private volatile int mMaxContinuations;
+	private volatile boolean mIsProfiling;
+	private volatile long mTickBudget;
+	private volatile ClockMode mClockMode;
+	private volatile boolean mIsExecuting;
+	private volatile Thread mSchedulerThread;
+	private volatile long mUptime;
 
 	/**
 	 * The default constructor for {@link Scheduler}.
@@ -55,122 +105,352 @@ public final class Scheduler implements IScheduler {
 	 * @param ticksPerSecond The number of scheduler updates per second
 	 */
 	public Scheduler(long ticksPerSecond) {
-		mCurrentTasks = new PriorityQueue<>();
-		mPendingTasks = new ArrayDeque<>();
+		if (ticksPerSecond <= 0L) {
+			throw new IllegalArgumentException("Ticks per second must be greater than 0");
+		}
+		mTasks = new TimingWheel(0L);
+		mPendingTasks = new ConcurrentLinkedQueue<>();
+		mCancelledTasks = new ConcurrentLinkedQueue<>();
+		mCancelledOwners = new ConcurrentLinkedQueue<>();
+		mLocalPendingTasks = new Bag<>();
+		mLocalCancelledTasks = new TIntArrayList();
+		mTaskPool = new Bag<>();
+		mExpiredTasks = new Bag<>();
+		mSyncTasks = new Bag<>();
+		mTasksById = new TaskIndex();
+		mTasksByOwner = new THashMap<>();
+		mCancelledIds = new TIntHashSet();
+		mLastCancelledIds = new TIntHashSet();
+		mCancelledLoaders = new THashSet<>();
+		mLastCancelledLoaders = new THashSet<>();
+		mContinuations = new ConcurrentLinkedQueue<>();
 		mDelta = new AtomicLong(0L);
 		mIsOverloaded = new AtomicBoolean(false);
 		mIsActive = new AtomicBoolean(true);
-		mTicksPerSecond = ticksPerSecond;
-		mTimePerTick = SECOND_AS_MILLISECOND / ticksPerSecond;
-		mNextTick = mTimePerTick;
+		mTimePerTick = SECOND_AS_NANOSECOND / ticksPerSecond;
+		mSpinThreshold = DEFAULT_SPIN_THRESHOLD;
+		mMaxCatchUpTicks = DEFAULT_MAX_CATCH_UP_TICKS;
+		mMaxContinuations = DEFAULT_MAX_CONTINUATIONS;
+		mProfiler = new SchedulerProfiler(ticksPerSecond * PROFILER_WINDOW_SECONDS);
+		mIsProfiling = false;
+		mTickBudget = 0L;
+		mClockMode = ClockMode.REAL_TIME;
+		mIsExecuting = false;
+		mShedCounts = new AtomicLongArray(TaskPriority.values().length);
+		mDeferredCounts = new AtomicLongArray(TaskPriority.values().length);
 		mUptime = 0L;
 
 		final int availableCores = Runtime.getRuntime().availableProcessors();
-		mExecutor = Executors.newFixedThreadPool(availableCores > 0 ? availableCores : 1);
+		mExecutor = new PriorityExecutor(availableCores > 0 ? availableCores : 1, ASYNC_LANE_CAPACITY);
+		mParallelPool = new ForkJoinPool(availableCores > 0 ? availableCores : 1);
+		mParallelBatch = new Bag<>();
+		mParallelWaves = new Bag<>();
+		mLastWaves = new TObjectIntHashMap<>(16, 0.5f, -1);
+
+		// Create the executors used by the future based api
+		mMainThreadExecutor = mContinuations::add;
+		final TaskPriority[] priorities = TaskPriority.values();
+		mAsyncExecutors = new Executor[priorities.length];
+		for (TaskPriority priority : priorities) {
+			mAsyncExecutors[priority.ordinal()] = runnable -> mExecutor.submit(runnable, priority);
+		}
 	}
 
 	/**
 	 * Updates the scheduler and executes any tasks either synchronously or asynchronously
 	 * and requeues them if they are repeated.
+	 * <p>
+	 * In {@link ClockMode#REAL_TIME} the scheduler runs a fixed timestep loop, when a tick
+	 * overruns its time the lag is accumulated and the following ticks are executed
+	 * back-to-back until the loop has caught up, up to the maximum number of catch up
+	 * ticks. Any lag beyond that is dropped so the scheduler does not spiral when it is
+	 * overloaded. In {@link ClockMode#FAST_FORWARD} the ticks are executed back-to-back.
+	 * <p>
+	 * The clock mode may be changed between real-time and fast-forward whilst the
+	 * scheduler is executing.
 	 */
 	public void execute() {
-		long timeFrame = System.currentTimeMillis();
-		long timeTick;
-
-		do {
-			timeTick = System.currentTimeMillis();
-
-			// At the start of the tickm add all tasks which
-			// have been marked to be added to the loop to
-			// prevent any race condition or lock mechanism
-			mCurrentTasks.addAll(mPendingTasks);
-			mPendingTasks.clear();
-
-			// Execute the tick of the scheduler and calculate
-			// the time the scheduler spent executing
-			if (!mCurrentTasks.isEmpty()) {
-				// Seperate all the tasks which need to be executed asynchronously
-				// from those which need to be executed synchronously
-				final Queue<Task> tasks = new ArrayDeque<>();
-				boolean hasExecuted;
-				do {
-					final Task task = mCurrentTasks.peek();
-					final boolean isAlive = task.isAlive();
-
-					hasExecuted = task.getTime() <= mUptime;
-
-					if (hasExecuted && isAlive) {
-						if (task.isAsync()) {
-							mExecutor.submit(task.getRunnable());
-						} else {
-							tasks.add(task);
-						}
-						mCurrentTasks.remove();
-					} else if (!isAlive) {
-						mCurrentTasks.remove();
-					}
-				} while (!mCurrentTasks.isEmpty() && hasExecuted);
-
-				// Generate a stream on which all tasks which requested
-				// to be executed synchronously, executes with default order
-				final Consumer<Task> consumer = (task) -> {
-					// Execute the task runnable
-					try {
-						task.getRunnable().run();
-					} catch (Throwable ex) {
-						ex.printStackTrace();
-					}
+		if (mClockMode == ClockMode.STEPPED) {
+			throw new IllegalStateException("A stepped scheduler must be advanced with step()");
+		}
+		mIsExecuting = true;
+		mSchedulerThread = Thread.currentThread();
 
-					// Update the task tick time
-					task.setTime(mUptime + task.getPeriod() + (mIsOverloaded.get() ? convertToTick(task.getPriority().getMaxDeferred(), TimeUnit.MILLISECONDS) : 0L));
+		final long timePerTick = mTimePerTick;
+		long nextTick = System.nanoTime();
+		long lastTick = nextTick;
 
-					// If the task is repeating then add it back to the scheduler
-					if (task.isRepeating() && task.isAlive()) {
-						mPendingTasks.add(task);
-					}
-				};
-				tasks.forEach(consumer);
+		while (mIsActive.get()) {
+			final ClockMode clockMode = mClockMode;
+			final long timeTick = System.nanoTime();
+
+			if (clockMode == ClockMode.FAST_FORWARD) {
+				// Report the nominal tick length and resynchronise the timestep
+				mDelta.set(timePerTick);
+				mIsOverloaded.set(false);
+				tick();
+				nextTick = System.nanoTime();
+				lastTick = nextTick;
+				continue;
+			} else if (clockMode == ClockMode.STEPPED) {
+				throw new IllegalStateException("Can not change to a stepped clock whilst executing");
 			}
 
-			timeTick = System.currentTimeMillis() - timeTick;
+			// Update the delta with the measured duration of the last tick
+			mDelta.set(timeTick - lastTick);
+			lastTick = timeTick;
 
-			// Update the delta
-			mDelta.set(timeTick);
+			// Execute the tasks of this tick
+			tick();
 
-			// Advance the tick counter to one and check if
-			// the scheduler has been advanced a frame
-			if (++mUptime == mNextTick) {
-				timeTick = System.currentTimeMillis() - timeFrame;
+			// Calculate how far behind the fixed timestep the scheduler is
+			nextTick += timePerTick;
+			final long now = System.nanoTime();
+			final long lag = now - nextTick;
 
-				mNextTick += mTicksPerSecond;
+			mIsOverloaded.set(lag > timePerTick * OVERLOAD_FACTOR);
 
-				mIsOverloaded.set(timeTick > SECOND_AS_MILLISECOND * OVERLOAD_FACTOR);
+			if (lag > timePerTick * mMaxCatchUpTicks) {
+				// Too far behind to catch up, drop the accumulated lag
+				nextTick = now;
+			} else if (lag < 0L) {
+				waitUntil(nextTick);
+			}
+		}
+		dispose();
+	}
 
-				if (timeTick < SECOND_AS_MILLISECOND) {
-					try {
-						Thread.sleep(SECOND_AS_MILLISECOND - timeTick);
-					} catch (InterruptedException ex) {
-						throw new IllegalStateException("Exception trying to sleep current thread", ex);
+	/**
+	 * Manually executes the given number of ticks on the calling thread. The
+	 * scheduler must be using a {@link ClockMode#STEPPED} clock, the delta of
+	 * each tick is the nominal tick length.
+	 *
+	 * @param ticks The number of ticks to execute
+	 */
+	public void step(int ticks) {
+		if (mClockMode != ClockMode.STEPPED) {
+			throw new IllegalStateException("Only a stepped scheduler can be stepped");
+		}
+		if (!mIsActive.get()) {
+			throw new IllegalStateException("Scheduler has been shutdown");
+		}
+		mSchedulerThread = Thread.currentThread();
+		for (int i = 0; i < ticks; ++i) {
+			mDelta.set(mTimePerTick);
+			tick();
+		}
+	}
 
-					}
-				}
-				timeFrame = System.currentTimeMillis();
-			} else if (timeTick < mTimePerTick) {
-				try {
-					Thread.sleep(mTimePerTick - timeTick);
-				} catch (InterruptedException ex) {
-					throw new IllegalStateException("Exception trying to sleep current thread", ex);
-				}
-			}
-		} while (mIsActive.get());
+	/**
+	 * Sets the clock which drives the ticks of the scheduler.
+	 *
+	 * @param clockMode The clock mode
+	 */
+	public void setClockMode(ClockMode clockMode) {
+		if (clockMode == ClockMode.STEPPED && mIsExecuting) {
+			throw new IllegalStateException("Can not change to a stepped clock whilst executing");
+		}
+		mClockMode = clockMode;
+	}
 
-		// Remove all reference to old tasks to ensure GC collects
-		// thems when the service has been stopped
-		mCurrentTasks.clear();
-		mPendingTasks.clear();
+	/**
+	 * @return The clock which drives the ticks of the scheduler
+	 */
+	public ClockMode getClockMode() {
+		return mClockMode;
+	}
 
-		// Shutdown and wait for the executor to complete async tasks
-		mExecutor.shutdown();
+	/**
+	 * @return The number of ticks the scheduler has executed
+	 */
+	public long getUptime() {
+		return mUptime;
+	}
+
+	/**
+	 * Sets the time before the next tick at which the scheduler stops sleeping and
+	 * instead spins until the tick starts. A larger threshold improves the accuracy
+	 * of the tick rate at the cost of cpu time.
+	 *
+	 * @param threshold The spin threshold
+	 * @param timeUnit  The time unit of the threshold
+	 */
+	public void setSpinThreshold(long threshold, TimeUnit timeUnit) {
+		if (threshold < 0L) {
+			throw new IllegalArgumentException("Spin threshold can not be negative");
+		}
+		mSpinThreshold = timeUnit.toNanos(threshold);
+	}
+
+	/**
+	 * Sets the maximum number of ticks the scheduler will execute back-to-back
+	 * in order to catch up after it has fallen behind.
+	 *
+	 * @param ticks The maximum number of catch up ticks
+	 */
+	public void setMaxCatchUpTicks(int ticks) {
+		if (ticks < 0) {
+			throw new IllegalArgumentException("Maximum catch up ticks can not be negative");
+		}
+		mMaxCatchUpTicks = ticks;
+	}
+
+	/**
+	 * Sets the maximum number of main thread continuations executed at the end
+	 * of each tick. Continuations are also bounded by a fraction of the tick time,
+	 * any remaining continuations are carried over to the next tick.
+	 *
+	 * @param continuations The maximum number of continuations per tick
+	 */
+	public void setMaxContinuationsPerTick(int continuations) {
+		if (continuations <= 0) {
+			throw new IllegalArgumentException("Maximum continuations per tick must be greater than 0");
+		}
+		mMaxContinuations = continuations;
+	}
+
+	/**
+	 * Sets the time budget of the synchronous tasks of each tick. Once a tick has
+	 * spent its budget, {@link TaskPriority#CRITICAL} tasks still run but tasks of
+	 * lower priorities are shed to the following tick. A task is never shed for
+	 * longer than the maximum deferred time of its priority, after which it runs
+	 * regardless of the budget.
+	 *
+	 * @param budget   The tick budget, zero to disable the budget
+	 * @param timeUnit The time unit of the budget
+	 */
+	public void setTickBudget(long budget, TimeUnit timeUnit) {
+		if (budget < 0L) {
+			throw new IllegalArgumentException("Tick budget can not be negative");
+		}
+		mTickBudget = timeUnit.toNanos(budget);
+	}
+
+	/**
+	 * Returns the number of times a task of the given priority has been shed to
+	 * a later tick because the tick budget had been spent.
+	 *
+	 * @param priority The priority of the tasks
+	 *
+	 * @return The number of shed executions
+	 */
+	public long getShedCount(TaskPriority priority) {
+		return mShedCounts.get(priority.ordinal());
+	}
+
+	/**
+	 * Returns the number of times a repeating task of the given priority has had
+	 * its next execution deferred because the scheduler was overloaded.
+	 *
+	 * @param priority The priority of the tasks
+	 *
+	 * @return The number of deferred executions
+	 */
+	public long getDeferredCount(TaskPriority priority) {
+		return mDeferredCounts.get(priority.ordinal());
+	}
+
+	/**
+	 * Enables or disables the profiling of synchronous tasks and ticks. When
+	 * disabled the scheduler does not time any task executions.
+	 *
+	 * @param profiling True to enable profiling
+	 */
+	public void setProfiling(boolean profiling) {
+		mIsProfiling = profiling;
+	}
+
+	/**
+	 * @return True if the scheduler is profiling its tasks
+	 */
+	public boolean isProfiling() {
+		return mIsProfiling;
+	}
+
+	/**
+	 * Queries the runnables of the synchronous tasks with the largest total
+	 * runtime over the last {@value #PROFILER_WINDOW_SECONDS} seconds. Tasks are
+	 * profiled by the class of their runnable. The query is executed on the
+	 * scheduler thread.
+	 *
+	 * @param count The maximum number of runnables to return
+	 *
+	 * @return A future completed with the most expensive runnables, in descending order
+	 */
+	public CompletableFuture<List<TaskStatistics>> getMostExpensiveTasks(int count) {
+		return supplyOnMainThread(() -> mProfiler.getMostExpensive(count));
+	}
+
+	/**
+	 * Queries the histogram of tick durations in nanoseconds over the last
+	 * {@value #PROFILER_WINDOW_SECONDS} seconds. The query is executed on the
+	 * scheduler thread.
+	 *
+	 * @return A future completed with the tick histogram
+	 */
+	public CompletableFuture<Histogram> getTickHistogram() {
+		return supplyOnMainThread(mProfiler::getTickHistogram);
+	}
+
+	/**
+	 * @return The measured duration of the last tick in nanoseconds
+	 */
+	public long getDeltaNanos() {
+		return mDelta.get();
+	}
+
+	/**
+	 * @return True if the scheduler has fallen behind its tick rate
+	 */
+	public boolean isOverloaded() {
+		return mIsOverloaded.get();
+	}
+
+	/**
+	 * Returns the number of asynchronous tasks of the given priority waiting to be executed.
+	 *
+	 * @param priority The priority of the tasks
+	 *
+	 * @return The queue depth of the priority lane
+	 */
+	public int getAsyncQueueDepth(TaskPriority priority) {
+		return mExecutor.getQueueDepth(priority);
+	}
+
+	/**
+	 * Returns the mean time asynchronous tasks of the given priority waited before being executed.
+	 *
+	 * @param priority The priority of the tasks
+	 * @param timeUnit The time unit of the result
+	 *
+	 * @return The mean wait time of the priority lane
+	 */
+	public long getAsyncMeanWaitTime(TaskPriority priority, TimeUnit timeUnit) {
+		return mExecutor.getMeanWaitTime(priority, timeUnit);
+	}
+
+	/**
+	 * Returns the longest time an asynchronous task of the given priority waited before being executed.
+	 *
+	 * @param priority The priority of the tasks
+	 * @param timeUnit The time unit of the result
+	 *
+	 * @return The maximum wait time of the priority lane
+	 */
+	public long getAsyncMaxWaitTime(TaskPriority priority, TimeUnit timeUnit) {
+		return mExecutor.getMaxWaitTime(priority, timeUnit);
+	}
+
+	/**
+	 * Returns the number of asynchronous tasks of the given priority which were rejected
+	 * because their priority lane was full. A rejected task is retried on the next tick.
+	 *
+	 * @param priority The priority of the tasks
+	 *
+	 * @return The number of rejected tasks
+	 */
+	public long getAsyncRejectedCount(TaskPriority priority) {
+		return mExecutor.getRejectedCount(priority);
 	}
 
 	/**
@@ -178,6 +458,35 @@ public final class Scheduler implements IScheduler {
 	 */
 	public void shutdown() {
 		mIsActive.set(false);
+		if (!mIsExecuting) {
+			dispose();
+		}
+	}
+
+	/**
+	 * Internal method to release the scheduler once it has been shutdown.
+	 */
+	private void dispose() {
+		// Remove all reference to old tasks to ensure GC collects
+		// thems when the service has been stopped
+		mTasks.clear();
+		mPendingTasks.clear();
+		mCancelledTasks.clear();
+		mCancelledOwners.clear();
+		mLocalPendingTasks.clear();
+		mLocalCancelledTasks.clear();
+		mTaskPool.clear();
+		mTasksById.clear();
+		mTasksByOwner.clear();
+		mCancelledIds.clear();
+		mLastCancelledIds.clear();
+		mCancelledLoaders.clear();
+		mLastCancelledLoaders.clear();
+		mContinuations.clear();
+
+		// Shutdown and wait for the executor to complete async tasks
+		mExecutor.shutdown();
+		mParallelPool.shutdown();
 	}
 
 	/**
@@ -185,7 +494,7 @@ public final class Scheduler implements IScheduler {
 	 */
 	@Override
 	public int invoke(Runnable task, TaskPriority priority) {
-		return addTask(task, priority, 0L, 0L, false);
+		return addTask(task, priority, 0L, 0L, false, null, null);
 	}
 
 	/**
@@ -193,7 +502,7 @@ public final class Scheduler implements IScheduler {
 	 */
 	@Override
 	public int invokeDelayed(Runnable task, TaskPriority priority, long delay) {
-		return addTask(task, priority, delay, 0L, false);
+		return addTask(task, priority, delay, 0L, false, null, null);
 	}
 
 	/**
@@ -201,7 +510,23 @@ public final class Scheduler implements IScheduler {
 	 */
 	@Override
 	public int invokeRepeating(Runnable task, TaskPriority priority, long delay, long period) {
-		return addTask(task, priority, delay, period, false);
+		return addTask(task, priority, delay, period, false, null, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int invokeParallel(Runnable task, TaskPriority priority, Object... resources) {
+		return addTask(task, priority, 0L, 0L, false, checkResources(resources), null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int invokeRepeatingParallel(Runnable task, TaskPriority priority, long delay, long period, Object... resources) {
+		return addTask(task, priority, delay, period, false, checkResources(resources), null);
 	}
 
 	/**
@@ -209,7 +534,7 @@ public final class Scheduler implements IScheduler {
 	 */
 	@Override
 	public int invokeAsync(Runnable task, TaskPriority priority) {
-		return addTask(task, priority, 0L, 0L, true);
+		return addTask(task, priority, 0L, 0L, true, null, null);
 	}
 
 	/**
@@ -217,7 +542,7 @@ public final class Scheduler implements IScheduler {
 	 */
 	@Override
 	public int invokeDelayedAsync(Runnable task, TaskPriority priority, long delay) {
-		return addTask(task, priority, delay, 0L, true);
+		return addTask(task, priority, delay, 0L, true, null, null);
 	}
 
 	/**
@@ -225,36 +550,556 @@ public final class Scheduler implements IScheduler {
 	 */
 	@Override
 	public void cancelTask(int taskId) {
-		final Predicate<Task> predicate = task -> (task.getId() == taskId);
-		mCurrentTasks.stream()
-			.filter(predicate)
-			.forEach(Task::cancel);
-		mPendingTasks.removeIf(predicate);
+		if (Thread.currentThread() == mSchedulerThread) {
+			mLocalCancelledTasks.add(taskId);
+		} else {
+			mCancelledTasks.add(taskId);
+		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void cancelTasks(Plugin owner) {
+		mCancelledOwners.add(owner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IScheduler forPlugin(Plugin owner) {
+		if (owner == null) {
+			throw new IllegalArgumentException("Owner must not be null");
+		}
+		return new PluginScheduler(this, owner);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
 	@Override
 	public float getDelta() {
-		return mDelta.get() / 1000.0f;
+		return mDelta.get() / (float) SECOND_AS_NANOSECOND;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Executor getMainThreadExecutor() {
+		return mMainThreadExecutor;
 	}
 
 	/**
-	 * Internal method to add a new task to the scheduler.
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Executor getAsyncExecutor(TaskPriority priority) {
+		return mAsyncExecutors[priority.ordinal()];
+	}
+
+	/**
+	 * Internal method to add a new task to the scheduler. This method may be
+	 * called from any thread, the task is published to the scheduler thread
+	 * through a lock-free queue and is inserted at the start of the next tick.
+	 * <p>
+	 * A task submitted through the scheduler of a plugin, see
+	 * {@link #forPlugin(Plugin)}, is owned by that plugin.
+	 * <p>
+	 * Tasks added from the scheduler thread reuse a recycled {@link Task} and
+	 * skip the lock-free queue, so they do not allocate once the scheduler has
+	 * warmed up.
 	 *
-	 * @param executor The task runnable to execute
-	 * @param priority The priority of the task
-	 * @param delay    The delay in ticks before executing the task
-	 * @param period   The period in ticks between each task execution
-	 * @param isAsync  True if the task is executed asynchronously
+	 * @param executor  The task runnable to execute
+	 * @param priority  The priority of the task
+	 * @param delay     The delay in ticks before executing the task
+	 * @param period    The period in ticks between each task execution
+	 * @param isAsync   True if the task is executed asynchronously
+	 * @param resources The resources of a parallel task, null if the task is sequential
+	 * @param owner     The class loader of the plugin owning the task, null if the task has no owner
 	 *
 	 * @return The id of the task
 	 */
-	private int addTask(Runnable executor, TaskPriority priority, long delay, long period, boolean isAsync) {
+	int addTask(Runnable executor, TaskPriority priority, long delay, long period, boolean isAsync, Object[] resources, ClassLoader owner) {
 		final int taskId = TASK_ID_COUNTER.getAndIncrement();
-		final Task task = new Task(taskId, executor, priority, isAsync, mUptime, delay, period);
-		mPendingTasks.add(task);
+		if (Thread.currentThread() == mSchedulerThread) {
+			final Task task = mTaskPool.removeLast();
+			if (task == null) {
+				mLocalPendingTasks.add(new Task(taskId, executor, priority, isAsync, resources, owner, mUptime, delay, period));
+			} else {
+				task.init(taskId, executor, priority, isAsync, resources, owner, mUptime, delay, period);
+				mLocalPendingTasks.add(task);
+			}
+		} else {
+			mPendingTasks.add(new Task(taskId, executor, priority, isAsync, resources, owner, mUptime, delay, period));
+		}
 		return taskId;
 	}
 
+	/**
+	 * Checks the resource keys of a parallel task.
+	 *
+	 * @param resources The resource keys
+	 *
+	 * @return The resource keys
+	 */
+	static Object[] checkResources(Object[] resources) {
+		if (resources == null) {
+			throw new IllegalArgumentException("Resources of a parallel task must not be null");
+		}
+		for (Object resource : resources) {
+			if (resource == null) {
+				throw new IllegalArgumentException("Resource keys of a parallel task must not be null");
+			}
+		}
+		return resources;
+	}
+
+	/**
+	 * Internal method to execute a single tick of the scheduler.
+	 * <p>
+	 * Once warmed up a tick which only executes synchronous tasks submitted
+	 * from the scheduler thread does not allocate. Parallel and asynchronous
+	 * tasks still allocate their fork/join actions and executor entries.
+	 */
+	private void tick() {
+		// Only pay for the profiling when it has been enabled
+		final SchedulerProfiler profiler = mIsProfiling ? mProfiler : null;
+		final long tickBudget = mTickBudget;
+		final long timeTick;
+		if (profiler != null || tickBudget > 0L) {
+			timeTick = System.nanoTime();
+		} else {
+			timeTick = 0L;
+		}
+		if (profiler != null) {
+			profiler.beginTick(mUptime);
+		}
+
+		// Apply any cancellations requested since the last tick before adding
+		// the pending tasks. A cancellation whose task has not been registered
+		// yet is kept as a tombstone, so a task which is submitted and then
+		// cancelled before it is registered is never executed
+		final TIntHashSet cancelledIds = mLastCancelledIds;
+		cancelledIds.clear();
+		mLastCancelledIds = mCancelledIds;
+		mCancelledIds = cancelledIds;
+		final Set<ClassLoader> cancelledLoaders = mLastCancelledLoaders;
+		cancelledLoaders.clear();
+		mLastCancelledLoaders = mCancelledLoaders;
+		mCancelledLoaders = cancelledLoaders;
+
+		Integer cancelled;
+		while ((cancelled = mCancelledTasks.poll()) != null) {
+			cancel(cancelled);
+		}
+		final TIntArrayList localCancelled = mLocalCancelledTasks;
+		final int numLocalCancelled = localCancelled.size();
+		for (int i = 0; i < numLocalCancelled; ++i) {
+			cancel(localCancelled.get(i));
+		}
+		localCancelled.resetQuick();
+		Plugin owner;
+		while ((owner = mCancelledOwners.poll()) != null) {
+			final ClassLoader loader = owner.getClassLoader();
+			cancelledLoaders.add(loader);
+			Task task = mTasksByOwner.remove(loader);
+			while (task != null) {
+				final Task next = task.mOwnerNext;
+				task.mOwnerNext = null;
+				task.mOwnerPrev = null;
+				cancel(task);
+				task = next;
+			}
+		}
+
+		// Add all tasks which have been submitted from any thread since
+		// the last tick, the lock-free queue publishes each task to the
+		// scheduler thread safely. The uptime read by the submitting thread
+		// may be stale, so the delay is counted from this tick, a delayed
+		// task can then always be cancelled before it is due
+		final TimingWheel wheel = mTasks;
+		Task pending;
+		while ((pending = mPendingTasks.poll()) != null) {
+			pending.rebase(mUptime);
+			if (register(pending)) {
+				wheel.schedule(pending);
+			}
+		}
+		final Bag<Task> localPending = mLocalPendingTasks;
+		final int numLocalPending = localPending.size();
+		for (int i = 0; i < numLocalPending; ++i) {
+			pending = localPending.get(i);
+			if (register(pending)) {
+				wheel.schedule(pending);
+			}
+		}
+		localPending.clear();
+
+		// Expire every task due on this tick from the wheel, already
+		// ordered by their priority, and seperate all the tasks which
+		// need to be executed asynchronously from those which need to
+		// be executed synchronously
+		final Bag<Task> expired = mExpiredTasks;
+		wheel.advance(expired);
+		if (!expired.isEmpty()) {
+			final Bag<Task> tasks = mSyncTasks;
+			final int numExpired = expired.size();
+			for (int i = 0; i < numExpired; ++i) {
+				final Task task = expired.get(i);
+				if (!task.isAlive()) {
+					unregister(task);
+				} else if (task.isAsync()) {
+					submitAsync(task);
+				} else {
+					tasks.add(task);
+				}
+			}
+			expired.clear();
+
+			// Execute all the synchronous tasks in priority order, consecutive
+			// parallel tasks are batched and executed concurrently before the
+			// next sequential task to keep the ordering between them
+			final Bag<Task> batch = mParallelBatch;
+			final int numTasks = tasks.size();
+			for (int i = 0; i < numTasks; ++i) {
+				final Task task = tasks.get(i);
+				if (tickBudget > 0L && shed(task, timeTick, tickBudget)) {
+					continue;
+				}
+				if (task.isParallel()) {
+					batch.add(task);
+				} else {
+					executeParallel(batch, profiler);
+					final long timeTask = profiler != null ? System.nanoTime() : 0L;
+					run(task.getRunnable());
+					if (profiler != null) {
+						profiler.recordExecution(task, System.nanoTime() - timeTask);
+					}
+					complete(task, profiler);
+				}
+			}
+			executeParallel(batch, profiler);
+			tasks.clear();
+		}
+
+		// Execute a bounded batch of the main thread continuations
+		final Queue<Runnable> continuations = mContinuations;
+		if (!continuations.isEmpty()) {
+			final long deadline = System.nanoTime() + (long) (mTimePerTick * CONTINUATION_BUDGET);
+			final int maxContinuations = mMaxContinuations;
+			Runnable continuation;
+			for (int i = 0; i < maxContinuations && (continuation = continuations.poll()) != null; ++i) {
+				try {
+					continuation.run();
+				} catch (Throwable ex) {
+					ex.printStackTrace();
+				}
+				if (System.nanoTime() >= deadline) {
+					break;
+				}
+			}
+		}
+
+		if (profiler != null) {
+			profiler.endTick(System.nanoTime() - timeTick);
+		}
+
+		// Advance the tick counter
+		++mUptime;
+	}
+
+	/**
+	 * Internal method to submit an expired asynchronous task to its priority
+	 * lane. When the lane is full the task is retried on the next tick, so a
+	 * flooded lane never stalls the scheduler thread.
+	 *
+	 * @param task The asynchronous task
+	 */
+	private void submitAsync(Task task) {
+		try {
+			mExecutor.submit(task.getRunnable(), task.getPriority());
+		} catch (RejectedExecutionException ex) {
+			task.setTime(mUptime + 1L);
+			mTasks.schedule(task);
+			return;
+		}
+		unregister(task);
+	}
+
+	/**
+	 * Internal method to shed a task to the next tick once the tick budget has
+	 * been spent, unless it has reached the maximum deferral of its priority.
+	 * {@link TaskPriority#CRITICAL} tasks are never shed.
+	 *
+	 * @param task       The task
+	 * @param timeTick   The time the tick started
+	 * @param tickBudget The tick budget
+	 *
+	 * @return True if the task has been shed
+	 */
+	private boolean shed(Task task, long timeTick, long tickBudget) {
+		if (task.getPriority() != TaskPriority.CRITICAL && System.nanoTime() - timeTick >= tickBudget) {
+			if (task.mShedFrom < 0L) {
+				task.mShedFrom = mUptime;
+			}
+			if (mUptime - task.mShedFrom < convertToTick(task.getPriority().getMaxDeferred(), TimeUnit.MILLISECONDS)) {
+				mShedCounts.incrementAndGet(task.getPriority().ordinal());
+				task.setTime(mUptime + 1L);
+				mTasks.schedule(task);
+				return true;
+			}
+		}
+		task.mShedFrom = -1L;
+		return false;
+	}
+
+	/**
+	 * Internal method to re-arm a synchronous task after it has been executed
+	 * if it is repeating, otherwise it is reclaimed.
+	 *
+	 * @param task     The task
+	 * @param profiler The profiler, null if profiling is disabled
+	 */
+	private void complete(Task task, SchedulerProfiler profiler) {
+		if (task.isRepeating() && task.isAlive()) {
+			final long deferred = mIsOverloaded.get() ? convertToTick(task.getPriority().getMaxDeferred(), TimeUnit.MILLISECONDS) : 0L;
+			if (deferred > 0L) {
+				mDeferredCounts.incrementAndGet(task.getPriority().ordinal());
+				if (profiler != null) {
+					profiler.recordDeferral(task);
+				}
+			}
+			task.setTime(mUptime + task.getPeriod() + deferred);
+			mTasks.schedule(task);
+		} else {
+			unregister(task);
+		}
+	}
+
+	/**
+	 * Internal method to execute a batch of parallel tasks on the parallel pool
+	 * and wait for them to complete. The batch is split into waves so that tasks
+	 * which share a resource never run concurrently and run in their original
+	 * order, tasks without any resources all run within the first wave.
+	 *
+	 * @param batch    The batch of parallel tasks, cleared once executed
+	 * @param profiler The profiler, null if profiling is disabled
+	 */
+	private void executeParallel(Bag<Task> batch, SchedulerProfiler profiler) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		final boolean timed = profiler != null;
+		final int numTasks = batch.size();
+		if (numTasks == 1) {
+			ParallelWave.execute(batch.get(0), timed);
+		} else {
+			// Assign each task to the wave after the last wave using any of its resources
+			final Bag<Bag<Task>> waves = mParallelWaves;
+			final TObjectIntMap<Object> lastWaves = mLastWaves;
+			int numWaves = 0;
+			for (int i = 0; i < numTasks; ++i) {
+				final Task task = batch.get(i);
+				final Object[] resources = task.getResources();
+				int wave = 0;
+				for (Object resource : resources) {
+					wave = Math.max(wave, lastWaves.get(resource) + 1);
+				}
+				for (Object resource : resources) {
+					lastWaves.put(resource, wave);
+				}
+				while (waves.size() <= wave) {
+					waves.add(new Bag<>());
+				}
+				waves.get(wave).add(task);
+				numWaves = Math.max(numWaves, wave + 1);
+			}
+			// Execute each wave, the pool returns once every task has completed
+			for (int i = 0; i < numWaves; ++i) {
+				final Bag<Task> wave = waves.get(i);
+				mParallelPool.invoke(new ParallelWave(wave, 0, wave.size(), timed));
+				wave.clear();
+			}
+			lastWaves.clear();
+		}
+		// Complete the tasks on the scheduler thread
+		for (int i = 0; i < numTasks; ++i) {
+			final Task task = batch.get(i);
+			if (timed) {
+				profiler.recordExecution(task, task.mRuntime);
+			}
+			complete(task, profiler);
+		}
+		batch.clear();
+	}
+
+	/**
+	 * Internal method to execute a task runnable, reporting any exception thrown.
+	 *
+	 * @param runnable The runnable to execute
+	 */
+	private static void run(Runnable runnable) {
+		try {
+			runnable.run();
+		} catch (Throwable ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Internal method to index a newly submitted task by its id and owner.
+	 * The tasks of each owner are linked through the tasks themselves, the
+	 * owner keeps its entry until its tasks are cancelled so the index does
+	 * not churn as short lived tasks come and go.
+	 * <p>
+	 * A task whose id or owner has been cancelled within this tick or the last
+	 * tick is rejected and reclaimed instead.
+	 *
+	 * @param task The task
+	 *
+	 * @return True if the task has been registered
+	 */
+	private boolean register(Task task) {
+		final int taskId = task.getId();
+		final ClassLoader owner = task.getOwner();
+		if (mCancelledIds.contains(taskId) || mLastCancelledIds.contains(taskId)
+			|| owner != null && (mCancelledLoaders.contains(owner) || mLastCancelledLoaders.contains(owner))) {
+			task.cancel();
+			unregister(task);
+			return false;
+		}
+		mTasksById.put(task);
+		if (owner != null) {
+			final Task head = mTasksByOwner.get(owner);
+			task.mOwnerPrev = null;
+			task.mOwnerNext = head;
+			if (head != null) {
+				head.mOwnerPrev = task;
+			}
+			mTasksByOwner.put(owner, task);
+		}
+		return true;
+	}
+
+	/**
+	 * Internal method to remove a task from the id and owner indices once
+	 * it will no longer be executed, the task is then recycled.
+	 *
+	 * @param task The task
+	 */
+	private void unregister(Task task) {
+		mTasksById.remove(task.getId());
+		final ClassLoader owner = task.getOwner();
+		if (owner != null) {
+			final Task prev = task.mOwnerPrev;
+			final Task next = task.mOwnerNext;
+			if (prev != null) {
+				prev.mOwnerNext = next;
+			} else if (mTasksByOwner.get(owner) == task) {
+				mTasksByOwner.put(owner, next);
+			}
+			if (next != null) {
+				next.mOwnerPrev = prev;
+			}
+			task.mOwnerPrev = null;
+			task.mOwnerNext = null;
+		}
+		// Nothing references the task anymore, keep it to be reused
+		if (mTaskPool.size() < MAX_POOLED_TASKS) {
+			task.recycle();
+			mTaskPool.add(task);
+		}
+	}
+
+	/**
+	 * Internal method to cancel the task with the given id. If the task has
+	 * not been registered the id is kept as a tombstone until the end of the
+	 * next tick, see {@link #register(Task)}.
+	 *
+	 * @param taskId The id of the task to cancel
+	 */
+	private void cancel(int taskId) {
+		final Task task = mTasksById.get(taskId);
+		if (task != null) {
+			cancel(task);
+		} else {
+			mCancelledIds.add(taskId);
+		}
+	}
+
+	/**
+	 * Internal method to cancel a task. A task waiting within the wheel is
+	 * removed immediately, a task which is currently executing is reclaimed
+	 * once it has finished.
+	 *
+	 * @param task The task to cancel
+	 */
+	private void cancel(Task task) {
+		task.cancel();
+		if (mTasks.remove(task)) {
+			unregister(task);
+		}
+	}
+
+	/**
+	 * Internal method to wait until the given time. The thread sleeps until the
+	 * remaining time falls below the spin threshold, it then yields and finally
+	 * spins for the last few microseconds.
+	 *
+	 * @param deadline The {@link System#nanoTime()} to wait until
+	 */
+	private void waitUntil(long deadline) {
+		final long spinThreshold = mSpinThreshold;
+		long remaining = deadline - System.nanoTime();
+		while (remaining > 0L) {
+			if (remaining > spinThreshold) {
+				LockSupport.parkNanos(remaining - spinThreshold);
+			} else if (remaining > YIELD_THRESHOLD) {
+				Thread.yield();
+			}
+			remaining = deadline - System.nanoTime();
+		}
+	}
+
+	/**
+	 * A wave of parallel tasks which is recursively split across the parallel pool.
+	 */
+	private static final class ParallelWave extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Bag<Task> mTasks;
+		private final boolean mIsTimed;
+		private final int mStart;
+		private final int mEnd;
+
+		private ParallelWave(Bag<Task> tasks, int start, int end, boolean timed) {
+			mTasks = tasks;
+			mIsTimed = timed;
+			mStart = start;
+			mEnd = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (mEnd - mStart == 1) {
+				execute(mTasks.get(mStart), mIsTimed);
+			} else {
+				final int middle = (mStart + mEnd) >>> 1;
+				invokeAll(new ParallelWave(mTasks, mStart, middle, mIsTimed), new ParallelWave(mTasks, middle, mEnd, mIsTimed));
+			}
+		}
+
+		private static void execute(Task task, boolean timed) {
+			final long timeTask = timed ? System.nanoTime() : 0L;
+			run(task.getRunnable());
+			if (timed) {
+				task.mRuntime = System.nanoTime() - timeTask;
+			}
+		}
+	}
+
 	/**
 	 * Calculate the tick representation of a time.
 	 *
@@ -264,6 +1109,6 @@ public final class Scheduler implements IScheduler {
 	 * @return The tick representation of the time
 	 */
 	private long convertToTick(long time, TimeUnit timeUnit) {
-		return timeUnit.toMillis(time) / mTicksPerSecond;
+		return timeUnit.toNanos(time) / mTimePerTick;
 	}
 }
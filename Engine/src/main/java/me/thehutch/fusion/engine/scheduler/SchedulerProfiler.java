@@ -0,0 +1,250 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+import gnu.trove.map.hash.THashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import me.thehutch.fusion.api.scheduler.TaskPriority;
+import me.thehutch.fusion.api.util.container.Bag;
+
+/**
+ * Collects the execution profile of the scheduler tasks and ticks.
+ * <p>
+ * The tasks are profiled by the class of their runnable, so every task
+ * submitted with the same runnable or lambda shares a single profile and the
+ * number of profiles does not grow with the number of tasks.
+ * <p>
+ * The sliding window is split into {@value #NUM_EPOCHS} epochs, each profile
+ * keeps its total runtime of every epoch within the window so the most
+ * expensive runnables can be queried without storing every sample. Profiles
+ * without any activity are forgotten once they fall out of the window. The
+ * tick durations are likewise recorded into a histogram for each epoch.
+ * <p>
+ * The profiler is only accessed from the scheduler thread.
+ *
+ * @author thehutch
+ */
+final class SchedulerProfiler {
+	private static final int NUM_EPOCHS = 10;
+	private final Bag<TaskProfile> mProfiles;
+	private final Map<Class<?>, TaskProfile> mProfilesByType;
+	private final Histogram[] mTickHistograms;
+	private final long[] mTickEpochs;
+	private final long mEpochLength;
+	private long mEpoch;
+
+	/**
+	 * Default constructor for {@link SchedulerProfiler}.
+	 *
+	 * @param windowTicks The length of the sliding window in ticks
+	 */
+	SchedulerProfiler(long windowTicks) {
+		mProfiles = new Bag<>();
+		mProfilesByType = new THashMap<>();
+		mTickHistograms = new Histogram[NUM_EPOCHS];
+		mTickEpochs = new long[NUM_EPOCHS];
+		for (int i = 0; i < NUM_EPOCHS; ++i) {
+			mTickHistograms[i] = new Histogram();
+			mTickEpochs[i] = -1L;
+		}
+		mEpochLength = Math.max(1L, windowTicks / NUM_EPOCHS);
+		mEpoch = 0L;
+	}
+
+	/**
+	 * Called at the start of each tick.
+	 *
+	 * @param tick The tick about to be executed
+	 */
+	void beginTick(long tick) {
+		final long epoch = tick / mEpochLength;
+		if (epoch != mEpoch) {
+			mEpoch = epoch;
+			// Forget the profiles which have no activity within the window
+			final Bag<TaskProfile> profiles = mProfiles;
+			for (int i = profiles.size() - 1; i >= 0; --i) {
+				final TaskProfile profile = profiles.get(i);
+				if (profile.mLastEpoch <= epoch - NUM_EPOCHS) {
+					profiles.remove(i);
+					mProfilesByType.remove(profile.mType);
+					profile.mIsTracked = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called at the end of each tick.
+	 *
+	 * @param duration The time spent executing the tick
+	 */
+	void endTick(long duration) {
+		final int slot = (int) (mEpoch % NUM_EPOCHS);
+		final Histogram histogram = mTickHistograms[slot];
+		if (mTickEpochs[slot] != mEpoch) {
+			mTickEpochs[slot] = mEpoch;
+			histogram.reset();
+		}
+		histogram.record(duration);
+	}
+
+	/**
+	 * Records an execution of the given task.
+	 *
+	 * @param task     The task executed
+	 * @param duration The time spent executing the task
+	 */
+	void recordExecution(Task task, long duration) {
+		final TaskProfile profile = profileOf(task);
+		final int slot = (int) (mEpoch % NUM_EPOCHS);
+		if (profile.mEpochs[slot] != mEpoch) {
+			profile.mEpochs[slot] = mEpoch;
+			profile.mEpochTotals[slot] = 0L;
+		}
+		profile.mEpochTotals[slot] += duration;
+		profile.mLastEpoch = mEpoch;
+		profile.mLastRuntime = duration;
+		profile.mPriority = task.getPriority();
+		profile.mHistogram.record(duration);
+	}
+
+	/**
+	 * Records a deferral of the given task.
+	 *
+	 * @param task The task deferred
+	 */
+	void recordDeferral(Task task) {
+		final TaskProfile profile = profileOf(task);
+		profile.mLastEpoch = mEpoch;
+		++profile.mDeferrals;
+	}
+
+	/**
+	 * @return A histogram of the tick durations within the sliding window
+	 */
+	Histogram getTickHistogram() {
+		final Histogram histogram = new Histogram();
+		for (int i = 0; i < NUM_EPOCHS; ++i) {
+			if (mTickEpochs[i] > mEpoch - NUM_EPOCHS) {
+				histogram.add(mTickHistograms[i]);
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Returns the statistics of the runnables with the largest total runtime
+	 * within the sliding window, in descending order.
+	 *
+	 * @param count The maximum number of runnables to return
+	 *
+	 * @return The most expensive runnables
+	 */
+	List<TaskStatistics> getMostExpensive(int count) {
+		if (count <= 0) {
+			return Collections.emptyList();
+		}
+		final Comparator<TaskStatistics> comparator = (a, b) -> Long.compare(a.getWindowRuntime(), b.getWindowRuntime());
+		final PriorityQueue<TaskStatistics> heap = new PriorityQueue<>(count, comparator);
+		final Bag<TaskProfile> profiles = mProfiles;
+		final int numProfiles = profiles.size();
+		for (int i = 0; i < numProfiles; ++i) {
+			final TaskProfile profile = profiles.get(i);
+			final long windowRuntime = profile.getWindowRuntime(mEpoch);
+			if (heap.size() < count) {
+				heap.add(profile.snapshot(windowRuntime));
+			} else if (windowRuntime > heap.peek().getWindowRuntime()) {
+				heap.poll();
+				heap.add(profile.snapshot(windowRuntime));
+			}
+		}
+		final List<TaskStatistics> result = new ArrayList<>(heap);
+		result.sort(comparator.reversed());
+		return result;
+	}
+
+	/**
+	 * Internal method to get the profile of the runnable of a task, creating
+	 * it if required. The profile is cached by the task.
+	 *
+	 * @param task The task
+	 *
+	 * @return The profile of the runnable
+	 */
+	private TaskProfile profileOf(Task task) {
+		TaskProfile profile = task.mProfile;
+		if (profile == null || !profile.mIsTracked) {
+			final Class<?> type = task.getRunnable().getClass();
+			profile = mProfilesByType.get(type);
+			if (profile == null) {
+				profile = new TaskProfile(type, task.getPriority());
+				profile.mIsTracked = true;
+				mProfilesByType.put(type, profile);
+				mProfiles.add(profile);
+			}
+			task.mProfile = profile;
+		}
+		return profile;
+	}
+
+	/**
+	 * The execution profile of the tasks of a single runnable class.
+	 */
+	static final class TaskProfile {
+		private final Histogram mHistogram;
+		private final long[] mEpochTotals;
+		private final long[] mEpochs;
+		private final Class<?> mType;
+		private TaskPriority mPriority;
+		private boolean mIsTracked;
+		private long mLastRuntime;
+		private long mLastEpoch;
+		private long mDeferrals;
+
+		private TaskProfile(Class<?> type, TaskPriority priority) {
+			mHistogram = new Histogram();
+			mEpochTotals = new long[NUM_EPOCHS];
+			mEpochs = new long[NUM_EPOCHS];
+			mType = type;
+			mPriority = priority;
+			for (int i = 0; i < NUM_EPOCHS; ++i) {
+				mEpochs[i] = -1L;
+			}
+		}
+
+		private long getWindowRuntime(long epoch) {
+			long total = 0L;
+			for (int i = 0; i < NUM_EPOCHS; ++i) {
+				if (mEpochs[i] > epoch - NUM_EPOCHS) {
+					total += mEpochTotals[i];
+				}
+			}
+			return total;
+		}
+
+		private TaskStatistics snapshot(long windowRuntime) {
+			final Histogram histogram = mHistogram;
+			return new TaskStatistics(mType.getName(), mPriority, mLastRuntime, histogram.getMean(), histogram.getPercentile(99.0), windowRuntime, histogram.getCount(), mDeferrals);
+		}
+	}
+}
@@ -17,21 +17,35 @@
  */
 package me.thehutch.fusion.engine.scheduler;
 
-import java.util.concurrent.atomic.AtomicBoolean;
 import me.thehutch.fusion.api.scheduler.TaskPriority;
 
 /**
  * @author thehutch
  */
-public final class Task implements Comparable<Task> {
-	private final Runnable mRunnable;
-	private final TaskPriority mPriority;
-	private final AtomicBoolean mIsAlive;
-	private final long mCreationTime;
-	private final boolean mIsAsync;
-	private final long mPeriod;
-	private final int mID;
+public final class Task {
+	private Runnable mRunnable;
+	private TaskPriority mPriority;
+	private volatile boolean mIsAlive;
+	private ClassLoader mOwner;
+	private Object[] mResources;
+	private long mCreationTime;
+	private boolean mIsAsync;
+	private long mPeriod;
+	private int mID;
 	private long mTick;
+	// Intrusive links used by the TimingWheel
+	Task mNext;
+	Task mPrev;
+	int mBucket = -1;
+	// Intrusive links of the tasks sharing the same owner
+	Task mOwnerNext;
+	Task mOwnerPrev;
+	// The tick this task was first shed from by the tick budget, -1 if not shed
+	long mShedFrom = -1L;
+	// The runtime of the last parallel execution, measured on the worker thread
+	long mRuntime;
+	// Execution profile, created once the task is first profiled
+	SchedulerProfiler.TaskProfile mProfile;
 
 	/**
 	 * Default constructor for {@link Task}.
@@ -40,19 +54,65 @@ public final class Task implements Comparable<Task> {
 	 * @param runnable     The task mRunnable function
 	 * @param priority     The mPriority of the task
 	 * @param async        True if the task is executed asynchronously
+	 * @param resources    The resources of a parallel task, null if the task is sequential
+	 * @param owner        The class loader of the plugin owning the task, null if unowned
 	 * @param creationTime A timestamp of this task's creation
 	 * @param delay        The number of ticks before task execution
 	 * @param period       The number of ticks between task execution
 	 */
-	public Task(int id, Runnable runnable, TaskPriority priority, boolean async, long creationTime, long delay, long period) {
+	public Task(int id, Runnable runnable, TaskPriority priority, boolean async, Object[] resources, ClassLoader owner, long creationTime, long delay, long period) {
+		init(id, runnable, priority, async, resources, owner, creationTime, delay, period);
+	}
+
+	/**
+	 * Initialises the task, used by the constructor and when a recycled task
+	 * is reused by the scheduler.
+	 *
+	 * @param id           The mID of the task
+	 * @param runnable     The task mRunnable function
+	 * @param priority     The mPriority of the task
+	 * @param async        True if the task is executed asynchronously
+	 * @param resources    The resources of a parallel task, null if the task is sequential
+	 * @param owner        The class loader of the plugin owning the task, null if unowned
+	 * @param creationTime A timestamp of this task's creation
+	 * @param delay        The number of ticks before task execution
+	 * @param period       The number of ticks between task execution
+	 */
+	void init(int id, Runnable runnable, TaskPriority priority, boolean async, Object[] resources, ClassLoader owner, long creationTime, long delay, long period) {
 		mID = id;
 		mRunnable = runnable;
 		mPriority = priority;
 		mIsAsync = async;
+		mOwner = owner;
+		mResources = resources;
 		mPeriod = period;
 		mCreationTime = creationTime;
-		mIsAlive = new AtomicBoolean(true);
 		mTick = creationTime + delay;
+		mShedFrom = -1L;
+		mRuntime = 0L;
+		mProfile = null;
+		mIsAlive = true;
+	}
+
+	/**
+	 * Moves the creation time of the task to the given tick, keeping its delay.
+	 *
+	 * @param tick The tick the task was picked up by the scheduler
+	 */
+	void rebase(long tick) {
+		mTick = tick + (mTick - mCreationTime);
+		mCreationTime = tick;
+	}
+
+	/**
+	 * Releases the references held by the task once it has been reclaimed.
+	 */
+	void recycle() {
+		mRunnable = null;
+		mResources = null;
+		mOwner = null;
+		mProfile = null;
+		mIsAlive = false;
 	}
 
 	/**
@@ -73,7 +133,28 @@ public final class Task implements Comparable<Task> {
 	 * @return True if the task is still running
 	 */
 	public boolean isAlive() {
-		return mIsAlive.get();
+		return mIsAlive;
+	}
+
+	/**
+	 * @return True if this task may be executed in parallel with other parallel tasks
+	 */
+	public boolean isParallel() {
+		return mResources != null;
+	}
+
+	/**
+	 * @return The resources used by this parallel task
+	 */
+	public Object[] getResources() {
+		return mResources;
+	}
+
+	/**
+	 * @return The class loader of the plugin owning this task, null if unowned
+	 */
+	public ClassLoader getOwner() {
+		return mOwner;
 	}
 
 	/**
@@ -131,22 +212,6 @@ public final class Task implements Comparable<Task> {
 	 * Cancels this task
 	 */
 	public void cancel() {
-		mIsAlive.set(false);
-	}
-
-	/**
-	 * Compares this task with the given task.
-	 *
-	 * @param task The task to compare this task with
-	 *
-	 * @return Greater than 1 if this task has a greater mPriority
-	 *         than the given task else less than one
-	 */
-	@Override
-	public int compareTo(Task task) {
-		if (getTime() == task.getTime()) {
-			return (int) (getPriority() == task.getPriority() ? getCreationTime() - task.getCreationTime() : task.getPriority().getMaxDeferred() - getPriority().getMaxDeferred());
-		}
-		return getTime() < task.getTime() ? 1 : -1;
+		mIsAlive = false;
 	}
 }
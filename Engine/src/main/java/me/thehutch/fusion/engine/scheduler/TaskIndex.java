@@ -0,0 +1,168 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+/**
+ * An open addressing hash table of tasks keyed on their id.
+ * <p>
+ * Collisions are resolved with linear probing and removals shift the following
+ * entries back rather than leaving a tombstone, so the table never needs to be
+ * rehashed unless it grows. This keeps the churn of short lived tasks free of
+ * allocations once the table has reached its working size.
+ *
+ * @author thehutch
+ */
+final class TaskIndex {
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final float LOAD_FACTOR = 0.5f;
+	private Task[] mTable;
+	private int mMask;
+	private int mSize;
+
+	/**
+	 * Default constructor for {@link TaskIndex}.
+	 */
+	TaskIndex() {
+		mTable = new Task[DEFAULT_CAPACITY];
+		mMask = DEFAULT_CAPACITY - 1;
+		mSize = 0;
+	}
+
+	/**
+	 * @return The number of tasks within the index
+	 */
+	int size() {
+		return mSize;
+	}
+
+	/**
+	 * Returns the task with the given id.
+	 *
+	 * @param id The id of the task
+	 *
+	 * @return The task, null if the index does not contain the id
+	 */
+	Task get(int id) {
+		final Task[] table = mTable;
+		final int mask = mMask;
+		for (int i = indexOf(id, mask);; i = (i + 1) & mask) {
+			final Task task = table[i];
+			if (task == null || task.getId() == id) {
+				return task;
+			}
+		}
+	}
+
+	/**
+	 * Adds the task to the index, replacing any task with the same id.
+	 *
+	 * @param task The task to add
+	 */
+	void put(Task task) {
+		if (mSize + 1 > mTable.length * LOAD_FACTOR) {
+			resize(mTable.length << 1);
+		}
+		final Task[] table = mTable;
+		final int mask = mMask;
+		final int id = task.getId();
+		for (int i = indexOf(id, mask);; i = (i + 1) & mask) {
+			final Task current = table[i];
+			if (current == null) {
+				table[i] = task;
+				++mSize;
+				return;
+			} else if (current.getId() == id) {
+				table[i] = task;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes the task with the given id from the index.
+	 *
+	 * @param id The id of the task
+	 *
+	 * @return The removed task, null if the index does not contain the id
+	 */
+	Task remove(int id) {
+		final Task[] table = mTable;
+		final int mask = mMask;
+		int i = indexOf(id, mask);
+		Task task;
+		while ((task = table[i]) != null && task.getId() != id) {
+			i = (i + 1) & mask;
+		}
+		if (task == null) {
+			return null;
+		}
+		// Shift back the following entries which probed past the removed slot
+		int hole = i;
+		for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+			final int home = indexOf(table[j].getId(), mask);
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				table[hole] = table[j];
+				hole = j;
+			}
+		}
+		table[hole] = null;
+		--mSize;
+		return task;
+	}
+
+	/**
+	 * Removes every task from the index.
+	 */
+	void clear() {
+		final Task[] table = mTable;
+		for (int i = 0; i < table.length; ++i) {
+			table[i] = null;
+		}
+		mSize = 0;
+	}
+
+	/**
+	 * Internal method to resize the table and reinsert every task.
+	 *
+	 * @param capacity The new capacity, a power of two
+	 */
+	private void resize(int capacity) {
+		final Task[] old = mTable;
+		mTable = new Task[capacity];
+		mMask = capacity - 1;
+		mSize = 0;
+		for (Task task : old) {
+			if (task != null) {
+				put(task);
+			}
+		}
+	}
+
+	/**
+	 * Internal method to calculate the home slot of an id.
+	 *
+	 * @param id   The id
+	 * @param mask The mask of the table
+	 *
+	 * @return The slot index
+	 */
+	private static int indexOf(int id, int mask) {
+		final int hash = id * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
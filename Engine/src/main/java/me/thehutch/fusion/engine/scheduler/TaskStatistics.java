@@ -0,0 +1,125 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+import me.thehutch.fusion.api.scheduler.TaskPriority;
+
+/**
+ * An immutable snapshot of the execution profile of the tasks of a single
+ * runnable class. All durations are in nanoseconds.
+ *
+ * @author thehutch
+ */
+public final class TaskStatistics {
+	private final String mName;
+	private final TaskPriority mPriority;
+	private final long mLastRuntime;
+	private final long mMeanRuntime;
+	private final long mP99Runtime;
+	private final long mWindowRuntime;
+	private final long mInvocations;
+	private final long mDeferrals;
+
+	/**
+	 * Default constructor for {@link TaskStatistics}.
+	 *
+	 * @param name          The class name of the task runnable
+	 * @param priority      The priority of the last task executed
+	 * @param lastRuntime   The runtime of the last execution
+	 * @param meanRuntime   The mean runtime of all executions
+	 * @param p99Runtime    The 99th percentile runtime of all executions
+	 * @param windowRuntime The total runtime within the sliding window
+	 * @param invocations   The number of executions
+	 * @param deferrals     The number of times the task has been deferred
+	 */
+	TaskStatistics(String name, TaskPriority priority, long lastRuntime, long meanRuntime, long p99Runtime, long windowRuntime, long invocations, long deferrals) {
+		mName = name;
+		mPriority = priority;
+		mLastRuntime = lastRuntime;
+		mMeanRuntime = meanRuntime;
+		mP99Runtime = p99Runtime;
+		mWindowRuntime = windowRuntime;
+		mInvocations = invocations;
+		mDeferrals = deferrals;
+	}
+
+	/**
+	 * @return The class name of the task runnable
+	 */
+	public String getName() {
+		return mName;
+	}
+
+	/**
+	 * @return The priority of the last task executed
+	 */
+	public TaskPriority getPriority() {
+		return mPriority;
+	}
+
+	/**
+	 * @return The runtime of the last execution
+	 */
+	public long getLastRuntime() {
+		return mLastRuntime;
+	}
+
+	/**
+	 * @return The mean runtime of all executions
+	 */
+	public long getMeanRuntime() {
+		return mMeanRuntime;
+	}
+
+	/**
+	 * @return The 99th percentile runtime of all executions
+	 */
+	public long getP99Runtime() {
+		return mP99Runtime;
+	}
+
+	/**
+	 * @return The total runtime within the sliding window
+	 */
+	public long getWindowRuntime() {
+		return mWindowRuntime;
+	}
+
+	/**
+	 * @return The number of executions
+	 */
+	public long getInvocations() {
+		return mInvocations;
+	}
+
+	/**
+	 * @return The number of times the task has been deferred
+	 */
+	public long getDeferrals() {
+		return mDeferrals;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("%s [%s] last=%dns mean=%dns p99=%dns window=%dns invocations=%d deferrals=%d",
+			mName, mPriority, mLastRuntime, mMeanRuntime, mP99Runtime, mWindowRuntime, mInvocations, mDeferrals);
+	}
+}
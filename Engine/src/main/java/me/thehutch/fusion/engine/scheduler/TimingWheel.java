@@ -0,0 +1,241 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+import me.thehutch.fusion.api.scheduler.TaskPriority;
+import me.thehutch.fusion.api.util.container.Bag;
+
+/**
+ * A hashed hierarchical timing wheel keyed on scheduler ticks.
+ * <p>
+ * Each level of the wheel holds {@value #WHEEL_SIZE} buckets, a task is placed
+ * in the lowest level which can represent its remaining delay and is cascaded
+ * down a level each time the level below wraps around. Tasks which are further
+ * away than the highest level can represent are held in an overflow bucket.
+ * <p>
+ * The buckets are intrusive doubly linked lists threaded through the {@link Task}
+ * so inserting, expiring and re-arming a task are all O(1). The lowest level is
+ * further split by {@link TaskPriority} so the tasks of a single tick are expired
+ * in priority order, then in the order they were scheduled.
+ *
+ * @author thehutch
+ */
+final class TimingWheel {
+	private static final int WHEEL_BITS = 6;
+	private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	private static final int NUM_LEVELS = 4;
+	private static final int NUM_PRIORITIES = TaskPriority.values().length;
+	private static final int OVERFLOW_BUCKET = WHEEL_SIZE * NUM_PRIORITIES + (NUM_LEVELS - 1) * WHEEL_SIZE;
+	private static final long MAX_DELTA = 1L << (WHEEL_BITS * NUM_LEVELS);
+	private final Task[] mHeads;
+	private final Task[] mTails;
+	private long mCurrentTick;
+
+	/**
+	 * Default constructor for {@link TimingWheel}.
+	 *
+	 * @param startTick The first tick to be expired by the wheel
+	 */
+	TimingWheel(long startTick) {
+		mHeads = new Task[OVERFLOW_BUCKET + 1];
+		mTails = new Task[OVERFLOW_BUCKET + 1];
+		mCurrentTick = startTick;
+	}
+
+	/**
+	 * Inserts the task into the wheel, using the task time as its deadline.
+	 * A task whose deadline has already passed is expired on the current tick.
+	 *
+	 * @param task The task to insert
+	 */
+	void schedule(Task task) {
+		if (task.getTime() < mCurrentTick) {
+			task.setTime(mCurrentTick);
+		}
+		link(task, bucketFor(task));
+	}
+
+	/**
+	 * Removes the task from the wheel.
+	 *
+	 * @param task The task to remove
+	 *
+	 * @return True if the task was held within the wheel
+	 */
+	boolean remove(Task task) {
+		if (task.mBucket < 0) {
+			return false;
+		}
+		unlink(task);
+		return true;
+	}
+
+	/**
+	 * Expires all the tasks of the current tick into the given {@link Bag} and then
+	 * advances the wheel to the next tick. The tasks are expired in order of
+	 * their {@link TaskPriority} and then the order in which they were scheduled.
+	 *
+	 * @param expired The bag to fill with the expired tasks
+	 */
+	void advance(Bag<Task> expired) {
+		final long tick = mCurrentTick;
+		final int slot = (int) (tick & WHEEL_MASK);
+
+		// Move the upper levels down once the level below has wrapped around
+		if (slot == 0) {
+			for (int level = 1; level < NUM_LEVELS; ++level) {
+				final int index = (int) ((tick >>> (level * WHEEL_BITS)) & WHEEL_MASK);
+				cascade(upperBucket(level, index));
+				if (index != 0) {
+					break;
+				} else if (level == NUM_LEVELS - 1) {
+					cascade(OVERFLOW_BUCKET);
+				}
+			}
+		}
+
+		// Drain the lowest level bucket of each priority
+		for (int priority = 0; priority < NUM_PRIORITIES; ++priority) {
+			final int bucket = slot * NUM_PRIORITIES + priority;
+			Task task = mHeads[bucket];
+			while (task != null) {
+				final Task next = task.mNext;
+				task.mNext = null;
+				task.mPrev = null;
+				task.mBucket = -1;
+				expired.add(task);
+				task = next;
+			}
+			mHeads[bucket] = null;
+			mTails[bucket] = null;
+		}
+		mCurrentTick = tick + 1;
+	}
+
+	/**
+	 * Removes every task from the wheel.
+	 */
+	void clear() {
+		for (int bucket = 0; bucket <= OVERFLOW_BUCKET; ++bucket) {
+			Task task = mHeads[bucket];
+			while (task != null) {
+				final Task next = task.mNext;
+				task.mNext = null;
+				task.mPrev = null;
+				task.mBucket = -1;
+				task = next;
+			}
+			mHeads[bucket] = null;
+			mTails[bucket] = null;
+		}
+	}
+
+	/**
+	 * Internal method to calculate the bucket of a task based on its deadline.
+	 *
+	 * @param task The task
+	 *
+	 * @return The bucket index
+	 */
+	private int bucketFor(Task task) {
+		final long deadline = task.getTime();
+		final long delta = deadline - mCurrentTick;
+		if (delta < WHEEL_SIZE) {
+			return (int) (deadline & WHEEL_MASK) * NUM_PRIORITIES + task.getPriority().ordinal();
+		} else if (delta >= MAX_DELTA) {
+			return OVERFLOW_BUCKET;
+		}
+		int level = 1;
+		while (delta >= 1L << ((level + 1) * WHEEL_BITS)) {
+			++level;
+		}
+		return upperBucket(level, (int) ((deadline >>> (level * WHEEL_BITS)) & WHEEL_MASK));
+	}
+
+	/**
+	 * Internal method to reinsert every task of a bucket into the wheel.
+	 *
+	 * @param bucket The bucket to cascade
+	 */
+	private void cascade(int bucket) {
+		Task task = mHeads[bucket];
+		mHeads[bucket] = null;
+		mTails[bucket] = null;
+		while (task != null) {
+			final Task next = task.mNext;
+			task.mNext = null;
+			task.mPrev = null;
+			link(task, bucketFor(task));
+			task = next;
+		}
+	}
+
+	/**
+	 * Internal method to append a task to the tail of a bucket.
+	 *
+	 * @param task   The task
+	 * @param bucket The bucket index
+	 */
+	private void link(Task task, int bucket) {
+		final Task tail = mTails[bucket];
+		task.mBucket = bucket;
+		task.mPrev = tail;
+		task.mNext = null;
+		if (tail == null) {
+			mHeads[bucket] = task;
+		} else {
+			tail.mNext = task;
+		}
+		mTails[bucket] = task;
+	}
+
+	/**
+	 * Internal method to remove a task from the bucket it is linked into.
+	 *
+	 * @param task The task
+	 */
+	private void unlink(Task task) {
+		final int bucket = task.mBucket;
+		if (task.mPrev == null) {
+			mHeads[bucket] = task.mNext;
+		} else {
+			task.mPrev.mNext = task.mNext;
+		}
+		if (task.mNext == null) {
+			mTails[bucket] = task.mPrev;
+		} else {
+			task.mNext.mPrev = task.mPrev;
+		}
+		task.mNext = null;
+		task.mPrev = null;
+		task.mBucket = -1;
+	}
+
+	/**
+	 * Internal method to calculate the bucket index of an upper level slot.
+	 *
+	 * @param level The level of the wheel, greater than zero
+	 * @param index The slot within the level
+	 *
+	 * @return The bucket index
+	 */
+	private static int upperBucket(int level, int index) {
+		return WHEEL_SIZE * NUM_PRIORITIES + (level - 1) * WHEEL_SIZE + index;
+	}
+}
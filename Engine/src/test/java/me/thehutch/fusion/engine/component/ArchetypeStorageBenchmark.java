@@ -0,0 +1,189 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.component.ComponentType;
+import me.thehutch.fusion.api.component.EntityTemplate;
+import me.thehutch.fusion.api.component.IArchetypeChunk;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IComponentMapper;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.component.annotations.Mapper;
+import me.thehutch.fusion.api.component.processors.ChunkedEntityProcessor;
+import me.thehutch.fusion.api.component.processors.SequentialEntityProcessor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares iterating the entities of a processor in the archetype storage
+ * mode against the {@link me.thehutch.fusion.api.util.container.Bag} layout,
+ * at 100k and 1M entities. Each tick the processor adds the velocity of every
+ * entity to its position.
+ * <p>
+ * The benchmarks are excluded from the tests, run them with
+ * {@code mvn test -Pbenchmark}.
+ *
+ * @author thehutch
+ */
+public class ArchetypeStorageBenchmark {
+	private static final int[] ENTITY_COUNTS = { 100000, 1000000 };
+	private static final int NUM_TICKS = 50;
+	private static final int NUM_RUNS = 3;
+	private static final Aspect ASPECT = Aspect.newAspectForAll(Position.class, Velocity.class);
+	private static final EntityTemplate TEMPLATE = EntityTemplate.newTemplate()
+		.with(Position.class, Position::new)
+		.with(Velocity.class, Velocity::new);
+
+	@Test
+	public void benchmarkIteration() {
+		for (int numEntities : ENTITY_COUNTS) {
+			long bagTime = 0L;
+			long archetypeTime = 0L;
+			for (int run = 0; run < NUM_RUNS; ++run) {
+				final ComponentSystem bagSystem = new ComponentSystem(false);
+				final BagProcessor bagProcessor = bagSystem.addProcessor(new BagProcessor());
+				bagTime = runTicks(bagSystem, numEntities);
+
+				final ComponentSystem archetypeSystem = new ComponentSystem(true);
+				final ArchetypeProcessor archetypeProcessor = archetypeSystem.addProcessor(new ArchetypeProcessor());
+				archetypeTime = runTicks(archetypeSystem, numEntities);
+
+				assertEquals("Both layouts must process the same entities", bagProcessor.mChecksum, archetypeProcessor.mChecksum);
+			}
+			System.out.printf("%d entities, %d ticks: bag %d ms, archetype %d ms%n",
+							  numEntities, NUM_TICKS, bagTime / 1000000L, archetypeTime / 1000000L);
+		}
+	}
+
+	/**
+	 * Internal method to spawn the entities and then time processing the system.
+	 *
+	 * @param system      The component system
+	 * @param numEntities The number of entities
+	 *
+	 * @return The time taken to process the ticks in nanoseconds
+	 */
+	private static long runTicks(ComponentSystem system, int numEntities) {
+		system.initialise();
+		system.spawn(TEMPLATE, numEntities, null);
+		system.process();
+
+		final long start = System.nanoTime();
+		for (int tick = 0; tick < NUM_TICKS; ++tick) {
+			system.process();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Iterates the actives of the processor, reading the components through mappers.
+	 */
+	private static final class BagProcessor extends SequentialEntityProcessor {
+		@Mapper
+		private IComponentMapper<Position> mPositions;
+		@Mapper
+		private IComponentMapper<Velocity> mVelocities;
+		private long mChecksum;
+
+		private BagProcessor() {
+			super(ASPECT);
+		}
+
+		@Override
+		protected void process(IEntity entity) {
+			final Position position = mPositions.get(entity);
+			position.mX += mVelocities.get(entity).mDx;
+			mChecksum += position.mX;
+		}
+
+		@Override
+		public void initialise() {
+		}
+
+		@Override
+		public void begin() {
+		}
+
+		@Override
+		public void end() {
+		}
+
+		@Override
+		public void inserted(IEntity e) {
+		}
+
+		@Override
+		public void removed(IEntity e) {
+		}
+	}
+
+	/**
+	 * Iterates the chunks of the matching archetypes, reading the component columns.
+	 */
+	private static final class ArchetypeProcessor extends ChunkedEntityProcessor {
+		private final ComponentType mPositionType = ComponentType.getTypeFor(Position.class);
+		private final ComponentType mVelocityType = ComponentType.getTypeFor(Velocity.class);
+		private long mChecksum;
+
+		private ArchetypeProcessor() {
+			super(ASPECT);
+		}
+
+		@Override
+		protected void process(IArchetypeChunk chunk) {
+			final IComponent[] positions = chunk.getColumn(mPositionType);
+			final IComponent[] velocities = chunk.getColumn(mVelocityType);
+			final int size = chunk.size();
+			for (int i = 0; i < size; ++i) {
+				final Position position = (Position) positions[i];
+				position.mX += ((Velocity) velocities[i]).mDx;
+				mChecksum += position.mX;
+			}
+		}
+
+		@Override
+		public void initialise() {
+		}
+
+		@Override
+		public void begin() {
+		}
+
+		@Override
+		public void end() {
+		}
+
+		@Override
+		public void inserted(IEntity e) {
+		}
+
+		@Override
+		public void removed(IEntity e) {
+		}
+	}
+
+	private static final class Position implements IComponent {
+		private int mX;
+	}
+
+	private static final class Velocity implements IComponent {
+		private final int mDx = 1;
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.component.ComponentType;
+import me.thehutch.fusion.api.component.EntityTemplate;
+import me.thehutch.fusion.api.component.IArchetypeChunk;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.component.processors.ChunkedEntityProcessor;
+import me.thehutch.fusion.api.util.container.Bag;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the archetype storage mode of the {@link ComponentSystem}.
+ *
+ * @author thehutch
+ */
+public class ArchetypeStorageTest {
+	private static final Aspect ASPECT_A = Aspect.newAspectForAll(ComponentA.class);
+	private static final Aspect ASPECT_AB = Aspect.newAspectForAll(ComponentA.class, ComponentB.class);
+	private ComponentSystem mSystem;
+	private CountingProcessor mProcessor;
+
+	@Before
+	public void setUp() {
+		mSystem = new ComponentSystem(true);
+		mProcessor = mSystem.addProcessor(new CountingProcessor());
+		mSystem.initialise();
+	}
+
+	/**
+	 * An entity moves between archetypes as soon as a component is added or
+	 * removed, and the chunks hold the only reference to the components.
+	 */
+	@Test
+	public void testMoveOnAddAndRemove() {
+		final ComponentA a = new ComponentA();
+		final ComponentB b = new ComponentB();
+		final Entity e = mSystem.createEntity();
+		e.addComponent(a);
+		e.addToSystem();
+		mSystem.process();
+		assertEquals(1, count(ASPECT_A));
+		assertSame(a, column(ASPECT_A, ComponentA.class));
+
+		e.addComponent(b);
+		assertEquals(1, count(ASPECT_AB));
+		assertSame(a, column(ASPECT_AB, ComponentA.class));
+		assertSame(b, column(ASPECT_AB, ComponentB.class));
+		assertSame(b, e.getComponent(ComponentB.class));
+
+		e.removeComponent(ComponentA.class);
+		assertEquals(0, count(ASPECT_A));
+		assertEquals(0, count(ASPECT_AB));
+		assertNull(e.getComponent(ComponentA.class));
+		assertSame(b, e.getComponent(ComponentB.class));
+
+		final ComponentManager componentManager = mSystem.getComponentManager();
+		assertTrue(componentManager.getComponentsByType(ComponentType.getTypeFor(ComponentA.class)) instanceof ArchetypeComponentStorage);
+		assertEquals(0, componentManager.getComponentsByType(ComponentType.getTypeFor(ComponentA.class)).size());
+		assertEquals(1, componentManager.getComponentsByType(ComponentType.getTypeFor(ComponentB.class)).size());
+	}
+
+	/**
+	 * Only the enabled entities added to the system are iterated, the
+	 * components of the other entities can still be read.
+	 */
+	@Test
+	public void testInactiveEntitiesNotIterated() {
+		final ComponentA a = new ComponentA();
+		final Entity e = mSystem.createEntity();
+		e.addComponent(a);
+		assertEquals(0, count(ASPECT_A));
+		assertSame(a, e.getComponent(ComponentA.class));
+
+		e.addToSystem();
+		mSystem.process();
+		assertEquals(1, count(ASPECT_A));
+
+		e.disable();
+		mSystem.process();
+		assertEquals(0, count(ASPECT_A));
+		assertSame(a, e.getComponent(ComponentA.class));
+
+		e.enable();
+		mSystem.process();
+		assertEquals(1, count(ASPECT_A));
+
+		e.deleteFromSystem();
+		mSystem.process();
+		assertEquals(0, count(ASPECT_A));
+		assertNull(e.getComponent(ComponentA.class));
+	}
+
+	/**
+	 * Spawned entities are iterated once they are added to the system, and
+	 * the chunked processor does not hold its entities.
+	 */
+	@Test
+	public void testSpawnAndChunkedProcessor() {
+		final EntityTemplate template = EntityTemplate.newTemplate()
+			.with(ComponentA.class, ComponentA::new)
+			.with(ComponentB.class, ComponentB::new);
+		final Bag<IEntity> entities = new Bag<>();
+		mSystem.spawn(template, 3000, entities);
+		assertEquals(0, count(ASPECT_AB));
+		mSystem.process();
+		assertEquals(3000, count(ASPECT_AB));
+		assertEquals(3000, mProcessor.mProcessed);
+		assertEquals(0, mProcessor.getActives().size());
+
+		final ComponentMapper<ComponentA> mapper = mSystem.getComponentManager().getMapper(ComponentA.class);
+		final int tick = mSystem.getTick();
+		mapper.markChanged(entities.get(10));
+		assertTrue(mapper.isChangedSince(entities.get(10), tick));
+		assertTrue(mapper.isAddedSince(entities.get(10), tick - 1));
+	}
+
+	/**
+	 * Internal method to count the entities of the chunks matching an aspect.
+	 *
+	 * @param aspect The aspect
+	 *
+	 * @return The number of entities
+	 */
+	private int count(Aspect aspect) {
+		final int[] count = new int[1];
+		mSystem.forEachChunk(aspect, chunk -> count[0] += chunk.size());
+		return count[0];
+	}
+
+	/**
+	 * Internal method to get the first component of a column of the first
+	 * chunk matching an aspect.
+	 *
+	 * @param aspect The aspect
+	 * @param type   The component class
+	 *
+	 * @return The component
+	 */
+	private IComponent column(Aspect aspect, Class<? extends IComponent> type) {
+		final IComponent[] component = new IComponent[1];
+		mSystem.forEachChunk(aspect, chunk -> component[0] = chunk.getColumn(ComponentType.getTypeFor(type))[0]);
+		return component[0];
+	}
+
+	/**
+	 * A chunked processor counting the entities it processes.
+	 */
+	private static final class CountingProcessor extends ChunkedEntityProcessor {
+		private int mProcessed;
+
+		private CountingProcessor() {
+			super(ASPECT_AB);
+		}
+
+		@Override
+		protected void process(IArchetypeChunk chunk) {
+			mProcessed += chunk.size();
+		}
+
+		@Override
+		public void initialise() {
+		}
+
+		@Override
+		public void begin() {
+		}
+
+		@Override
+		public void end() {
+		}
+
+		@Override
+		public void inserted(IEntity e) {
+		}
+
+		@Override
+		public void removed(IEntity e) {
+		}
+	}
+
+	/**
+	 * The first component type.
+	 */
+	private static final class ComponentA implements IComponent {
+	}
+
+	/**
+	 * The second component type.
+	 */
+	private static final class ComponentB implements IComponent {
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import me.thehutch.fusion.api.component.CommandBuffer;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.util.container.Bag;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the playback order of the {@link CommandBuffer}.
+ *
+ * @author thehutch
+ */
+public class CommandBufferTest {
+	private ComponentSystem mSystem;
+	private Entity mEntity;
+	private final Bag<CommandBuffer> mBuffers = new Bag<>();
+
+	@Before
+	public void setUp() {
+		mSystem = new ComponentSystem();
+		mSystem.initialise();
+		mEntity = mSystem.createEntity();
+		mEntity.addToSystem();
+		mSystem.process();
+		mBuffers.add(new CommandBuffer());
+		mBuffers.add(new CommandBuffer());
+	}
+
+	/**
+	 * The commands of every buffer are played back in the order of their
+	 * keys, not the order of the buffers.
+	 */
+	@Test
+	public void testPlaybackInKeyOrder() {
+		mBuffers.get(0).addComponent(2, mEntity, new Value(2));
+		mBuffers.get(1).addComponent(1, mEntity, new Value(1));
+		mBuffers.get(0).addComponent(0, mEntity, new Value(0));
+		CommandBuffer.playback(mBuffers, mSystem);
+		mSystem.process();
+
+		assertEquals(2, mEntity.getComponent(Value.class).mValue);
+		assertTrue(mBuffers.get(0).isEmpty());
+		assertTrue(mBuffers.get(1).isEmpty());
+	}
+
+	/**
+	 * The commands of a buffer with the same key are played back in the
+	 * order they were recorded.
+	 */
+	@Test
+	public void testSameKeyInRecordedOrder() {
+		final CommandBuffer buffer = mBuffers.get(0);
+		for (int i = 0; i < 100; ++i) {
+			buffer.addComponent(5, mEntity, new Value(i));
+		}
+		buffer.removeComponent(5, mEntity, Value.class);
+		buffer.addComponent(5, mEntity, new Value(100));
+		CommandBuffer.playback(mBuffers, mSystem);
+		mSystem.process();
+
+		assertEquals(100, mEntity.getComponent(Value.class).mValue);
+	}
+
+	/**
+	 * The commands with a later key than the deletion of their entity are
+	 * ignored, those with an earlier key are played back.
+	 */
+	@Test
+	public void testCommandsAfterDeleteIgnored() {
+		mBuffers.get(0).deleteEntity(2, mEntity);
+		mBuffers.get(0).deleteEntity(4, mEntity);
+		mBuffers.get(1).addComponent(3, mEntity, new Value(3));
+		mBuffers.get(1).addComponent(1, mEntity, new Value(1));
+		CommandBuffer.playback(mBuffers, mSystem);
+		assertEquals(1, mEntity.getComponent(Value.class).mValue);
+
+		mSystem.process();
+		assertNull(mSystem.getEntityByHandle(mEntity.getHandle()));
+		assertEquals(0, mSystem.getEntityManager().getActiveEntityCount());
+	}
+
+	/**
+	 * A component holding a single value.
+	 */
+	private static final class Value implements IComponent {
+		private final int mValue;
+
+		private Value(int value) {
+			mValue = value;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.StorageType;
+import me.thehutch.fusion.api.component.annotations.Storage;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ComponentMapper} of every {@link StorageType}.
+ *
+ * @author thehutch
+ */
+public class ComponentMapperTest {
+	private ComponentSystem mSystem;
+
+	@Before
+	public void setUp() {
+		mSystem = new ComponentSystem();
+		mSystem.initialise();
+	}
+
+	@Test
+	public void testDenseMapper() {
+		testMapper(DenseValue.class, new DenseValue());
+	}
+
+	@Test
+	public void testSparseMapper() {
+		testMapper(SparseValue.class, new SparseValue());
+	}
+
+	@Test
+	public void testHashMapper() {
+		testMapper(HashValue.class, new HashValue());
+	}
+
+	/**
+	 * Internal method to check the mapper of a component class.
+	 *
+	 * @param <T>       The type of component
+	 * @param type      The component class
+	 * @param component A component of the class
+	 */
+	private <T extends IComponent> void testMapper(Class<T> type, T component) {
+		final ComponentMapper<T> mapper = mSystem.getComponentManager().getMapper(type);
+		final Entity with = mSystem.createEntity();
+		final Entity without = mSystem.createEntity();
+		with.addComponent(component);
+		with.addToSystem();
+		without.addToSystem();
+		mSystem.process();
+
+		assertSame(component, mapper.get(with));
+		assertSame(component, mapper.getSafe(with));
+		assertNull(mapper.getSafe(without));
+		assertNull(mapper.getSafe(null));
+
+		final int tick = mSystem.getTick();
+		assertFalse(mapper.isChangedSince(with, tick));
+		assertSame(component, mapper.getMutable(with));
+		assertTrue(mapper.isChangedSince(with, tick));
+		mapper.markChanged(without);
+		assertFalse(mapper.isChangedSince(without, tick));
+	}
+
+	/**
+	 * A component of a dense type.
+	 */
+	@Storage(StorageType.DENSE)
+	private static final class DenseValue implements IComponent {
+	}
+
+	/**
+	 * A component of a sparse set type.
+	 */
+	@Storage(StorageType.SPARSE_SET)
+	private static final class SparseValue implements IComponent {
+	}
+
+	/**
+	 * A component of a hash type.
+	 */
+	@Storage(StorageType.HASH)
+	private static final class HashValue implements IComponent {
+	}
+}
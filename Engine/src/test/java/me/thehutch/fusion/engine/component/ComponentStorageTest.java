@@ -0,0 +1,150 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IComponentStorage;
+import me.thehutch.fusion.api.component.StorageType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests every {@link StorageType} of {@link IComponentStorage}.
+ *
+ * @author thehutch
+ */
+public class ComponentStorageTest {
+	private static final int NUM_ENTITIES = 5000;
+	private static final int ID_STRIDE = 7;
+
+	/**
+	 * The components set are returned by their entity until they are removed,
+	 * whilst the other components are removed and the storage grows.
+	 */
+	@Test
+	public void testSetGetRemove() {
+		for (StorageType storageType : StorageType.values()) {
+			final IComponentStorage storage = ComponentStorages.create(storageType);
+			assertEquals(storageType, storage.getStorageType());
+			for (int i = 0; i < NUM_ENTITIES; ++i) {
+				storage.set(i * ID_STRIDE, new Value(i));
+			}
+			assertEquals(storageType.toString(), NUM_ENTITIES, storage.size());
+			for (int i = 0; i < NUM_ENTITIES; i += 2) {
+				storage.remove(i * ID_STRIDE);
+			}
+			assertEquals(storageType.toString(), NUM_ENTITIES / 2, storage.size());
+			for (int i = 0; i < NUM_ENTITIES; ++i) {
+				final Value value = (Value) storage.get(i * ID_STRIDE);
+				if ((i & 1) == 0) {
+					assertNull(storageType + " removed component", value);
+				} else {
+					assertEquals(storageType + " component", i, value.mValue);
+				}
+				// Ids between the components were never set
+				assertNull(storageType + " unset component", storage.get(i * ID_STRIDE + 1));
+			}
+		}
+	}
+
+	/**
+	 * Setting a component replaces the previous component of the entity, and
+	 * removing a component twice or from an unknown entity is ignored.
+	 */
+	@Test
+	public void testReplaceAndRemoveAbsent() {
+		for (StorageType storageType : StorageType.values()) {
+			final IComponentStorage storage = ComponentStorages.create(storageType);
+			final Value replacement = new Value(2);
+			storage.set(10, new Value(1));
+			storage.set(10, replacement);
+			assertSame(storageType.toString(), replacement, storage.get(10));
+			assertEquals(storageType.toString(), 1, storage.size());
+
+			storage.remove(10);
+			storage.remove(10);
+			storage.remove(100000);
+			assertNull(storageType.toString(), storage.get(10));
+			assertNull(storageType.toString(), storage.get(100000));
+			assertEquals(storageType.toString(), 0, storage.size());
+
+			storage.set(10, replacement);
+			assertSame(storageType.toString(), replacement, storage.get(10));
+			assertEquals(storageType.toString(), 1, storage.size());
+		}
+	}
+
+	/**
+	 * The added and changed ticks stay with their component as the other
+	 * components are removed and the storage grows.
+	 */
+	@Test
+	public void testTicksFollowComponents() {
+		for (StorageType storageType : StorageType.values()) {
+			final IComponentStorage storage = ComponentStorages.create(storageType);
+			final ComponentVersions versions = (ComponentVersions) storage;
+			for (int i = 0; i < NUM_ENTITIES; ++i) {
+				storage.set(i * ID_STRIDE, new Value(i));
+				versions.added(i * ID_STRIDE, i + 1);
+			}
+			for (int i = 0; i < NUM_ENTITIES; i += 3) {
+				versions.changed(i * ID_STRIDE, NUM_ENTITIES + i);
+			}
+			for (int i = 0; i < NUM_ENTITIES; i += 2) {
+				storage.remove(i * ID_STRIDE);
+			}
+			for (int i = 0; i < NUM_ENTITIES; ++i) {
+				final int entityId = i * ID_STRIDE;
+				final boolean removed = (i & 1) == 0;
+				final int changedTick = i % 3 == 0 ? NUM_ENTITIES + i : i + 1;
+				assertEquals(storageType + " added tick", removed ? ComponentVersions.NEVER : i + 1, versions.getAddedTick(entityId));
+				assertEquals(storageType + " changed tick", removed ? ComponentVersions.NEVER : changedTick, versions.getChangedTick(entityId));
+			}
+		}
+	}
+
+	/**
+	 * Marking an entity without the component as changed is ignored.
+	 */
+	@Test
+	public void testChangedWithoutComponent() {
+		for (StorageType storageType : StorageType.values()) {
+			final IComponentStorage storage = ComponentStorages.create(storageType);
+			final ComponentVersions versions = (ComponentVersions) storage;
+			versions.changed(3, 10);
+			versions.changed(100000, 10);
+			assertEquals(storageType.toString(), ComponentVersions.NEVER, versions.getChangedTick(3));
+			assertEquals(storageType.toString(), ComponentVersions.NEVER, versions.getChangedTick(100000));
+			assertEquals(storageType.toString(), 0, storage.size());
+		}
+	}
+
+	/**
+	 * A component holding a single value.
+	 */
+	private static final class Value implements IComponent {
+		private final int mValue;
+
+		private Value(int value) {
+			mValue = value;
+		}
+	}
+}
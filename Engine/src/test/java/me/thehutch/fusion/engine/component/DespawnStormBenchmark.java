@@ -0,0 +1,124 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.component.EntityProcessor;
+import me.thehutch.fusion.api.component.EntityTemplate;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.util.container.Bag;
+import me.thehutch.fusion.api.util.container.ImmutableBag;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Despawns 50k of the 200k entities held by a processor in a single tick, and
+ * compares removing them from the indexed actives of the processor against
+ * removing them from a {@link Bag} by identity, as the actives previously were.
+ * <p>
+ * The benchmarks are excluded from the tests, run them with
+ * {@code mvn test -Pbenchmark}.
+ *
+ * @author thehutch
+ */
+public class DespawnStormBenchmark {
+	private static final int NUM_ENTITIES = 200000;
+	private static final int NUM_DESPAWNED = 50000;
+	private static final int NUM_RUNS = 3;
+	private static final EntityTemplate TEMPLATE = EntityTemplate.newTemplate().with(Health.class, Health::new);
+
+	@Test
+	public void benchmarkDespawnStorm() {
+		long indexedTime = 0L;
+		long bagTime = 0L;
+		for (int run = 0; run < NUM_RUNS; ++run) {
+			final ComponentSystem system = new ComponentSystem();
+			final HealthProcessor processor = system.addProcessor(new HealthProcessor());
+			system.initialise();
+			final Bag<IEntity> entities = new Bag<>(NUM_ENTITIES);
+			system.spawn(TEMPLATE, NUM_ENTITIES, entities);
+			system.process();
+
+			// Every fourth entity is despawned
+			final Bag<IEntity> despawned = new Bag<>(NUM_DESPAWNED);
+			for (int i = 0; i < NUM_ENTITIES; i += NUM_ENTITIES / NUM_DESPAWNED) {
+				despawned.add(entities.get(i));
+			}
+			final Bag<IEntity> actives = new Bag<>(NUM_ENTITIES);
+			actives.addAll(entities);
+
+			long start = System.nanoTime();
+			system.despawn(despawned);
+			system.process();
+			indexedTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < despawned.size(); ++i) {
+				actives.remove(despawned.get(i));
+			}
+			bagTime = System.nanoTime() - start;
+
+			assertEquals("Both must hold the remaining entities", actives.size(), processor.getActives().size());
+		}
+		System.out.printf("Despawn %d of %d entities: indexed actives %d ms, bag %d ms%n",
+						  NUM_DESPAWNED, NUM_ENTITIES, indexedTime / 1000000L, bagTime / 1000000L);
+	}
+
+	/**
+	 * A processor which only tracks the entities with health.
+	 */
+	private static final class HealthProcessor extends EntityProcessor {
+		private HealthProcessor() {
+			super(Aspect.newAspectForAll(Health.class));
+		}
+
+		@Override
+		public void initialise() {
+		}
+
+		@Override
+		public void begin() {
+		}
+
+		@Override
+		public void end() {
+		}
+
+		@Override
+		public void processEntities(ImmutableBag<IEntity> entities) {
+		}
+
+		@Override
+		public boolean checkProcessing() {
+			return false;
+		}
+
+		@Override
+		public void inserted(IEntity e) {
+		}
+
+		@Override
+		public void removed(IEntity e) {
+		}
+	}
+
+	private static final class Health implements IComponent {
+	}
+}
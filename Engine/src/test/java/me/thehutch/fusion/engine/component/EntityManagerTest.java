@@ -0,0 +1,121 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import gnu.trove.set.hash.TIntHashSet;
+import me.thehutch.fusion.api.component.EntityTemplate;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.util.container.Bag;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the assignment of entity ids by the {@link EntityManager}.
+ *
+ * @author thehutch
+ */
+public class EntityManagerTest {
+	private static final int NUM_ENTITIES = 100;
+	private ComponentSystem mSystem;
+	private EntityTemplate mTemplate;
+
+	@Before
+	public void setUp() {
+		mSystem = new ComponentSystem();
+		mSystem.initialise();
+		mTemplate = EntityTemplate.newTemplate().with(Counter.class, Counter::new);
+	}
+
+	/**
+	 * Spawning reuses the ids of deleted entities before taking new ids.
+	 */
+	@Test
+	public void testSpawnReusesIds() {
+		final Bag<IEntity> entities = new Bag<>();
+		mSystem.spawn(mTemplate, NUM_ENTITIES, entities);
+		mSystem.process();
+
+		for (int cycle = 0; cycle < 10; ++cycle) {
+			mSystem.despawn(entities);
+			mSystem.process();
+			entities.clear();
+			mSystem.spawn(mTemplate, NUM_ENTITIES, entities);
+			mSystem.process();
+		}
+		for (int i = 0; i < NUM_ENTITIES; ++i) {
+			final IEntity e = entities.get(i);
+			assertTrue("Entity id " + e.getId() + " was not reused", e.getId() < NUM_ENTITIES);
+			assertNotNull(e.getComponent(Counter.class));
+		}
+		assertEquals(NUM_ENTITIES, mSystem.getEntityManager().getActiveEntityCount());
+	}
+
+	/**
+	 * Spawning more entities than there are reusable ids continues after the highest id.
+	 */
+	@Test
+	public void testSpawnBeyondReusedIds() {
+		final Bag<IEntity> entities = new Bag<>();
+		mSystem.spawn(mTemplate, NUM_ENTITIES, entities);
+		mSystem.process();
+		mSystem.despawn(entities);
+		mSystem.process();
+
+		entities.clear();
+		mSystem.spawn(mTemplate, NUM_ENTITIES * 2, entities);
+		mSystem.process();
+		final TIntHashSet ids = new TIntHashSet();
+		for (int i = 0; i < entities.size(); ++i) {
+			final IEntity e = entities.get(i);
+			assertTrue("Entity id " + e.getId() + " was assigned twice", ids.add(e.getId()));
+			assertTrue(e.getId() < NUM_ENTITIES * 2);
+			assertNotNull(e.getComponent(Counter.class));
+		}
+	}
+
+	/**
+	 * Deleting an entity twice returns its id to the pool only once.
+	 */
+	@Test
+	public void testDoubleDeleteIsIgnored() {
+		final Entity e = mSystem.createEntity();
+		e.addToSystem();
+		mSystem.process();
+		e.deleteFromSystem();
+		e.deleteFromSystem();
+		mSystem.process();
+		e.deleteFromSystem();
+		mSystem.process();
+
+		final Entity first = mSystem.createEntity();
+		final Entity second = mSystem.createEntity();
+		assertEquals(e.getId(), first.getId());
+		assertTrue(second.getId() != first.getId());
+	}
+
+	/**
+	 * A component used to populate the template.
+	 */
+	private static final class Counter implements IComponent {
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.BitSet;
+import me.thehutch.fusion.api.component.ComponentType;
+import me.thehutch.fusion.api.component.EntityHandle;
+import me.thehutch.fusion.api.component.IComponent;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the handles and component masks of the {@link Entity}.
+ *
+ * @author thehutch
+ */
+public class EntityTest {
+	private ComponentSystem mSystem;
+
+	@Before
+	public void setUp() {
+		mSystem = new ComponentSystem();
+		mSystem.initialise();
+	}
+
+	/**
+	 * The handle of a deleted entity is rejected once its id is reused.
+	 */
+	@Test
+	public void testStaleHandleRejected() {
+		final Entity e = mSystem.createEntity();
+		e.addToSystem();
+		mSystem.process();
+		final long handle = e.getHandle();
+		assertSame(e, mSystem.getEntityByHandle(handle));
+
+		e.deleteFromSystem();
+		mSystem.process();
+		assertNull(mSystem.getEntityByHandle(handle));
+		assertFalse(e.isActive());
+
+		final Entity reused = mSystem.createEntity();
+		reused.addToSystem();
+		mSystem.process();
+		assertEquals(e.getId(), reused.getId());
+		assertEquals(EntityHandle.getGeneration(handle) + 1, EntityHandle.getGeneration(reused.getHandle()));
+		assertNull(mSystem.getEntityByHandle(handle));
+		assertSame(reused, mSystem.getEntityByHandle(reused.getHandle()));
+		assertTrue(reused.isActive());
+	}
+
+	/**
+	 * A handle of an id which has never been used is rejected.
+	 */
+	@Test
+	public void testUnknownHandleRejected() {
+		assertNull(mSystem.getEntityByHandle(EntityHandle.of(1000, 0)));
+		assertNull(mSystem.getEntityByHandle(EntityHandle.NULL));
+	}
+
+	/**
+	 * The component bits are built from the component mask.
+	 */
+	@Test
+	public void testComponentMask() {
+		final Entity e = mSystem.createEntity();
+		e.addComponent(new Marker());
+		final int index = ComponentType.getIndexFor(Marker.class);
+		final BitSet expected = new BitSet();
+		expected.set(index);
+		assertEquals(expected, e.getComponentBits());
+		assertTrue(ComponentMasks.contains(e.getComponentMask(), index));
+
+		e.removeComponent(Marker.class);
+		assertTrue(e.getComponentBits().isEmpty());
+		assertFalse(ComponentMasks.contains(e.getComponentMask(), index));
+	}
+
+	/**
+	 * A component without any state.
+	 */
+	private static final class Marker implements IComponent {
+	}
+}
@@ -0,0 +1,604 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.Random;
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.component.EntityProcessor;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.util.container.ImmutableBag;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares notifying only the processors interested in the changed
+ * components of an entity, against notifying every processor of every
+ * changed entity as the {@link ComponentSystem} previously did. The system
+ * has 50 processors over 20 component types, and each tick 10k entities have
+ * a component added or removed.
+ * <p>
+ * The benchmarks are excluded from the tests, run them with
+ * {@code mvn test -Pbenchmark}.
+ *
+ * @author thehutch
+ */
+public class ObserverNotificationBenchmark {
+	private static final int NUM_ENTITIES = 50000;
+	private static final int NUM_CHANGES = 10000;
+	private static final int NUM_COMPONENTS_PER_ENTITY = 4;
+	private static final int NUM_TICKS = 200;
+	private static final int NUM_RUNS = 3;
+	// The component of each type, shared by the entities
+	private static final IComponent[] COMPONENTS = {
+		new C0(), new C1(), new C2(), new C3(), new C4(),
+		new C5(), new C6(), new C7(), new C8(), new C9(),
+		new C10(), new C11(), new C12(), new C13(), new C14(),
+		new C15(), new C16(), new C17(), new C18(), new C19()
+	};
+
+	@Test
+	public void benchmarkNotification() {
+		final Entity[] changed = new Entity[NUM_CHANGES];
+		long indexedTime = 0L;
+		long broadcastTime = 0L;
+		for (int run = 0; run < NUM_RUNS; ++run) {
+			final ComponentSystem indexedSystem = createSystem();
+			final Entity[] indexedEntities = createEntities(indexedSystem, run);
+			final Random indexedRandom = new Random(run);
+			final ComponentSystem broadcastSystem = createSystem();
+			final Entity[] broadcastEntities = createEntities(broadcastSystem, run);
+			final Random broadcastRandom = new Random(run);
+			final ImmutableBag<EntityProcessor> processors = broadcastSystem.getProcessors();
+
+			indexedTime = 0L;
+			broadcastTime = 0L;
+			for (int tick = 0; tick < NUM_TICKS; ++tick) {
+				// Only the interested processors are notified by the system
+				for (int i = 0; i < NUM_CHANGES; ++i) {
+					changeEntity(indexedEntities, indexedRandom).changedInSystem();
+				}
+				long start = System.nanoTime();
+				indexedSystem.process();
+				indexedTime += System.nanoTime() - start;
+
+				// Every processor is notified of every changed entity
+				for (int i = 0; i < NUM_CHANGES; ++i) {
+					changed[i] = changeEntity(broadcastEntities, broadcastRandom);
+				}
+				start = System.nanoTime();
+				for (Entity e : changed) {
+					for (int p = 0; p < processors.size(); ++p) {
+						processors.get(p).changed(e);
+					}
+					e.clearChangedMask();
+				}
+				broadcastSystem.process();
+				broadcastTime += System.nanoTime() - start;
+			}
+			for (int p = 0; p < processors.size(); ++p) {
+				assertEquals("Both systems must notify the same processors",
+							 processors.get(p).getActives().size(), indexedSystem.getProcessors().get(p).getActives().size());
+			}
+		}
+		System.out.printf("50 processors, %d changes per tick: interest index %d us, broadcast %d us per tick%n",
+						  NUM_CHANGES, indexedTime / NUM_TICKS / 1000L, broadcastTime / NUM_TICKS / 1000L);
+	}
+
+	/**
+	 * Internal method to create a system with the processors.
+	 *
+	 * @return The component system
+	 */
+	private static ComponentSystem createSystem() {
+		final ComponentSystem system = new ComponentSystem();
+		system.addProcessor(new P0());
+		system.addProcessor(new P1());
+		system.addProcessor(new P2());
+		system.addProcessor(new P3());
+		system.addProcessor(new P4());
+		system.addProcessor(new P5());
+		system.addProcessor(new P6());
+		system.addProcessor(new P7());
+		system.addProcessor(new P8());
+		system.addProcessor(new P9());
+		system.addProcessor(new P10());
+		system.addProcessor(new P11());
+		system.addProcessor(new P12());
+		system.addProcessor(new P13());
+		system.addProcessor(new P14());
+		system.addProcessor(new P15());
+		system.addProcessor(new P16());
+		system.addProcessor(new P17());
+		system.addProcessor(new P18());
+		system.addProcessor(new P19());
+		system.addProcessor(new P20());
+		system.addProcessor(new P21());
+		system.addProcessor(new P22());
+		system.addProcessor(new P23());
+		system.addProcessor(new P24());
+		system.addProcessor(new P25());
+		system.addProcessor(new P26());
+		system.addProcessor(new P27());
+		system.addProcessor(new P28());
+		system.addProcessor(new P29());
+		system.addProcessor(new P30());
+		system.addProcessor(new P31());
+		system.addProcessor(new P32());
+		system.addProcessor(new P33());
+		system.addProcessor(new P34());
+		system.addProcessor(new P35());
+		system.addProcessor(new P36());
+		system.addProcessor(new P37());
+		system.addProcessor(new P38());
+		system.addProcessor(new P39());
+		system.addProcessor(new P40());
+		system.addProcessor(new P41());
+		system.addProcessor(new P42());
+		system.addProcessor(new P43());
+		system.addProcessor(new P44());
+		system.addProcessor(new P45());
+		system.addProcessor(new P46());
+		system.addProcessor(new P47());
+		system.addProcessor(new P48());
+		system.addProcessor(new P49());
+		system.initialise();
+		return system;
+	}
+
+	/**
+	 * Internal method to create the entities, each with random components.
+	 *
+	 * @param system The component system
+	 * @param seed   The seed of the random components
+	 *
+	 * @return The entities
+	 */
+	private static Entity[] createEntities(ComponentSystem system, long seed) {
+		final Random random = new Random(seed);
+		final Entity[] entities = new Entity[NUM_ENTITIES];
+		for (int i = 0; i < NUM_ENTITIES; ++i) {
+			final Entity e = system.createEntity();
+			for (int c = 0; c < NUM_COMPONENTS_PER_ENTITY; ++c) {
+				e.addComponent(COMPONENTS[random.nextInt(COMPONENTS.length)]);
+			}
+			e.addToSystem();
+			entities[i] = e;
+		}
+		system.process();
+		return entities;
+	}
+
+	/**
+	 * Internal method to add or remove a random component of a random entity.
+	 *
+	 * @param entities The entities
+	 * @param random   The random generator
+	 *
+	 * @return The changed entity
+	 */
+	private static Entity changeEntity(Entity[] entities, Random random) {
+		final Entity e = entities[random.nextInt(entities.length)];
+		final IComponent component = COMPONENTS[random.nextInt(COMPONENTS.length)];
+		if (e.getComponent(component.getClass()) == null) {
+			e.addComponent(component);
+		} else {
+			e.removeComponent(component.getClass());
+		}
+		return e;
+	}
+
+	/**
+	 * A processor which only tracks the entities matching its aspect.
+	 */
+	private abstract static class BenchmarkProcessor extends EntityProcessor {
+		private BenchmarkProcessor(Class<? extends IComponent> first, Class<? extends IComponent> second) {
+			super(Aspect.newAspectForAll(first, second));
+		}
+
+		@Override
+		public void initialise() {
+		}
+
+		@Override
+		public void begin() {
+		}
+
+		@Override
+		public void end() {
+		}
+
+		@Override
+		public void processEntities(ImmutableBag<IEntity> entities) {
+		}
+
+		@Override
+		public boolean checkProcessing() {
+			return false;
+		}
+
+		@Override
+		public void inserted(IEntity e) {
+		}
+
+		@Override
+		public void removed(IEntity e) {
+		}
+	}
+
+	private static final class P0 extends BenchmarkProcessor {
+		private P0() {
+			super(C1.class, C2.class);
+		}
+	}
+
+	private static final class P1 extends BenchmarkProcessor {
+		private P1() {
+			super(C2.class, C11.class);
+		}
+	}
+
+	private static final class P2 extends BenchmarkProcessor {
+		private P2() {
+			super(C5.class, C9.class);
+		}
+	}
+
+	private static final class P3 extends BenchmarkProcessor {
+		private P3() {
+			super(C8.class, C6.class);
+		}
+	}
+
+	private static final class P4 extends BenchmarkProcessor {
+		private P4() {
+			super(C19.class, C1.class);
+		}
+	}
+
+	private static final class P5 extends BenchmarkProcessor {
+		private P5() {
+			super(C18.class, C5.class);
+		}
+	}
+
+	private static final class P6 extends BenchmarkProcessor {
+		private P6() {
+			super(C13.class, C12.class);
+		}
+	}
+
+	private static final class P7 extends BenchmarkProcessor {
+		private P7() {
+			super(C16.class, C11.class);
+		}
+	}
+
+	private static final class P8 extends BenchmarkProcessor {
+		private P8() {
+			super(C17.class, C14.class);
+		}
+	}
+
+	private static final class P9 extends BenchmarkProcessor {
+		private P9() {
+			super(C16.class, C8.class);
+		}
+	}
+
+	private static final class P10 extends BenchmarkProcessor {
+		private P10() {
+			super(C1.class, C0.class);
+		}
+	}
+
+	private static final class P11 extends BenchmarkProcessor {
+		private P11() {
+			super(C11.class, C14.class);
+		}
+	}
+
+	private static final class P12 extends BenchmarkProcessor {
+		private P12() {
+			super(C10.class, C12.class);
+		}
+	}
+
+	private static final class P13 extends BenchmarkProcessor {
+		private P13() {
+			super(C13.class, C16.class);
+		}
+	}
+
+	private static final class P14 extends BenchmarkProcessor {
+		private P14() {
+			super(C5.class, C17.class);
+		}
+	}
+
+	private static final class P15 extends BenchmarkProcessor {
+		private P15() {
+			super(C5.class, C7.class);
+		}
+	}
+
+	private static final class P16 extends BenchmarkProcessor {
+		private P16() {
+			super(C7.class, C0.class);
+		}
+	}
+
+	private static final class P17 extends BenchmarkProcessor {
+		private P17() {
+			super(C5.class, C10.class);
+		}
+	}
+
+	private static final class P18 extends BenchmarkProcessor {
+		private P18() {
+			super(C5.class, C4.class);
+		}
+	}
+
+	private static final class P19 extends BenchmarkProcessor {
+		private P19() {
+			super(C16.class, C19.class);
+		}
+	}
+
+	private static final class P20 extends BenchmarkProcessor {
+		private P20() {
+			super(C11.class, C16.class);
+		}
+	}
+
+	private static final class P21 extends BenchmarkProcessor {
+		private P21() {
+			super(C17.class, C5.class);
+		}
+	}
+
+	private static final class P22 extends BenchmarkProcessor {
+		private P22() {
+			super(C14.class, C13.class);
+		}
+	}
+
+	private static final class P23 extends BenchmarkProcessor {
+		private P23() {
+			super(C16.class, C11.class);
+		}
+	}
+
+	private static final class P24 extends BenchmarkProcessor {
+		private P24() {
+			super(C18.class, C11.class);
+		}
+	}
+
+	private static final class P25 extends BenchmarkProcessor {
+		private P25() {
+			super(C11.class, C14.class);
+		}
+	}
+
+	private static final class P26 extends BenchmarkProcessor {
+		private P26() {
+			super(C5.class, C12.class);
+		}
+	}
+
+	private static final class P27 extends BenchmarkProcessor {
+		private P27() {
+			super(C14.class, C16.class);
+		}
+	}
+
+	private static final class P28 extends BenchmarkProcessor {
+		private P28() {
+			super(C7.class, C15.class);
+		}
+	}
+
+	private static final class P29 extends BenchmarkProcessor {
+		private P29() {
+			super(C8.class, C15.class);
+		}
+	}
+
+	private static final class P30 extends BenchmarkProcessor {
+		private P30() {
+			super(C16.class, C19.class);
+		}
+	}
+
+	private static final class P31 extends BenchmarkProcessor {
+		private P31() {
+			super(C11.class, C14.class);
+		}
+	}
+
+	private static final class P32 extends BenchmarkProcessor {
+		private P32() {
+			super(C14.class, C11.class);
+		}
+	}
+
+	private static final class P33 extends BenchmarkProcessor {
+		private P33() {
+			super(C18.class, C17.class);
+		}
+	}
+
+	private static final class P34 extends BenchmarkProcessor {
+		private P34() {
+			super(C14.class, C15.class);
+		}
+	}
+
+	private static final class P35 extends BenchmarkProcessor {
+		private P35() {
+			super(C7.class, C10.class);
+		}
+	}
+
+	private static final class P36 extends BenchmarkProcessor {
+		private P36() {
+			super(C5.class, C8.class);
+		}
+	}
+
+	private static final class P37 extends BenchmarkProcessor {
+		private P37() {
+			super(C15.class, C9.class);
+		}
+	}
+
+	private static final class P38 extends BenchmarkProcessor {
+		private P38() {
+			super(C9.class, C16.class);
+		}
+	}
+
+	private static final class P39 extends BenchmarkProcessor {
+		private P39() {
+			super(C17.class, C16.class);
+		}
+	}
+
+	private static final class P40 extends BenchmarkProcessor {
+		private P40() {
+			super(C16.class, C18.class);
+		}
+	}
+
+	private static final class P41 extends BenchmarkProcessor {
+		private P41() {
+			super(C13.class, C9.class);
+		}
+	}
+
+	private static final class P42 extends BenchmarkProcessor {
+		private P42() {
+			super(C6.class, C15.class);
+		}
+	}
+
+	private static final class P43 extends BenchmarkProcessor {
+		private P43() {
+			super(C16.class, C11.class);
+		}
+	}
+
+	private static final class P44 extends BenchmarkProcessor {
+		private P44() {
+			super(C19.class, C2.class);
+		}
+	}
+
+	private static final class P45 extends BenchmarkProcessor {
+		private P45() {
+			super(C10.class, C0.class);
+		}
+	}
+
+	private static final class P46 extends BenchmarkProcessor {
+		private P46() {
+			super(C6.class, C3.class);
+		}
+	}
+
+	private static final class P47 extends BenchmarkProcessor {
+		private P47() {
+			super(C1.class, C18.class);
+		}
+	}
+
+	private static final class P48 extends BenchmarkProcessor {
+		private P48() {
+			super(C1.class, C8.class);
+		}
+	}
+
+	private static final class P49 extends BenchmarkProcessor {
+		private P49() {
+			super(C18.class, C7.class);
+		}
+	}
+
+	private static final class C0 implements IComponent {
+	}
+
+	private static final class C1 implements IComponent {
+	}
+
+	private static final class C2 implements IComponent {
+	}
+
+	private static final class C3 implements IComponent {
+	}
+
+	private static final class C4 implements IComponent {
+	}
+
+	private static final class C5 implements IComponent {
+	}
+
+	private static final class C6 implements IComponent {
+	}
+
+	private static final class C7 implements IComponent {
+	}
+
+	private static final class C8 implements IComponent {
+	}
+
+	private static final class C9 implements IComponent {
+	}
+
+	private static final class C10 implements IComponent {
+	}
+
+	private static final class C11 implements IComponent {
+	}
+
+	private static final class C12 implements IComponent {
+	}
+
+	private static final class C13 implements IComponent {
+	}
+
+	private static final class C14 implements IComponent {
+	}
+
+	private static final class C15 implements IComponent {
+	}
+
+	private static final class C16 implements IComponent {
+	}
+
+	private static final class C17 implements IComponent {
+	}
+
+	private static final class C18 implements IComponent {
+	}
+
+	private static final class C19 implements IComponent {
+	}
+}
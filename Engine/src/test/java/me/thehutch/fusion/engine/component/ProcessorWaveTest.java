@@ -0,0 +1,187 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import me.thehutch.fusion.api.component.Aspect;
+import me.thehutch.fusion.api.component.IComponent;
+import me.thehutch.fusion.api.component.IEntity;
+import me.thehutch.fusion.api.component.annotations.Writes;
+import me.thehutch.fusion.api.component.processors.SequentialEntityProcessor;
+import me.thehutch.fusion.api.util.container.Bag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests the structural changes made whilst the processors of the
+ * {@link ComponentSystem} are processed concurrently.
+ *
+ * @author thehutch
+ */
+public class ProcessorWaveTest {
+	private static final int NUM_ENTITIES = 100;
+	private ComponentSystem mSystem;
+	private final Bag<IEntity> mEntities = new Bag<>();
+
+	@Before
+	public void setUp() {
+		mSystem = new ComponentSystem();
+		mSystem.initialise();
+		mSystem.setParallelism(2);
+		for (int i = 0; i < NUM_ENTITIES; ++i) {
+			final Entity e = mSystem.createEntity();
+			e.addComponent(new Position());
+			e.addComponent(new Velocity());
+			e.addToSystem();
+			mEntities.add(e);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		mSystem.dispose();
+	}
+
+	/**
+	 * Deleting an entity or adding a component directly during a wave is rejected.
+	 */
+	@Test
+	public void testDirectChangesRejected() {
+		final AtomicInteger rejected = new AtomicInteger();
+		mSystem.addProcessor(new PositionProcessor(e -> {
+			try {
+				e.deleteFromSystem();
+			} catch (IllegalStateException ex) {
+				rejected.incrementAndGet();
+			}
+		}));
+		mSystem.addProcessor(new VelocityProcessor(e -> {
+			try {
+				e.addComponent(new Health());
+			} catch (IllegalStateException ex) {
+				rejected.incrementAndGet();
+			}
+		}));
+		mSystem.process();
+
+		assertEquals(NUM_ENTITIES * 2, rejected.get());
+		assertEquals(NUM_ENTITIES, mSystem.getEntityManager().getActiveEntityCount());
+		assertFalse(mSystem.getComponentManager().isStructureLocked());
+	}
+
+	/**
+	 * Changes recorded in the command buffer during a wave are played back.
+	 */
+	@Test
+	public void testCommandBufferChangesPlayedBack() {
+		mSystem.addProcessor(new PositionProcessor(e -> {
+			if (e.getId() % 2 == 0) {
+				mSystem.getCommandBuffer().deleteEntity(e.getId(), e);
+			}
+		}));
+		mSystem.addProcessor(new VelocityProcessor(e -> {
+			mSystem.getCommandBuffer().addComponent(e.getId(), e, new Health());
+		}));
+		mSystem.process();
+		mSystem.process();
+
+		assertEquals(NUM_ENTITIES / 2, mSystem.getEntityManager().getActiveEntityCount());
+		for (int i = 1; i < NUM_ENTITIES; i += 2) {
+			assertNotNull(mEntities.get(i).getComponent(Health.class));
+		}
+	}
+
+	/**
+	 * A processor which runs an action on every entity it processes.
+	 */
+	private abstract static class ActionProcessor extends SequentialEntityProcessor {
+		private final EntityAction mAction;
+
+		private ActionProcessor(Aspect aspect, EntityAction action) {
+			super(aspect);
+			mAction = action;
+		}
+
+		@Override
+		protected void process(IEntity entity) {
+			mAction.run(entity);
+		}
+
+		@Override
+		public void initialise() {
+		}
+
+		@Override
+		public void begin() {
+		}
+
+		@Override
+		public void end() {
+		}
+
+		@Override
+		public void inserted(IEntity e) {
+		}
+
+		@Override
+		public void removed(IEntity e) {
+		}
+	}
+
+	/**
+	 * An action run on an entity.
+	 */
+	@FunctionalInterface
+	private interface EntityAction {
+		public void run(IEntity e);
+	}
+
+	/**
+	 * A processor which only writes the positions.
+	 */
+	@Writes(Position.class)
+	private static final class PositionProcessor extends ActionProcessor {
+		private PositionProcessor(EntityAction action) {
+			super(Aspect.newAspectForAll(Position.class), action);
+		}
+	}
+
+	/**
+	 * A processor which only writes the velocities.
+	 */
+	@Writes(Velocity.class)
+	private static final class VelocityProcessor extends ActionProcessor {
+		private VelocityProcessor(EntityAction action) {
+			super(Aspect.newAspectForAll(Velocity.class), action);
+		}
+	}
+
+	private static final class Position implements IComponent {
+	}
+
+	private static final class Velocity implements IComponent {
+	}
+
+	private static final class Health implements IComponent {
+	}
+}
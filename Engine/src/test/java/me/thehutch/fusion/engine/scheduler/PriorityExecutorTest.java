@@ -0,0 +1,101 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import me.thehutch.fusion.api.scheduler.TaskPriority;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the lanes of the {@link PriorityExecutor}.
+ *
+ * @author thehutch
+ */
+public class PriorityExecutorTest {
+	private static final int LANE_CAPACITY = 4;
+	private PriorityExecutor mExecutor;
+	private CountDownLatch mRelease;
+
+	@Before
+	public void setUp() throws InterruptedException {
+		mExecutor = new PriorityExecutor(1, LANE_CAPACITY);
+		mRelease = new CountDownLatch(1);
+
+		// Occupy the only worker so that the lanes fill up
+		final CountDownLatch started = new CountDownLatch(1);
+		mExecutor.submit(() -> {
+			started.countDown();
+			try {
+				mRelease.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}, TaskPriority.CRITICAL);
+		assertTrue(started.await(10L, TimeUnit.SECONDS));
+	}
+
+	@After
+	public void tearDown() {
+		mRelease.countDown();
+		mExecutor.shutdown();
+	}
+
+	/**
+	 * A runnable submitted to a full lane is rejected, not run by the caller.
+	 */
+	@Test
+	public void testFullLaneRejects() {
+		final Thread caller = Thread.currentThread();
+		final Runnable runnable = () -> {
+			if (Thread.currentThread() == caller) {
+				fail("Runnable executed on the submitting thread");
+			}
+		};
+		for (int i = 0; i < LANE_CAPACITY; ++i) {
+			mExecutor.submit(runnable, TaskPriority.LOWEST);
+		}
+		try {
+			mExecutor.submit(runnable, TaskPriority.LOWEST);
+			fail("A full lane must reject the runnable");
+		} catch (RejectedExecutionException ex) {
+			assertEquals(1L, mExecutor.getRejectedCount(TaskPriority.LOWEST));
+		}
+		// The other lanes still accept runnables
+		mExecutor.submit(runnable, TaskPriority.HIGH);
+		assertEquals(LANE_CAPACITY, mExecutor.getQueueDepth(TaskPriority.LOWEST));
+		assertEquals(1, mExecutor.getQueueDepth(TaskPriority.HIGH));
+	}
+
+	/**
+	 * A runnable submitted after shutdown is rejected.
+	 */
+	@Test(expected = RejectedExecutionException.class)
+	public void testShutdownRejects() {
+		mExecutor.shutdown();
+		mExecutor.submit(() -> {
+		}, TaskPriority.MEDIUM);
+	}
+}
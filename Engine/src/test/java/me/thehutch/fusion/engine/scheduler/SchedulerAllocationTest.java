@@ -0,0 +1,77 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import me.thehutch.fusion.api.scheduler.TaskPriority;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures the memory allocated by the ticks of a stepped scheduler. Only
+ * ticks executing synchronous tasks are covered, parallel and asynchronous
+ * tasks still allocate.
+ *
+ * @author thehutch
+ */
+public class SchedulerAllocationTest {
+	private static final int TASKS_PER_TICK = 200;
+	private static final int WARM_UP_TICKS = 20000;
+	private static final int MEASURED_TICKS = 10000;
+
+	/**
+	 * A tick which spawns and executes one-shot synchronous tasks from the
+	 * scheduler thread must not allocate once the scheduler has warmed up.
+	 */
+	@Test
+	public void testSynchronousTicksDoNotAllocate() {
+		final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue("Thread allocation counting is not supported", threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		final Scheduler scheduler = new Scheduler(20L);
+		scheduler.setClockMode(ClockMode.STEPPED);
+		final Runnable oneShot = () -> {
+		};
+		final Runnable spawner = () -> {
+			for (int i = 0; i < TASKS_PER_TICK; ++i) {
+				scheduler.invoke(oneShot, TaskPriority.MEDIUM);
+			}
+		};
+		scheduler.invokeRepeating(spawner, TaskPriority.HIGH, 0L, 1L);
+		try {
+			scheduler.step(WARM_UP_TICKS);
+
+			// Reading the counter may itself allocate, which is measured first
+			final long threadId = Thread.currentThread().getId();
+			final long calibration = threadBean.getThreadAllocatedBytes(threadId);
+			final long overhead = threadBean.getThreadAllocatedBytes(threadId) - calibration;
+
+			final long before = threadBean.getThreadAllocatedBytes(threadId);
+			scheduler.step(MEASURED_TICKS);
+			final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+			assertEquals("Bytes allocated by " + MEASURED_TICKS + " ticks", 0L, allocated - overhead);
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import me.thehutch.fusion.api.scheduler.TaskPriority;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Submits and cancels tasks from many threads whilst the scheduler is ticking.
+ *
+ * @author thehutch
+ */
+public class SchedulerStressTest {
+	private static final int NUM_THREADS = 8;
+	private static final int TASKS_PER_THREAD = 20000;
+	/*
+	 * The delay must outlast any descheduling of a submitting thread between
+	 * submitting a task and cancelling it, 100 ticks is 100 milliseconds
+	 */
+	private static final long DELAY = 100L;
+	private Scheduler mScheduler;
+	private Thread mSchedulerThread;
+
+	@Before
+	public void setUp() {
+		mScheduler = new Scheduler(1000L);
+		mSchedulerThread = new Thread(mScheduler::execute, "Scheduler");
+		mSchedulerThread.start();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		mScheduler.shutdown();
+		mSchedulerThread.join(TimeUnit.SECONDS.toMillis(10L));
+	}
+
+	/**
+	 * A task cancelled by the thread which submitted it must never run, no
+	 * matter where within the tick the submission and cancellation land.
+	 */
+	@Test
+	public void testCancelledTasksNeverRun() throws InterruptedException {
+		final AtomicInteger executed = new AtomicInteger();
+		final Runnable cancelledTask = executed::incrementAndGet;
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] threads = new Thread[NUM_THREADS];
+		for (int t = 0; t < NUM_THREADS; ++t) {
+			threads[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				for (int i = 0; i < TASKS_PER_THREAD; ++i) {
+					final int taskId = mScheduler.invokeDelayed(cancelledTask, TaskPriority.MEDIUM, DELAY);
+					mScheduler.cancelTask(taskId);
+				}
+			});
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// Wait until a task submitted after every cancellation has run, by then
+		// every cancelled task would have been due
+		final CountDownLatch drained = new CountDownLatch(1);
+		mScheduler.invokeDelayed(drained::countDown, TaskPriority.MEDIUM, DELAY * 2L);
+		assertTrue("Scheduler did not execute the final task", drained.await(10L, TimeUnit.SECONDS));
+
+		assertEquals("Cancelled tasks were executed", 0, executed.get());
+	}
+
+	/**
+	 * Tasks which are not cancelled must all run exactly once.
+	 */
+	@Test
+	public void testSubmittedTasksRun() throws InterruptedException {
+		final int numTasks = NUM_THREADS * 1000;
+		final CountDownLatch executed = new CountDownLatch(numTasks);
+		final Thread[] threads = new Thread[NUM_THREADS];
+		for (int t = 0; t < NUM_THREADS; ++t) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < numTasks / NUM_THREADS; ++i) {
+					mScheduler.invoke(executed::countDown, TaskPriority.MEDIUM);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue("Submitted tasks were not executed", executed.await(10L, TimeUnit.SECONDS));
+	}
+}
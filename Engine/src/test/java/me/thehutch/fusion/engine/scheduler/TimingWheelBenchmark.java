@@ -0,0 +1,171 @@
+/*
+ * This file is part of Engine, licensed under the Apache 2.0 License.
+ *
+ * Copyright (c) 2014 thehutch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.thehutch.fusion.engine.scheduler;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+import me.thehutch.fusion.api.scheduler.TaskPriority;
+import me.thehutch.fusion.api.util.container.Bag;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the {@link TimingWheel} against the {@link PriorityQueue} which
+ * previously held the tasks of the scheduler, at 1k, 100k and 1M repeating
+ * tasks. Each run schedules every task, then expires and re-arms the due
+ * tasks for a number of ticks.
+ * <p>
+ * The benchmarks are excluded from the tests, run them with
+ * {@code mvn test -Pbenchmark}.
+ *
+ * @author thehutch
+ */
+public class TimingWheelBenchmark {
+	private static final int[] TASK_COUNTS = { 1000, 100000, 1000000 };
+	private static final int NUM_TICKS = 500;
+	private static final int MAX_PERIOD = 200;
+	private static final int NUM_RUNS = 3;
+	/*
+	 * The ordering of the previous scheduler, by tick then priority then submission
+	 */
+	private static final Comparator<Task> TASK_ORDER = (a, b) -> {
+		if (a.getTime() != b.getTime()) {
+			return Long.compare(a.getTime(), b.getTime());
+		} else if (a.getPriority() != b.getPriority()) {
+			return Integer.compare(a.getPriority().ordinal(), b.getPriority().ordinal());
+		}
+		return Integer.compare(a.getId(), b.getId());
+	};
+
+	@Test
+	public void benchmarkTimingWheel() {
+		for (int numTasks : TASK_COUNTS) {
+			final Task[] tasks = createTasks(numTasks);
+			long wheelTime = 0L;
+			long queueTime = 0L;
+			for (int run = 0; run < NUM_RUNS; ++run) {
+				resetTasks(tasks);
+				long start = System.nanoTime();
+				final long wheelExpired = runTimingWheel(tasks);
+				wheelTime = System.nanoTime() - start;
+
+				resetTasks(tasks);
+				start = System.nanoTime();
+				final long queueExpired = runPriorityQueue(tasks);
+				queueTime = System.nanoTime() - start;
+
+				assertEquals("Both stores must expire the same tasks", queueExpired, wheelExpired);
+			}
+			System.out.printf("%d tasks, %d ticks: timing wheel %d ms, priority queue %d ms%n",
+							  numTasks, NUM_TICKS, wheelTime / 1000000L, queueTime / 1000000L);
+		}
+	}
+
+	/**
+	 * Internal method to schedule the tasks and then expire and re-arm them.
+	 *
+	 * @param tasks The tasks
+	 *
+	 * @return The number of tasks expired
+	 */
+	private static long runTimingWheel(Task[] tasks) {
+		final TimingWheel wheel = new TimingWheel(0L);
+		for (Task task : tasks) {
+			wheel.schedule(task);
+		}
+		final Bag<Task> expired = new Bag<>();
+		long numExpired = 0L;
+		for (long tick = 0L; tick < NUM_TICKS; ++tick) {
+			wheel.advance(expired);
+			final int size = expired.size();
+			for (int i = 0; i < size; ++i) {
+				final Task task = expired.get(i);
+				task.setTime(tick + task.getPeriod());
+				wheel.schedule(task);
+			}
+			numExpired += size;
+			expired.clear();
+		}
+		wheel.clear();
+		return numExpired;
+	}
+
+	/**
+	 * Internal method to schedule the tasks and then expire and re-arm them.
+	 *
+	 * @param tasks The tasks
+	 *
+	 * @return The number of tasks expired
+	 */
+	private static long runPriorityQueue(Task[] tasks) {
+		final PriorityQueue<Task> queue = new PriorityQueue<>(TASK_ORDER);
+		for (Task task : tasks) {
+			queue.add(task);
+		}
+		final Bag<Task> expired = new Bag<>();
+		long numExpired = 0L;
+		for (long tick = 0L; tick < NUM_TICKS; ++tick) {
+			while (!queue.isEmpty() && queue.peek().getTime() <= tick) {
+				expired.add(queue.poll());
+			}
+			final int size = expired.size();
+			for (int i = 0; i < size; ++i) {
+				final Task task = expired.get(i);
+				task.setTime(tick + task.getPeriod());
+				queue.add(task);
+			}
+			numExpired += size;
+			expired.clear();
+		}
+		return numExpired;
+	}
+
+	/**
+	 * Internal method to create repeating tasks with random priorities and periods.
+	 *
+	 * @param numTasks The number of tasks
+	 *
+	 * @return The tasks
+	 */
+	private static Task[] createTasks(int numTasks) {
+		final Random random = new Random(numTasks);
+		final TaskPriority[] priorities = TaskPriority.values();
+		final Runnable runnable = () -> {
+		};
+		final Task[] tasks = new Task[numTasks];
+		for (int i = 0; i < numTasks; ++i) {
+			final TaskPriority priority = priorities[random.nextInt(priorities.length)];
+			final long period = 1L + random.nextInt(MAX_PERIOD);
+			tasks[i] = new Task(i, runnable, priority, false, null, null, 0L, i % MAX_PERIOD, period);
+		}
+		return tasks;
+	}
+
+	/**
+	 * Internal method to move the tasks back to their first deadline.
+	 *
+	 * @param tasks The tasks
+	 */
+	private static void resetTasks(Task[] tasks) {
+		for (Task task : tasks) {
+			task.setTime(task.getCreationTime() + task.getId() % MAX_PERIOD);
+		}
+	}
+}